@@ -0,0 +1,150 @@
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * AllocationCheck class:
+ * Regression check that the steady state update and drawing of a game do not
+ * allocate any memory. A game is played headless with the player moving and firing,
+ * and the bytes allocated by this thread are measured around every update, every
+ * draw into an offscreen image, and every FrameRasterizer frame. Updates and draws are
+ * recorded into GameMetrics the same way as in the GamePanel, so the metrics are checked as well.
+ * Then a VectorEnv batch is stepped with random actions and the bytes allocated by
+ * each call to stepAll() are measured the same way.
+ * Resetting after a game ends is not measured.
+ * Exits with a non-zero status if anything was allocated.
+ */
+public class AllocationCheck {
+    /**
+     * Number of updates run before measuring so that everything has been loaded and compiled.
+     */
+    private static final int WARMUP_TICKS = 200_000;
+    /**
+     * Number of updates and draws that are measured.
+     */
+    private static final int MEASURED_TICKS = 100_000;
+    /**
+     * Number of games in the VectorEnv batch.
+     */
+    private static final int VECTOR_GAMES = 64;
+    /**
+     * Number of calls to stepAll() before measuring. Random actions fire far more often than a player
+     * would, so this is long enough for every game's projectile pool to have grown to the most it will need.
+     */
+    private static final int VECTOR_WARMUP_STEPS = 20_000;
+
+    /**
+     * Runs the check and prints the bytes allocated per update and per draw.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        HeadlessGame game = new HeadlessGame();
+        GameMetrics metrics = new GameMetrics(GamePanel.TIME_INTERVAL);
+        game.getObjectManager().setMetrics(metrics);
+        BufferedImage image = new BufferedImage(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        FrameRasterizer rasterizer = new FrameRasterizer(84, 84);
+
+        long[] allocated = new long[3];
+        for(int pass = 0; pass < 2; pass++) {
+            int ticks = pass == 0 ? WARMUP_TICKS : MEASURED_TICKS;
+            allocated[0] = 0;
+            allocated[1] = 0;
+            allocated[2] = 0;
+            // Measure the cost of reading the counter itself so it can be removed from the results.
+            long overhead = threadBean.getThreadAllocatedBytes(threadId);
+            overhead = threadBean.getThreadAllocatedBytes(threadId) - overhead;
+            for(int i = 0; i < ticks; i++) {
+                if(game.getOutcome() != GameOutcome.IN_PROGRESS) {
+                    game.reset();
+                }
+                applyInput(game);
+                long before = threadBean.getThreadAllocatedBytes(threadId);
+                game.step();
+                long afterStep = threadBean.getThreadAllocatedBytes(threadId);
+                metrics.startPaint();
+                game.getObjectManager().paint(g);
+                metrics.endPaint();
+                long afterPaint = threadBean.getThreadAllocatedBytes(threadId);
+                rasterizer.render(game.getObjectManager());
+                long afterRender = threadBean.getThreadAllocatedBytes(threadId);
+                allocated[0] += afterStep - before - overhead;
+                allocated[1] += afterPaint - afterStep - overhead;
+                allocated[2] += afterRender - afterPaint - overhead;
+            }
+        }
+        System.out.printf("Allocated per update: %.3f bytes (%d total)%n",
+                (double)allocated[0] / MEASURED_TICKS, allocated[0]);
+        System.out.printf("Allocated per draw:   %.3f bytes (%d total)%n",
+                (double)allocated[1] / MEASURED_TICKS, allocated[1]);
+        System.out.printf("Allocated per frame:  %.3f bytes (%d total)%n",
+                (double)allocated[2] / MEASURED_TICKS, allocated[2]);
+        long vectorAllocated = measureVectorEnv(threadBean, threadId);
+        System.out.printf("Allocated per environment step: %.3f bytes (%d total)%n",
+                (double)vectorAllocated / MEASURED_TICKS, vectorAllocated);
+        if(allocated[0] > 0 || allocated[1] > 0 || allocated[2] > 0 || vectorAllocated > 0) {
+            System.out.println("FAILED: the steady state update, draw, frame, or environment step allocated memory.");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Steps a VectorEnv with random actions and measures the bytes allocated by stepAll().
+     * Calls where any game ended are not counted, because the game is reset with a new wave of aliens.
+     *
+     * @param threadBean The bean to read the allocation counter from.
+     * @param threadId Id of this thread.
+     * @return The bytes allocated over about MEASURED_TICKS environment steps after warming up.
+     */
+    private static long measureVectorEnv(com.sun.management.ThreadMXBean threadBean, long threadId) {
+        VectorEnv env = new VectorEnv(VECTOR_GAMES, 0, GamePanel.TIME_INTERVAL, 0);
+        GameRandom random = new GameRandom(0);
+        int[] actions = new int[VECTOR_GAMES];
+        long allocated = 0;
+        for(int pass = 0; pass < 2; pass++) {
+            int steps = pass == 0 ? VECTOR_WARMUP_STEPS : MEASURED_TICKS / VECTOR_GAMES;
+            allocated = 0;
+            long overhead = threadBean.getThreadAllocatedBytes(threadId);
+            overhead = threadBean.getThreadAllocatedBytes(threadId) - overhead;
+            for(int i = 0; i < steps; i++) {
+                for(int game = 0; game < VECTOR_GAMES; game++) {
+                    actions[game] = random.nextInt(VectorEnv.ACTION_COUNT);
+                }
+                long episodes = env.getEpisodeCount();
+                long before = threadBean.getThreadAllocatedBytes(threadId);
+                env.stepAll(actions);
+                long after = threadBean.getThreadAllocatedBytes(threadId);
+                if(env.getEpisodeCount() == episodes) {
+                    allocated += after - before - overhead;
+                }
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Moves the player back and forth across the screen while firing regularly.
+     *
+     * @param game The game to pass input to.
+     */
+    private static void applyInput(HeadlessGame game) {
+        Player player = game.getObjectManager().getPlayer();
+        int phase = game.getTicks() % 80;
+        player.handleInput(KeyEvent.VK_LEFT, phase < 40);
+        player.handleInput(KeyEvent.VK_RIGHT, phase >= 40);
+        if(phase % 10 == 0) {
+            player.handleInput(KeyEvent.VK_SPACE, true);
+        }
+    }
+}
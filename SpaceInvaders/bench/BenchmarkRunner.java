@@ -0,0 +1,155 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * BenchmarkRunner class:
+ * A small benchmark harness in the style of JMH that does not need any external
+ * dependencies. Each benchmark is warmed up and then measured over several iterations.
+ * Every iteration calls the setup once and then times a fixed number of operations.
+ * Results are reported as throughput (ops/s), average time (ns/op), and allocation
+ * (bytes/op and MB/s) using the per thread allocation counters of the JVM.
+ */
+public class BenchmarkRunner {
+    /**
+     * A single benchmark with a setup that is run before every iteration.
+     */
+    public interface Benchmark {
+        /**
+         * Prepares fresh state before an iteration is measured.
+         */
+        void setup();
+
+        /**
+         * Performs one operation that is being measured.
+         *
+         * @return Any value computed so that it can not be optimised away.
+         */
+        long run();
+    }
+
+    /**
+     * Number of iterations that are run and discarded before measuring.
+     */
+    private static final int WARMUP_ITERATIONS = 5;
+    /**
+     * Number of iterations that are measured.
+     */
+    private static final int MEASURED_ITERATIONS = 10;
+    /**
+     * Values returned from benchmarks are accumulated here so the JIT can not remove the work.
+     */
+    private static volatile long sink;
+
+    /**
+     * Thread allocation counters, or null if the JVM does not support them.
+     */
+    private final com.sun.management.ThreadMXBean threadBean;
+    /**
+     * Only benchmarks with a name matching this pattern are run.
+     */
+    private final Pattern filter;
+    /**
+     * Rows of results ready to print at the end.
+     */
+    private final List<String> results;
+
+    /**
+     * Runs all engine benchmarks, optionally filtered by a regular expression on the name.
+     *
+     * @param args Optional regular expression to select benchmarks.
+     */
+    public static void main(String[] args) {
+        BenchmarkRunner runner = new BenchmarkRunner(args.length > 0 ? args[0] : ".*");
+        EngineBenchmarks.registerAll(runner);
+        runner.printResults();
+    }
+
+    /**
+     * Creates the runner with the filter for benchmark names.
+     *
+     * @param filterRegex Regular expression that benchmark names must contain a match for.
+     */
+    public BenchmarkRunner(String filterRegex) {
+        filter = Pattern.compile(filterRegex);
+        results = new ArrayList<>();
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threadBean = null;
+        }
+    }
+
+    /**
+     * Warms up and measures the benchmark if it matches the filter.
+     *
+     * @param name Name of the benchmark including any parameters.
+     * @param opsPerIteration Number of operations to time after each setup.
+     * @param benchmark The benchmark to run.
+     */
+    public void run(String name, int opsPerIteration, Benchmark benchmark) {
+        if(!filter.matcher(name).find()) {
+            return;
+        }
+        System.out.println("Running " + name);
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measureIteration(opsPerIteration, benchmark, null);
+        }
+        long[] totals = new long[2];
+        for(int i = 0; i < MEASURED_ITERATIONS; i++) {
+            measureIteration(opsPerIteration, benchmark, totals);
+        }
+        long totalOps = (long)opsPerIteration * MEASURED_ITERATIONS;
+        double nsPerOp = (double)totals[0] / totalOps;
+        String allocation = "n/a";
+        String allocationRate = "n/a";
+        if(threadBean != null) {
+            allocation = String.format("%.1f", (double)totals[1] / totalOps);
+            allocationRate = String.format("%.1f", totals[1] / (totals[0] / 1e9) / (1024 * 1024));
+        }
+        results.add(String.format("%-48s %14.1f %14.1f %12s %10s",
+                name, 1e9 / nsPerOp, nsPerOp, allocation, allocationRate));
+    }
+
+    /**
+     * Prints the table of all results that were run.
+     */
+    public void printResults() {
+        System.out.println();
+        System.out.println(String.format("%-48s %14s %14s %12s %10s",
+                "Benchmark", "ops/s", "ns/op", "B/op", "MB/s"));
+        results.forEach(System.out::println);
+    }
+
+    /**
+     * Runs the setup and then times the operations for one iteration.
+     *
+     * @param opsPerIteration Number of operations to time.
+     * @param benchmark The benchmark to run.
+     * @param totals When not null the elapsed nanoseconds and allocated bytes are added to index 0 and 1.
+     */
+    private void measureIteration(int opsPerIteration, Benchmark benchmark, long[] totals) {
+        benchmark.setup();
+        long threadId = Thread.currentThread().getId();
+        long result = 0;
+        long startBytes = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) : 0;
+        long startTime = System.nanoTime();
+        for(int i = 0; i < opsPerIteration; i++) {
+            result += benchmark.run();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        long endBytes = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) : 0;
+        sink += result;
+        if(totals != null) {
+            totals[0] += elapsed;
+            totals[1] += endBytes - startBytes;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * CaptureCheck class:
+ * Checks that capturing frames does not hold up the game. The same seeded game is played
+ * headless three times, drawing a frame after every update into an offscreen image: without
+ * capturing, capturing raw frames with a small ring, and capturing PNG frames with a frame skip.
+ * Updates are run every TIME_INTERVAL the same as the GameLoop, so the encoder gets the time
+ * between updates that it would have in a real game.
+ * The time of every update is recorded and the percentiles for each run are printed side by side,
+ * along with the time to draw and hand over each captured frame. Every frame offered must be
+ * counted as captured, skipped, or dropped, every captured frame must be written, the files must
+ * hold the frames written, and drawing and handing over a frame must not allocate.
+ * Exits with a non-zero status if any check fails.
+ */
+public class CaptureCheck {
+    /**
+     * Number of updates in each run.
+     */
+    private static final int TICKS = 500;
+    /**
+     * Number of updates played before the runs so that everything has been loaded and compiled.
+     */
+    private static final int WARMUP_TICKS = 20_000;
+    /**
+     * Number of images in the ring for the raw run, small enough that some frames may be dropped.
+     */
+    private static final int RAW_SLOTS = 4;
+    /**
+     * Number of images in the ring for the PNG run.
+     */
+    private static final int PNG_SLOTS = 16;
+    /**
+     * Frames skipped after each one kept in the PNG run.
+     */
+    private static final int PNG_FRAME_SKIP = 9;
+
+    /**
+     * Runs the check and prints the results.
+     *
+     * @param args Not used.
+     * @throws Exception If the files could not be written or read.
+     */
+    public static void main(String[] args) throws Exception {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        BufferedImage screen = new BufferedImage(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Path folder = Files.createTempDirectory("spaceinvaders-capture");
+        boolean passed = true;
+        try {
+            play(screen, null, threadBean, WARMUP_TICKS);
+            System.out.printf("%-12s %10s %10s %10s %14s %10s%n", "capture", "tick p50", "tick p99", "tick max",
+                    "frame p99 us", "bytes");
+            play(screen, null, threadBean, TICKS);
+            Path rawFolder = folder.resolve("raw");
+            FrameCapture raw = new FrameCapture(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, RAW_SLOTS,
+                    rawFolder, FrameCapture.Format.RAW, 0);
+            long rawAllocated = play(screen, raw, threadBean, TICKS);
+            raw.close();
+            passed &= checkCounts(raw, rawAllocated);
+            long rawBytes = Files.size(rawFolder.resolve("frames.raw"));
+            long expectedBytes = raw.getWrittenCount() * GamePanel.PANEL_WIDTH * GamePanel.PANEL_HEIGHT * Integer.BYTES;
+            System.out.println("Raw file holds the frames written: " + (rawBytes == expectedBytes ? "yes" : "no"));
+            passed &= rawBytes == expectedBytes;
+
+            Path pngFolder = folder.resolve("png");
+            FrameCapture png = new FrameCapture(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, PNG_SLOTS,
+                    pngFolder, FrameCapture.Format.PNG, PNG_FRAME_SKIP);
+            long pngAllocated = play(screen, png, threadBean, TICKS);
+            png.close();
+            passed &= checkCounts(png, pngAllocated);
+            long pngFiles;
+            try(Stream<Path> files = Files.list(pngFolder)) {
+                pngFiles = files.count();
+            }
+            BufferedImage first = ImageIO.read(pngFolder.resolve("frame-000000.png").toFile());
+            boolean pngValid = pngFiles == png.getWrittenCount() && first != null
+                    && first.getWidth() == GamePanel.PANEL_WIDTH && first.getHeight() == GamePanel.PANEL_HEIGHT;
+            System.out.println("PNG files hold the frames written: " + (pngValid ? "yes" : "no"));
+            passed &= pngValid;
+        } finally {
+            try(Stream<Path> files = Files.walk(folder)) {
+                files.sorted(Comparator.reverseOrder()).forEach(CaptureCheck::delete);
+            }
+        }
+        if(!passed) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Plays a seeded game, drawing a frame after every update, and prints the update times.
+     * When capturing, each frame is drawn into the capture instead of the screen image.
+     * Updates are TIME_INTERVAL apart, except while warming up when they are run as fast as possible.
+     *
+     * @param screen The offscreen image drawn into when not capturing.
+     * @param capture The capture to draw frames into, or null to not capture.
+     * @param threadBean The bean to read the allocation counter from.
+     * @param ticks Number of updates to play.
+     * @return The bytes allocated while drawing and handing over captured frames.
+     */
+    private static long play(BufferedImage screen, FrameCapture capture,
+                             com.sun.management.ThreadMXBean threadBean, int ticks) {
+        long threadId = Thread.currentThread().getId();
+        HeadlessGame game = new HeadlessGame(7);
+        Graphics screenGraphics = screen.getGraphics();
+        LatencyHistogram tickTimes = new LatencyHistogram();
+        LatencyHistogram frameTimes = new LatencyHistogram();
+        long allocated = 0;
+        long overhead = threadBean.getThreadAllocatedBytes(threadId);
+        overhead = threadBean.getThreadAllocatedBytes(threadId) - overhead;
+        long nextTick = System.nanoTime();
+        for(int i = 0; i < ticks; i++) {
+            if(ticks != WARMUP_TICKS) {
+                nextTick += GamePanel.TIME_INTERVAL * 1_000_000L;
+                LockSupport.parkNanos(nextTick - System.nanoTime());
+            }
+            if(game.getOutcome() != GameOutcome.IN_PROGRESS) {
+                game.reset();
+            }
+            Player player = game.getObjectManager().getPlayer();
+            player.handleInput(KeyEvent.VK_LEFT, i % 80 < 40);
+            player.handleInput(KeyEvent.VK_RIGHT, i % 80 >= 40);
+            player.handleInput(KeyEvent.VK_SPACE, i % 10 == 0);
+            long startTime = System.nanoTime();
+            game.step();
+            long frameStart = System.nanoTime();
+            tickTimes.record(frameStart - startTime);
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            Graphics g = capture == null ? screenGraphics : capture.beginFrame();
+            if(g != null) {
+                g.setColor(Color.BLACK);
+                g.fillRect(0, 0, GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT);
+                game.getObjectManager().paint(g);
+                if(capture != null) {
+                    capture.endFrame();
+                }
+            }
+            allocated += threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+            frameTimes.record(System.nanoTime() - frameStart);
+        }
+        if(ticks != WARMUP_TICKS) {
+            String name = capture == null ? "off" : capture.getSkippedCount() > 0 ? "png skip " + PNG_FRAME_SKIP : "raw";
+            System.out.printf("%-12s %10.1f %10.1f %10.1f %14.1f %10d%n", name,
+                    tickTimes.getPercentile(0.5) / 1000.0, tickTimes.getPercentile(0.99) / 1000.0,
+                    tickTimes.getMax() / 1000.0, frameTimes.getPercentile(0.99) / 1000.0, allocated);
+        }
+        return allocated;
+    }
+
+    /**
+     * Prints the counters of a finished capture and checks they add up.
+     *
+     * @param capture The capture, which has been closed.
+     * @param allocated The bytes allocated while drawing and handing over frames.
+     * @return True if every frame was accounted for and written, and nothing was allocated.
+     */
+    private static boolean checkCounts(FrameCapture capture, long allocated) {
+        System.out.println(capture.getSummary());
+        boolean counted = capture.getOfferedCount()
+                == capture.getCapturedCount() + capture.getSkippedCount() + capture.getDroppedCount();
+        boolean written = capture.getWrittenCount() == capture.getCapturedCount() && capture.getFailedCount() == 0;
+        if(!counted || !written || allocated > 0) {
+            System.out.println("Counted: " + counted + ", written: " + written + ", allocated: " + allocated);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deletes a file or empty folder, ignoring any error.
+     *
+     * @param path The path to delete.
+     */
+    private static void delete(Path path) {
+        try {
+            Files.delete(path);
+        } catch(IOException e) {
+            System.err.println("Unable to delete " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * DeterminismCheck class:
+ * Regression check that a seeded game with recorded input plays out exactly the same
+ * when it is replayed. A long session of games is played headless with random key
+ * presses, including restarts, while the input is recorded and the state hash after
+ * every update is added into a running checksum. The recording is saved, loaded back,
+ * and replayed in a new game, which must produce the same checksum. A different seed
+ * must produce a different checksum. The replay is also run halfway, snapshotted with
+ * writeState(), and restored into a game with a different seed to play the second half,
+ * which must still produce the same checksum. Exits with a non-zero status if any check fails.
+ */
+public class DeterminismCheck {
+    /**
+     * Default number of updates in the recorded session.
+     */
+    private static final int DEFAULT_TICKS = 1_000_000;
+
+    /**
+     * Runs the check and prints the checksums.
+     *
+     * @param args Optional number of updates followed by the seed.
+     * @throws IOException If the recording could not be saved or loaded.
+     */
+    public static void main(String[] args) throws IOException {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 2021;
+
+        long startTime = System.nanoTime();
+        InputRecording recording = record(seed, ticks);
+        double recordSeconds = (System.nanoTime() - startTime) / 1e9;
+        Path file = Files.createTempFile("spaceinvaders", ".rec");
+        try {
+            recording.save(file);
+            InputRecording loaded = InputRecording.load(file);
+            startTime = System.nanoTime();
+            long replayed = new HeadlessGame(loaded.getSeed()).replay(loaded);
+            double replaySeconds = (System.nanoTime() - startTime) / 1e9;
+            long otherSeed = new HeadlessGame(seed + 1).replay(loaded);
+            long restored = replayWithSnapshot(loaded, seed + 1);
+
+            System.out.printf("Recorded %d ticks with %d events in %.2fs, checksum %016x%n",
+                    ticks, recording.size(), recordSeconds, recording.getChecksum());
+            System.out.printf("Replayed %d ticks in %.2fs, checksum %016x%n", loaded.getLength(), replaySeconds, replayed);
+            System.out.printf("Replayed with seed %d, checksum %016x%n", seed + 1, otherSeed);
+            System.out.printf("Replayed second half from a snapshot, checksum %016x%n", restored);
+            if(replayed != recording.getChecksum()) {
+                System.out.println("FAILED: the replay did not match the recording.");
+                System.exit(1);
+            }
+            if(restored != recording.getChecksum()) {
+                System.out.println("FAILED: the game restored from a snapshot did not match the recording.");
+                System.exit(1);
+            }
+            if(otherSeed == recording.getChecksum()) {
+                System.out.println("FAILED: a different seed produced the same checksum.");
+                System.exit(1);
+            }
+            System.out.println("OK");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Plays a session of games with random input and records it. Input is chosen by
+     * a separate generator so it does not change the game's own random numbers.
+     * The game is restarted with R whenever it ends.
+     *
+     * @param seed Seed for the game.
+     * @param ticks Number of updates to record.
+     * @return The finished recording.
+     */
+    private static InputRecording record(long seed, int ticks) {
+        HeadlessGame game = new HeadlessGame(seed);
+        GameRandom input = new GameRandom(~seed);
+        InputRecording recording = new InputRecording(seed);
+        long checksum = StateHash.INITIAL;
+        for(int tick = 0; tick < ticks; tick++) {
+            if(game.getOutcome() != GameOutcome.IN_PROGRESS) {
+                press(game, recording, tick, KeyEvent.VK_R, true);
+                press(game, recording, tick, KeyEvent.VK_R, false);
+            }
+            int choice = input.nextInt(40);
+            if(choice == 0) {
+                press(game, recording, tick, KeyEvent.VK_LEFT, input.nextInt(2) == 0);
+            } else if(choice == 1) {
+                press(game, recording, tick, KeyEvent.VK_RIGHT, input.nextInt(2) == 0);
+            } else if(choice < 5) {
+                press(game, recording, tick, KeyEvent.VK_SPACE, true);
+            }
+            game.step();
+            checksum = StateHash.mix(checksum, game.getObjectManager().getStateHash());
+        }
+        recording.finish(ticks, checksum);
+        return recording;
+    }
+
+    /**
+     * Replays the first half of a recording, writes a snapshot, and restores it into a different
+     * game that plays the second half.
+     *
+     * @param recording The recording to play back.
+     * @param otherSeed Seed for the game that the snapshot is restored into.
+     * @return The running checksum after the last recorded update.
+     */
+    private static long replayWithSnapshot(InputRecording recording, long otherSeed) {
+        int middle = recording.getLength() / 2;
+        HeadlessGame first = new HeadlessGame(recording.getSeed());
+        long checksum = first.replay(recording, 0, middle, StateHash.INITIAL);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + first.getObjectManager().getStateSize());
+        first.writeState(buffer);
+        buffer.flip();
+        HeadlessGame second = new HeadlessGame(otherSeed);
+        second.readState(buffer);
+        return second.replay(recording, middle, recording.getLength(), checksum);
+    }
+
+    /**
+     * Applies a key event to the game and adds it to the recording.
+     *
+     * @param game The game to apply the event to.
+     * @param recording The recording to add the event to.
+     * @param tick The update the event is applied before.
+     * @param keyCode The key that was pressed or released.
+     * @param isPressed True indicates the key is pressed, false indicates released.
+     */
+    private static void press(HeadlessGame game, InputRecording recording, int tick, int keyCode, boolean isPressed) {
+        recording.add(tick, keyCode, isPressed);
+        game.applyInput(keyCode, isPressed);
+    }
+}
@@ -0,0 +1,136 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * DirtyRectCheck class:
+ * Checks that drawing only the parts found by the DamageTracker gives the same picture as
+ * drawing every frame in full. Seeded games are played with random input at 60 frames a second
+ * against updates every TIME_INTERVAL, so frames are drawn part way between updates the same as
+ * the GameLoop. Every frame is drawn in full into one image, and into a second image only inside
+ * the rectangles of the DirtyRegion. The two images must be the same after every frame, with and
+ * without the sprite cache. The pixels filled and the time taken each way are printed, and
+ * collecting the changes must not allocate once the first pass has warmed everything up.
+ * Exits with a non-zero status if any check fails.
+ */
+public class DirtyRectCheck {
+    /**
+     * Number of games played for each sprite setting.
+     */
+    private static final int GAMES = 3;
+    /**
+     * Most frames drawn in each game.
+     */
+    private static final int FRAMES_PER_GAME = 3000;
+    /**
+     * Time between frames in nanoseconds.
+     */
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+    /**
+     * Time between updates in nanoseconds.
+     */
+    private static final long STEP_NANOS = GamePanel.TIME_INTERVAL * 1_000_000L;
+
+    /**
+     * Runs the check and prints the results.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        BufferedImage full = new BufferedImage(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        BufferedImage partial = new BufferedImage(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] fullPixels = ((DataBufferInt)full.getRaster().getDataBuffer()).getData();
+        int[] partialPixels = ((DataBufferInt)partial.getRaster().getDataBuffer()).getData();
+        Graphics2D fullGraphics = full.createGraphics();
+        Graphics2D partialGraphics = partial.createGraphics();
+        long frames = 0, mismatchedFrames = 0, filledPixels = 0, rectangles = 0, emptyFrames = 0;
+        long fullNanos = 0, partialNanos = 0, allocated = 0;
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+        for(int sprites = 0; sprites < 2; sprites++) {
+            SpriteCache.setEnabled(sprites == 1);
+            for(int seed = 0; seed < GAMES; seed++) {
+                HeadlessGame game = new HeadlessGame(seed);
+                GameRandom random = new GameRandom(seed);
+                DamageTracker tracker = new DamageTracker();
+                DirtyRegion region = new DirtyRegion(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT);
+                Arrays.fill(partialPixels, 0x123456);
+                long accumulator = 0;
+                int action = 0;
+                for(int frame = 0; frame < FRAMES_PER_GAME; frame++) {
+                    accumulator += FRAME_NANOS;
+                    while(accumulator >= STEP_NANOS) {
+                        if(game.getOutcome() != GameOutcome.IN_PROGRESS) {
+                            game.reset(random.nextLong());
+                        }
+                        if(random.nextInt(8) == 0) {
+                            action = random.nextInt(VectorEnv.ACTION_COUNT);
+                        }
+                        VectorEnv.applyAction(game.getObjectManager().getPlayer(), action);
+                        game.step();
+                        accumulator -= STEP_NANOS;
+                    }
+                    float alpha = (float)accumulator / STEP_NANOS;
+                    ObjectManager world = game.getObjectManager();
+
+                    long startTime = System.nanoTime();
+                    fullGraphics.setColor(Color.BLACK);
+                    fullGraphics.fillRect(0, 0, GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT);
+                    world.paint(fullGraphics, alpha);
+                    fullNanos += System.nanoTime() - startTime;
+
+                    startTime = System.nanoTime();
+                    long before = threadBean.getThreadAllocatedBytes(threadId);
+                    region.clear();
+                    tracker.collect(world, alpha, region);
+                    if(sprites == 1 && frame > 0) {
+                        allocated += threadBean.getThreadAllocatedBytes(threadId) - before;
+                    }
+                    for(int i = 0; i < region.size(); i++) {
+                        partialGraphics.setClip(region.getX(i), region.getY(i), region.getWidth(i), region.getHeight(i));
+                        partialGraphics.setColor(Color.BLACK);
+                        partialGraphics.fillRect(0, 0, GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT);
+                        world.paint(partialGraphics, alpha);
+                    }
+                    partialNanos += System.nanoTime() - startTime;
+
+                    frames++;
+                    filledPixels += region.getArea();
+                    rectangles += region.size();
+                    if(region.isEmpty()) {
+                        emptyFrames++;
+                    }
+                    if(!Arrays.equals(fullPixels, partialPixels)) {
+                        if(mismatchedFrames == 0) {
+                            System.out.printf("First difference: sprites %b, seed %d, frame %d%n", sprites == 1, seed, frame);
+                        }
+                        mismatchedFrames++;
+                        System.arraycopy(fullPixels, 0, partialPixels, 0, fullPixels.length);
+                        tracker.invalidate();
+                    }
+                }
+            }
+        }
+        long panelPixels = (long)GamePanel.PANEL_WIDTH * GamePanel.PANEL_HEIGHT;
+        System.out.printf("Frames: %d, different from a full redraw: %d, with nothing to draw: %d%n",
+                frames, mismatchedFrames, emptyFrames);
+        System.out.printf("Pixels filled per frame: %d of %d (%.1f%%, %.1fx fewer), %.2f rectangles%n",
+                filledPixels / frames, panelPixels, 100.0 * filledPixels / frames / panelPixels,
+                (double)panelPixels * frames / Math.max(1, filledPixels), (double)rectangles / frames);
+        System.out.printf("Frame time: full %.1f us, changed parts only %.1f us%n",
+                fullNanos / 1000.0 / frames, partialNanos / 1000.0 / frames);
+        System.out.println("Allocated collecting changes: " + allocated + " bytes");
+        if(mismatchedFrames > 0 || allocated > 0) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,355 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * EngineBenchmarks class:
+ * Defines the benchmarks for the update, collision, drawing, and snapshot paths of the game.
+ * Each benchmark is run with a realistic sized game and with scaled up
+ * numbers of aliens and projectiles to show how the costs grow.
+ */
+public class EngineBenchmarks {
+    /**
+     * Alien formation sizes as {aliens per row, rows}. The first matches a normal game.
+     */
+    private static final int[][] FORMATIONS = {{10, 5}, {25, 20}, {100, 50}, {200, 100}};
+    /**
+     * Numbers of active projectiles to test with.
+     */
+    private static final int[] PROJECTILE_COUNTS = {100, 1000, 10000};
+    /**
+     * Numbers of entities in a single EntityStore to test the systems with.
+     */
+    private static final int[] ENTITY_COUNTS = {1000, 100_000};
+    /**
+     * Distance between aliens in the formation, including the padding.
+     */
+    private static final int ALIEN_SPACING = Alien.WIDTH + 10;
+    /**
+     * Left edge of a newly spawned formation.
+     */
+    private static final int FORMATION_X = 2 * Alien.WIDTH;
+    /**
+     * Top edge of a newly spawned formation.
+     */
+    private static final int FORMATION_Y = 50;
+
+    /**
+     * Adds every benchmark to the runner.
+     *
+     * @param runner The runner used to measure the benchmarks.
+     */
+    public static void registerAll(BenchmarkRunner runner) {
+        registerRectangleBenchmarks(runner);
+        for(int entities : ENTITY_COUNTS) {
+            registerEntityStoreBenchmarks(runner, entities, "entities=" + entities);
+        }
+        for(int[] formation : FORMATIONS) {
+            int aliens = formation[0] * formation[1];
+            registerAlienManagerBenchmarks(runner, formation, "aliens=" + aliens);
+            for(int projectiles : PROJECTILE_COUNTS) {
+                String params = "aliens=" + aliens + ",projectiles=" + projectiles;
+                registerProjectileBenchmarks(runner, formation, projectiles, params);
+                registerObjectManagerBenchmarks(runner, formation, projectiles, params);
+            }
+        }
+    }
+
+    /**
+     * Rectangle.isIntersecting with a mix of overlapping and separated rectangles.
+     *
+     * @param runner The runner used to measure the benchmarks.
+     */
+    private static void registerRectangleBenchmarks(BenchmarkRunner runner) {
+        Random random = new Random(42);
+        Rectangle[] rectangles = new Rectangle[1024];
+        for(int i = 0; i < rectangles.length; i++) {
+            rectangles[i] = new Rectangle(random.nextInt(100), random.nextInt(100), 20, 20);
+        }
+        int[] index = new int[1];
+        runner.run("Rectangle.isIntersecting", 1_000_000, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                index[0] = 0;
+            }
+
+            @Override
+            public long run() {
+                int i = index[0]++ & (rectangles.length - 1);
+                return rectangles[i].isIntersecting(rectangles[(i + 1) & (rectangles.length - 1)]) ? 1 : 0;
+            }
+        });
+    }
+
+    /**
+     * EntityStore.integrate moving every entity by its velocity, and EntityStore.translate
+     * moving every entity together, each as one operation over the whole store.
+     *
+     * @param runner The runner used to measure the benchmarks.
+     * @param entityCount Number of entities in the store.
+     * @param params Description of the parameters for the benchmark name.
+     */
+    private static void registerEntityStoreBenchmarks(BenchmarkRunner runner, int entityCount, String params) {
+        EntityStore[] store = new EntityStore[1];
+        runner.run("EntityStore.integrate(" + params + ")", 1000, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                store[0] = createStore(entityCount);
+            }
+
+            @Override
+            public long run() {
+                store[0].integrate(GamePanel.TIME_INTERVAL);
+                return store[0].getY(0);
+            }
+        });
+        runner.run("EntityStore.translate(" + params + ")", 1000, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                store[0] = createStore(entityCount);
+            }
+
+            @Override
+            public long run() {
+                store[0].translate(1, 1);
+                return store[0].getY(0);
+            }
+        });
+    }
+
+    /**
+     * AlienManager.getCollision with player projectiles spread over the formation,
+     * AlienManager.paint drawing the formation into an offscreen image,
+     * and AlienManager.update moving the formation and updating the fire timers.
+     *
+     * @param runner The runner used to measure the benchmarks.
+     * @param formation Size of the formation as {aliens per row, rows}.
+     * @param params Description of the parameters for the benchmark name.
+     */
+    private static void registerAlienManagerBenchmarks(BenchmarkRunner runner, int[] formation, String params) {
+        ObjectManager[] world = new ObjectManager[1];
+        int[] queryX = new int[256];
+        int[] queryY = new int[256];
+        int[] index = new int[1];
+        runner.run("AlienManager.getCollision(" + params + ")", 100_000, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                world[0] = createWorld(formation);
+                Random random = new Random(42);
+                for(int i = 0; i < queryX.length; i++) {
+                    queryX[i] = randomX(formation, random);
+                    queryY[i] = randomY(formation, random);
+                }
+                index[0] = 0;
+            }
+
+            @Override
+            public long run() {
+                int i = index[0]++ & (queryX.length - 1);
+                return world[0].getAlienManager().getCollision(queryX[i], queryY[i],
+                        ProjectilePool.WIDTH, ProjectilePool.HEIGHT) != null ? 1 : 0;
+            }
+        });
+        BufferedImage image = new BufferedImage(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        for(boolean sprites : new boolean[] {false, true}) {
+            runner.run("AlienManager.paint(" + params + ",sprites=" + sprites + ")", 1000, new BenchmarkRunner.Benchmark() {
+                @Override
+                public void setup() {
+                    SpriteCache.setEnabled(sprites);
+                    world[0] = createWorld(formation);
+                }
+
+                @Override
+                public long run() {
+                    world[0].getAlienManager().paint(g);
+                    return 1;
+                }
+            });
+        }
+        runner.run("AlienManager.update(" + params + ")", 200, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                world[0] = createWorld(formation);
+            }
+
+            @Override
+            public long run() {
+                world[0].getAlienManager().update(GamePanel.TIME_INTERVAL);
+                return world[0].getAlienCount();
+            }
+        });
+    }
+
+    /**
+     * ProjectilePool.update for every projectile in the scene as one operation. Half the
+     * projectiles are fired by the player and half by aliens.
+     *
+     * @param runner The runner used to measure the benchmarks.
+     * @param formation Size of the formation as {aliens per row, rows}.
+     * @param projectileCount Number of projectiles to update each operation.
+     * @param params Description of the parameters for the benchmark name.
+     */
+    private static void registerProjectileBenchmarks(BenchmarkRunner runner, int[] formation,
+                                                     int projectileCount, String params) {
+        ObjectManager[] world = new ObjectManager[1];
+        runner.run("ProjectilePool.update(" + params + ")", 20, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                world[0] = createWorld(formation, projectileCount);
+            }
+
+            @Override
+            public long run() {
+                world[0].getProjectiles().update(GamePanel.TIME_INTERVAL);
+                return world[0].getProjectileCount();
+            }
+        });
+    }
+
+    /**
+     * ObjectManager.update for a full tick of the game with the projectiles added to the world,
+     * and ObjectManager.writeState/readState taking and restoring a snapshot of the same world.
+     *
+     * @param runner The runner used to measure the benchmarks.
+     * @param formation Size of the formation as {aliens per row, rows}.
+     * @param projectileCount Number of projectiles to add to the world before the iteration.
+     * @param params Description of the parameters for the benchmark name.
+     */
+    private static void registerObjectManagerBenchmarks(BenchmarkRunner runner, int[] formation,
+                                                        int projectileCount, String params) {
+        ObjectManager[] world = new ObjectManager[1];
+        runner.run("ObjectManager.update(" + params + ")", 20, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                world[0] = createWorld(formation);
+                Random random = new Random(42);
+                for(int i = 0; i < projectileCount; i++) {
+                    addProjectile(world[0], formation, random, i % 2 == 0);
+                }
+            }
+
+            @Override
+            public long run() {
+                world[0].update(GamePanel.TIME_INTERVAL);
+                return world[0].getProjectileCount();
+            }
+        });
+        ByteBuffer[] buffer = new ByteBuffer[1];
+        runner.run("ObjectManager.writeState(" + params + ")", 20_000, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                world[0] = createWorld(formation, projectileCount);
+                buffer[0] = ByteBuffer.allocate(world[0].getStateSize());
+            }
+
+            @Override
+            public long run() {
+                buffer[0].clear();
+                world[0].writeState(buffer[0]);
+                return buffer[0].position();
+            }
+        });
+        runner.run("ObjectManager.readState(" + params + ")", 20_000, new BenchmarkRunner.Benchmark() {
+            @Override
+            public void setup() {
+                ObjectManager source = createWorld(formation, projectileCount);
+                buffer[0] = ByteBuffer.allocate(source.getStateSize());
+                source.writeState(buffer[0]);
+                world[0] = createWorld(formation);
+            }
+
+            @Override
+            public long run() {
+                buffer[0].flip();
+                world[0].readState(buffer[0]);
+                return world[0].getProjectileCount();
+            }
+        });
+    }
+
+    /**
+     * Creates a store of projectile sized entities at random positions, all moving down.
+     *
+     * @param entityCount Number of entities to add.
+     * @return The new store.
+     */
+    private static EntityStore createStore(int entityCount) {
+        EntityStore store = new EntityStore(entityCount);
+        Random random = new Random(42);
+        for(int i = 0; i < entityCount; i++) {
+            store.add(random.nextInt(GamePanel.PANEL_WIDTH), random.nextInt(GamePanel.PANEL_HEIGHT),
+                      ProjectilePool.WIDTH, ProjectilePool.HEIGHT, EntityStore.FACTION_ALIEN);
+            store.setVelocity(i, 0, ProjectilePool.MOVE_SPEED);
+        }
+        return store;
+    }
+
+    /**
+     * Creates a new world with the specified formation of aliens.
+     *
+     * @param formation Size of the formation as {aliens per row, rows}.
+     * @return The new world.
+     */
+    private static ObjectManager createWorld(int[] formation) {
+        ObjectManager world = new ObjectManager();
+        world.getAlienManager().spawnAliens(formation[0], formation[1]);
+        return world;
+    }
+
+    /**
+     * Creates a new world with the specified formation of aliens and projectiles
+     * spread over the formation, half moving up and half moving down.
+     *
+     * @param formation Size of the formation as {aliens per row, rows}.
+     * @param projectileCount Number of projectiles to add.
+     * @return The new world.
+     */
+    private static ObjectManager createWorld(int[] formation, int projectileCount) {
+        ObjectManager world = createWorld(formation);
+        Random random = new Random(42);
+        for(int i = 0; i < projectileCount; i++) {
+            addProjectile(world, formation, random, i % 2 == 0);
+        }
+        return world;
+    }
+
+    /**
+     * Adds a projectile to the world at a random location over the formation.
+     *
+     * @param world The world to add the projectile to.
+     * @param formation Size of the formation as {aliens per row, rows}.
+     * @param random Source of random positions.
+     * @param fromPlayer When true the projectile moves up as if fired by the player, otherwise down.
+     */
+    private static void addProjectile(ObjectManager world, int[] formation, Random random, boolean fromPlayer) {
+        world.getProjectiles().add(randomX(formation, random), randomY(formation, random),
+                fromPlayer ? ProjectilePool.OWNER_PLAYER : ProjectilePool.OWNER_ALIEN);
+    }
+
+    /**
+     * Picks a random x coordinate over the formation.
+     *
+     * @param formation Size of the formation as {aliens per row, rows}.
+     * @param random Source of random positions.
+     * @return The x coordinate.
+     */
+    private static int randomX(int[] formation, Random random) {
+        return FORMATION_X + random.nextInt(formation[0] * ALIEN_SPACING);
+    }
+
+    /**
+     * Picks a random y coordinate over the formation.
+     *
+     * @param formation Size of the formation as {aliens per row, rows}.
+     * @param random Source of random positions.
+     * @return The y coordinate.
+     */
+    private static int randomY(int[] formation, Random random) {
+        return FORMATION_Y + random.nextInt(formation[1] * ALIEN_SPACING);
+    }
+}
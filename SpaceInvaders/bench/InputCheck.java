@@ -0,0 +1,229 @@
+import java.awt.event.KeyEvent;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * InputCheck class:
+ * Checks the InputQueue. Events added by one thread must all be taken by another in the
+ * order they were added with their times. Within an update no event may be taken after a
+ * press of the same key, so a tap shorter than an update and two presses of fire in one update
+ * are both kept. A second thread then presses fire at random times while the game is updated
+ * every TIME_INTERVAL, and every press must be taken. The time from each press to the end of
+ * the update it was applied in is printed. Adding and taking events must not allocate.
+ * Exits with a non-zero status if any check fails.
+ */
+public class InputCheck {
+    /**
+     * Number of events passed between threads in the ordering check.
+     */
+    private static final int EVENTS = 1_000_000;
+    /**
+     * Number of events that can wait in the queue in the ordering check.
+     */
+    private static final int CAPACITY = 1024;
+    /**
+     * Number of updates played while fire is pressed at random times.
+     */
+    private static final int TICKS = 200;
+    /**
+     * Longest time between two fire presses in milliseconds.
+     */
+    private static final int MAX_PRESS_GAP = 60;
+
+    /**
+     * Runs the checks and prints the results.
+     *
+     * @param args Not used.
+     * @throws InterruptedException If interrupted while waiting for the thread adding events.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        boolean passed = checkOrdering();
+        passed &= checkUpdates();
+        passed &= checkLatency();
+        passed &= checkAllocation();
+        if(!passed) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Adds numbered events on one thread and takes them on this one, each in its own update.
+     * The thread adding events waits whenever the queue is full.
+     *
+     * @return True if every event was taken once, in order, with times that never go backwards.
+     * @throws InterruptedException If interrupted while waiting for the thread adding events.
+     */
+    private static boolean checkOrdering() throws InterruptedException {
+        InputQueue queue = new InputQueue(CAPACITY);
+        Thread producer = new Thread(() -> {
+            for(int i = 0; i < EVENTS; i++) {
+                while(!queue.offer(i, (i & 1) == 0, System.nanoTime())) {
+                    Thread.yield();
+                }
+            }
+        });
+        long startTime = System.nanoTime();
+        producer.start();
+        int expected = 0, mistakes = 0;
+        long lastTime = 0;
+        while(expected < EVENTS) {
+            queue.startUpdate();
+            if(!queue.poll()) {
+                Thread.yield();
+                continue;
+            }
+            if(queue.getKeyCode() != expected || queue.isPressed() != ((expected & 1) == 0) || queue.getTime() < lastTime) {
+                mistakes++;
+            }
+            lastTime = queue.getTime();
+            expected++;
+        }
+        producer.join();
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        queue.startUpdate();
+        boolean passed = mistakes == 0 && !queue.poll();
+        System.out.printf("Passed %d events between threads in %.2fs (%.1fM/s, %d full queue retries): %s%n",
+                EVENTS, seconds, EVENTS / seconds / 1e6, queue.getDroppedCount(), passed ? "in order" : mistakes + " wrong");
+        return passed;
+    }
+
+    /**
+     * Adds events as if several arrived between two updates, and checks which are taken in each update.
+     *
+     * @return True if each update stopped at events for keys already pressed in it.
+     */
+    private static boolean checkUpdates() {
+        InputQueue queue = new InputQueue(16);
+        queue.offer(KeyEvent.VK_LEFT, true, 1);
+        queue.offer(KeyEvent.VK_SPACE, true, 2);
+        queue.offer(KeyEvent.VK_LEFT, false, 3);
+        queue.offer(KeyEvent.VK_SPACE, true, 4);
+        queue.offer(KeyEvent.VK_SPACE, false, 5);
+        queue.offer(KeyEvent.VK_RIGHT, true, 6);
+        queue.offer(KeyEvent.VK_RIGHT, false, 7);
+        queue.offer(KeyEvent.VK_LEFT, true, 8);
+        String updates = takeUpdate(queue) + takeUpdate(queue) + takeUpdate(queue) + takeUpdate(queue);
+        String expected = "[37+ 32+][37- 32+][32- 39+][39- 37+]";
+        System.out.println("Events taken in each update: " + updates);
+        queue.offer(KeyEvent.VK_R, true, 9);
+        queue.clear();
+        queue.startUpdate();
+        boolean cleared = !queue.poll();
+        System.out.println("Clear throws away waiting events: " + (cleared ? "yes" : "no"));
+        return updates.equals(expected) && cleared;
+    }
+
+    /**
+     * Takes the events for one update.
+     *
+     * @param queue The queue to take from.
+     * @return The key code of each event taken followed by + for a press or - for a release.
+     */
+    private static String takeUpdate(InputQueue queue) {
+        StringBuilder taken = new StringBuilder("[");
+        queue.startUpdate();
+        while(queue.poll()) {
+            taken.append(taken.length() > 1 ? " " : "").append(queue.getKeyCode()).append(queue.isPressed() ? "+" : "-");
+        }
+        return taken.append("]").toString();
+    }
+
+    /**
+     * Presses fire at random times on another thread while a game is updated every TIME_INTERVAL,
+     * applying the events for each update the same as the GamePanel.
+     *
+     * @return True if every press was taken.
+     * @throws InterruptedException If interrupted while waiting for the thread adding events.
+     */
+    private static boolean checkLatency() throws InterruptedException {
+        InputQueue queue = new InputQueue(256);
+        long[] pressCount = new long[1];
+        Thread producer = new Thread(() -> {
+            GameRandom random = new GameRandom(3);
+            long end = System.nanoTime() + (TICKS - 10) * GamePanel.TIME_INTERVAL * 1_000_000L;
+            while(System.nanoTime() < end) {
+                LockSupport.parkNanos(random.nextInt(MAX_PRESS_GAP * 1_000_000));
+                queue.offer(KeyEvent.VK_SPACE, true, System.nanoTime());
+                queue.offer(KeyEvent.VK_SPACE, false, System.nanoTime());
+                pressCount[0]++;
+            }
+        });
+        HeadlessGame game = new HeadlessGame(3);
+        LatencyHistogram latency = new LatencyHistogram();
+        long nextTick = System.nanoTime();
+        producer.start();
+        for(int i = 0; i < TICKS || producer.isAlive(); i++) {
+            nextTick += GamePanel.TIME_INTERVAL * 1_000_000L;
+            LockSupport.parkNanos(nextTick - System.nanoTime());
+            long fireTime = -1;
+            queue.startUpdate();
+            while(queue.poll()) {
+                game.applyInput(queue.getKeyCode(), queue.isPressed());
+                if(queue.getKeyCode() == KeyEvent.VK_SPACE && queue.isPressed()) {
+                    fireTime = queue.getTime();
+                }
+            }
+            if(game.getOutcome() != GameOutcome.IN_PROGRESS) {
+                game.reset();
+            }
+            game.step();
+            if(fireTime >= 0) {
+                latency.record(System.nanoTime() - fireTime);
+            }
+        }
+        producer.join();
+        // Presses left in the queue after the last update are taken here so the count is complete.
+        for(int i = 0; i < 4; i++) {
+            queue.startUpdate();
+            while(queue.poll()) {
+                if(queue.getKeyCode() == KeyEvent.VK_SPACE && queue.isPressed()) {
+                    latency.record(0);
+                }
+            }
+        }
+        boolean passed = latency.getCount() == pressCount[0] && queue.getDroppedCount() == 0;
+        System.out.printf("Fire pressed %d times, %d taken: latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                pressCount[0], latency.getCount(), latency.getPercentile(0.5) / 1e6,
+                latency.getPercentile(0.99) / 1e6, latency.getMax() / 1e6);
+        return passed;
+    }
+
+    /**
+     * Adds and takes events on this thread after warming up, measuring the bytes allocated.
+     *
+     * @return True if nothing was allocated.
+     */
+    private static boolean checkAllocation() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+        InputQueue queue = new InputQueue(64);
+        long allocated = 0;
+        for(int round = 0; round < 2; round++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            long sum = 0;
+            for(int i = 0; i < 100_000; i++) {
+                queue.offer(i & 7, true, i);
+                queue.offer(i & 7, false, i);
+                for(int update = 0; update < 2; update++) {
+                    queue.startUpdate();
+                    while(queue.poll()) {
+                        sum += queue.getTime();
+                    }
+                }
+            }
+            allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+            if(sum < 0) {
+                System.out.println(sum);
+            }
+        }
+        System.out.println("Allocated adding and taking events: " + allocated + " bytes");
+        return allocated == 0;
+    }
+}
@@ -0,0 +1,216 @@
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * NetworkCheck class:
+ * Runs a GameServer and many HeadlessClients over loopback in one process. One client
+ * plays and the rest watch. Every client checks each view it rebuilds against the hash
+ * the server sent, so any mistake in the delta encoding shows up as a mismatch. Half way through,
+ * extra connections each send one message with a bad length or type, and the server must close
+ * each of them while it and every other client carry on. A second server is then flooded with
+ * key events by its player, and must drop the ones past its limit for each update. Prints the average update size compared
+ * with a full update, and exits with a non-zero status if any client rebuilt a view that did not
+ * match or stopped receiving updates, or a bad message was not disconnected.
+ */
+public class NetworkCheck {
+    /**
+     * Default number of clients, including the one that plays.
+     */
+    private static final int DEFAULT_CLIENTS = 50;
+    /**
+     * Default number of updates to run.
+     */
+    private static final int DEFAULT_TICKS = 500;
+    /**
+     * Default time between updates in milliseconds.
+     */
+    private static final int DEFAULT_TICK_MILLIS = 5;
+    /**
+     * Longest time to wait for the server to close a connection that sent a bad message.
+     */
+    private static final long DISCONNECT_TIMEOUT_NANOS = 2_000_000_000L;
+    /**
+     * Number of key events the flooding player sends at once.
+     */
+    private static final int FLOOD_INPUTS = 20_000;
+
+    /**
+     * Runs the check and prints the results.
+     *
+     * @param args Optional number of clients, updates, and milliseconds between updates.
+     * @throws Exception If the server or a client could not be started.
+     */
+    public static void main(String[] args) throws Exception {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TICKS;
+        int tickMillis = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TICK_MILLIS;
+
+        GameServer server = new GameServer(0, tickMillis, 2021);
+        Thread serverThread = new Thread(server, "GameServer");
+        serverThread.start();
+
+        HeadlessClient[] clients = new HeadlessClient[clientCount];
+        Thread[] clientThreads = new Thread[clientCount];
+        for(int i = 0; i < clientCount; i++) {
+            clients[i] = new HeadlessClient("localhost", server.getPort(), i == 0);
+            clientThreads[i] = new Thread(clients[i], "HeadlessClient-" + i);
+            clientThreads[i].start();
+        }
+        while(clients[0].getLatestTick() < ticks / 2 && serverThread.isAlive()) {
+            Thread.sleep(10);
+        }
+        ByteBuffer[] badMessages = createBadMessages();
+        int disconnected = 0;
+        for(ByteBuffer message : badMessages) {
+            if(isDisconnectedAfter(server.getPort(), message)) {
+                disconnected++;
+            }
+        }
+        int badMessagesTick = clients[0].getLatestTick();
+        while(clients[0].getLatestTick() < ticks && serverThread.isAlive()) {
+            Thread.sleep(10);
+        }
+        boolean serverRunning = serverThread.isAlive();
+        for(HeadlessClient client : clients) {
+            client.stop();
+        }
+        for(Thread thread : clientThreads) {
+            thread.join();
+        }
+        server.stop();
+        serverThread.join();
+
+        long states = 0, fullStates = 0, bytes = 0, mismatches = 0;
+        boolean allReceived = true;
+        for(HeadlessClient client : clients) {
+            states += client.getStatesReceived();
+            fullStates += client.getFullStatesReceived();
+            bytes += client.getBytesReceived();
+            mismatches += client.getHashMismatches();
+            allReceived &= client.getStatesReceived() > 0 && client.getLatestTick() > badMessagesTick;
+        }
+        NetworkView view = new NetworkView();
+        view.capture(server.getGame().getObjectManager());
+        System.out.println("Server: " + server.getSummary());
+        System.out.println("Player: " + clients[0].getSummary() + ", score " + server.getGame().getScore());
+        System.out.printf("All %d clients: %d states (%d full), %.1f bytes/state, full state now %d bytes, %d hash mismatches%n",
+                clientCount, states, fullStates, states > 0 ? (double)bytes / states : 0,
+                view.getMaxDeltaSize(), mismatches);
+        System.out.printf("Bad messages: %d of %d connections closed by the server, server %s%n",
+                disconnected, badMessages.length, serverRunning ? "still running" : "stopped");
+        if(disconnected != badMessages.length || !serverRunning) {
+            System.out.println("FAILED: the server did not drop only the connections that sent bad messages.");
+            System.exit(1);
+        }
+        if(!checkInputFlood(tickMillis)) {
+            System.out.println("FAILED: the server did not limit the key events kept for an update.");
+            System.exit(1);
+        }
+        if(mismatches > 0) {
+            System.out.println("FAILED: a client rebuilt a view that did not match the server.");
+            System.exit(1);
+        }
+        if(!allReceived) {
+            System.out.println("FAILED: a client stopped receiving updates.");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Creates messages a client could send that are not valid: an input message with only its type,
+     * lengths of zero, below zero, and larger than any buffer, an acknowledgement that is too long,
+     * and a message of an unknown type.
+     *
+     * @return The messages ready to be written.
+     */
+    private static ByteBuffer[] createBadMessages() {
+        ByteBuffer[] messages = {
+                ByteBuffer.allocate(5).putInt(1).put(GameServer.MESSAGE_INPUT),
+                ByteBuffer.allocate(4).putInt(0),
+                ByteBuffer.allocate(4).putInt(-8),
+                ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE),
+                ByteBuffer.allocate(13).putInt(GameServer.ACK_LENGTH + Integer.BYTES).put(GameServer.MESSAGE_ACK).putInt(1).putInt(2),
+                ByteBuffer.allocate(5).putInt(1).put((byte)9)
+        };
+        for(ByteBuffer message : messages) {
+            message.flip();
+        }
+        return messages;
+    }
+
+    /**
+     * Connects to the server, sends one message, and waits for the server to close the connection.
+     * Updates the server sends in the meantime are thrown away.
+     *
+     * @param port Port the server is listening on.
+     * @param message The message to send.
+     * @return True if the server closed the connection within DISCONNECT_TIMEOUT_NANOS.
+     * @throws IOException If the connection could not be made.
+     */
+    private static boolean isDisconnectedAfter(int port, ByteBuffer message) throws IOException {
+        try(SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+            ByteBuffer received = ByteBuffer.allocate(64 * 1024);
+            long deadline = System.nanoTime() + DISCONNECT_TIMEOUT_NANOS;
+            try {
+                while(message.hasRemaining()) {
+                    channel.write(message);
+                }
+                while(System.nanoTime() < deadline) {
+                    received.clear();
+                    if(channel.read(received) < 0) {
+                        return true;
+                    }
+                }
+            } catch(IOException e) {
+                // The server reset the connection, which also closes it.
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Starts a server, connects as its player, and sends FLOOD_INPUTS key events in one go, which is
+     * far more than the server keeps for a few updates. Updates the server sends are thrown away.
+     *
+     * @param tickMillis Time between updates in milliseconds.
+     * @return True if the server dropped events and was still running afterwards.
+     * @throws IOException If the server could not be started or the connection could not be made.
+     * @throws InterruptedException If interrupted while waiting for the server.
+     */
+    private static boolean checkInputFlood(int tickMillis) throws IOException, InterruptedException {
+        GameServer server = new GameServer(0, tickMillis, 2021);
+        Thread serverThread = new Thread(server, "GameServer-Flood");
+        serverThread.start();
+        boolean running;
+        try(SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            ByteBuffer flood = ByteBuffer.allocate(FLOOD_INPUTS * (Integer.BYTES + GameServer.INPUT_LENGTH));
+            for(int i = 0; i < FLOOD_INPUTS; i++) {
+                flood.putInt(GameServer.INPUT_LENGTH).put(GameServer.MESSAGE_INPUT).putInt(KeyEvent.VK_LEFT).put((byte)(i & 1));
+            }
+            flood.flip();
+            channel.configureBlocking(false);
+            ByteBuffer received = ByteBuffer.allocate(64 * 1024);
+            long deadline = System.nanoTime() + DISCONNECT_TIMEOUT_NANOS;
+            while(flood.hasRemaining() && System.nanoTime() < deadline) {
+                channel.write(flood);
+                received.clear();
+                channel.read(received);
+            }
+            Thread.sleep(10L * tickMillis);
+            running = serverThread.isAlive();
+        }
+        server.stop();
+        serverThread.join();
+        System.out.printf("Flooded with %d key events: %d dropped, server %s%n",
+                FLOOD_INPUTS, server.getInputsDropped(), running ? "still running" : "stopped");
+        return running && server.getInputsDropped() > 0;
+    }
+}
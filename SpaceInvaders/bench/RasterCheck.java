@@ -0,0 +1,139 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * RasterCheck class:
+ * Pixel-diff check that the FrameRasterizer draws the same thing as the Graphics drawing.
+ * Games are played with random input, and every so often the game is drawn with
+ * ObjectManager.paint() into a full size image and by the rasterizer at several sizes.
+ * Every pixel of each frame must have the colour of the image pixel at its centre,
+ * both with and without the sprite cache. The time to draw a frame each way is printed.
+ * Exits with a non-zero status if any pixel is different.
+ */
+public class RasterCheck {
+    /**
+     * Frame sizes that are checked, as width and height pairs.
+     */
+    private static final int[][] SIZES = {{84, 84}, {100, 150}, {GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT}, {37, 53}};
+    /**
+     * Number of games played.
+     */
+    private static final int GAMES = 5;
+    /**
+     * Number of updates between frames that are checked.
+     */
+    private static final int TICKS_BETWEEN_FRAMES = 37;
+    /**
+     * Number of frames checked in each game.
+     */
+    private static final int FRAMES_PER_GAME = 40;
+    /**
+     * Number of frames drawn each way when timing.
+     */
+    private static final int TIMED_FRAMES = 20_000;
+
+    /**
+     * Runs the check and prints the number of pixels compared and the timings.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        BufferedImage image = new BufferedImage(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        FrameRasterizer[] rasterizers = new FrameRasterizer[SIZES.length];
+        for(int i = 0; i < SIZES.length; i++) {
+            rasterizers[i] = new FrameRasterizer(SIZES[i][0], SIZES[i][1]);
+        }
+        long pixels = 0, differences = 0;
+        for(int sprites = 0; sprites < 2; sprites++) {
+            SpriteCache.setEnabled(sprites == 1);
+            for(int seed = 0; seed < GAMES; seed++) {
+                HeadlessGame game = new HeadlessGame(seed);
+                GameRandom random = new GameRandom(seed);
+                for(int frame = 0; frame < FRAMES_PER_GAME && game.getOutcome() == GameOutcome.IN_PROGRESS; frame++) {
+                    for(int tick = 0; tick < TICKS_BETWEEN_FRAMES; tick++) {
+                        VectorEnv.applyAction(game.getObjectManager().getPlayer(), random.nextInt(VectorEnv.ACTION_COUNT));
+                        game.step();
+                    }
+                    g.setColor(Color.BLACK);
+                    g.fillRect(0, 0, GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT);
+                    game.getObjectManager().paint(g);
+                    for(FrameRasterizer rasterizer : rasterizers) {
+                        differences += compare(rasterizer, rasterizer.render(game.getObjectManager()), image);
+                        pixels += rasterizer.getWidth() * rasterizer.getHeight();
+                    }
+                }
+            }
+        }
+        System.out.printf("Compared %d pixels at %d sizes with and without sprites: %d different%n",
+                pixels, SIZES.length, differences);
+        timeFrames(image, g);
+        if(differences > 0) {
+            System.out.println("FAILED: the rasterizer did not match the Graphics drawing.");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Counts the pixels of a frame that are not the colour of the image pixel at their centre.
+     *
+     * @param rasterizer The rasterizer that drew the frame in palette indexes.
+     * @param frame The frame.
+     * @param image The full size image drawn with Graphics.
+     * @return The number of pixels that are different.
+     */
+    private static int compare(FrameRasterizer rasterizer, byte[] frame, BufferedImage image) {
+        int differences = 0;
+        for(int row = 0; row < rasterizer.getHeight(); row++) {
+            for(int column = 0; column < rasterizer.getWidth(); column++) {
+                int expected = image.getRGB(rasterizer.getSampleX(column), rasterizer.getSampleY(row)) & 0xFFFFFF;
+                int actual = FrameRasterizer.getPaletteColour(frame[row * rasterizer.getWidth() + column]).getRGB() & 0xFFFFFF;
+                if(expected != actual) {
+                    differences++;
+                }
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Times drawing an 84x84 frame with the rasterizer against drawing the full size image with Graphics.
+     *
+     * @param image The full size image to draw into.
+     * @param g Graphics for the image.
+     */
+    private static void timeFrames(BufferedImage image, Graphics g) {
+        HeadlessGame game = new HeadlessGame(0);
+        for(int tick = 0; tick < 500; tick++) {
+            game.step();
+        }
+        FrameRasterizer rasterizer = new FrameRasterizer(84, 84);
+        SpriteCache.setEnabled(true);
+        for(int round = 0; round < 3; round++) {
+            long startTime = System.nanoTime();
+            long sum = 0;
+            for(int i = 0; i < TIMED_FRAMES; i++) {
+                sum += rasterizer.render(game.getObjectManager())[i % rasterizer.getFrame().length];
+            }
+            long rasterNanos = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for(int i = 0; i < TIMED_FRAMES; i++) {
+                g.setColor(Color.BLACK);
+                g.fillRect(0, 0, GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT);
+                game.getObjectManager().paint(g);
+            }
+            long graphicsNanos = System.nanoTime() - startTime;
+            if(round == 2) {
+                System.out.printf("Frame time: rasterizer 84x84 %.2f us, Graphics full size %.2f us%n",
+                        rasterNanos / 1000.0 / TIMED_FRAMES, graphicsNanos / 1000.0 / TIMED_FRAMES);
+            }
+            if(sum < 0) {
+                System.out.println(sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.Random;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * ShieldCheck class:
+ * Checks the bit mask shields. A shield that has not been hit must block exactly the
+ * same projectiles at the same times as a solid rectangle of the same size. Alien shots
+ * fired down the same column must wear a hole through a shield and then reach the player,
+ * and every shot must be stopped by the shield until there is a hole. The cost of testing projectiles
+ * against an eroded shield is printed next to the cost for a solid rectangle.
+ * Exits with a non-zero status if any check fails.
+ */
+public class ShieldCheck {
+    /**
+     * Number of random moves compared between a new shield and a rectangle.
+     */
+    private static final int COMPARISONS = 200_000;
+    /**
+     * Number of sweep tests timed for each kind of object.
+     */
+    private static final int TIMED_QUERIES = 5_000_000;
+    /**
+     * Shots fired down one column before giving up on reaching the player.
+     */
+    private static final int MAX_SHOTS = 100;
+
+    /**
+     * Runs the checks and prints the results.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        boolean passed = checkSolidShield();
+        passed &= checkErosion();
+        timeQueries();
+        if(!passed) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Compares a new shield with a rectangle of the same size for random projectile moves and positions.
+     *
+     * @return True if every result was the same.
+     */
+    private static boolean checkSolidShield() {
+        Obstacle shield = new Obstacle(new EntityStore(), 100, 100, 50, 20);
+        Rectangle rectangle = new Rectangle(100, 100, 50, 20);
+        Random random = new Random(42);
+        int mismatches = 0;
+        for(int i = 0; i < COMPARISONS; i++) {
+            int x = 80 + random.nextInt(90);
+            int fromY = 60 + random.nextInt(100);
+            int toY = fromY + random.nextInt(121) - 60;
+            if(shield.getSweepTime(x, fromY, x, toY, ProjectilePool.WIDTH, ProjectilePool.HEIGHT)
+                    != rectangle.getSweepTime(x, fromY, x, toY, ProjectilePool.WIDTH, ProjectilePool.HEIGHT)
+                    || shield.isIntersecting(x, fromY, ProjectilePool.WIDTH, ProjectilePool.HEIGHT)
+                    != rectangle.isIntersecting(x, fromY, ProjectilePool.WIDTH, ProjectilePool.HEIGHT)) {
+                mismatches++;
+            }
+        }
+        System.out.println("New shield matches a solid rectangle for " + COMPARISONS + " moves: "
+                + (mismatches == 0 ? "yes" : "no, " + mismatches + " differences"));
+        return mismatches == 0;
+    }
+
+    /**
+     * Fires alien shots one at a time down the same column through the middle shield until one reaches the player.
+     *
+     * @return True if the shots wore a hole through and only the shot after the hole opened reached the player.
+     */
+    private static boolean checkErosion() {
+        ObjectManager world = new ObjectManager(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, new GameRandom(1));
+        Player player = world.getPlayer();
+        Obstacle shield = world.getObstacles().get(1);
+        int x = shield.getCentreX() - ProjectilePool.WIDTH / 2;
+        player.setPosition(x + ProjectilePool.WIDTH / 2 - Player.WIDTH / 2, player.getY());
+        int shots = 0;
+        boolean consistent = true;
+        boolean hitPlayer = false;
+        while(!hitPlayer && shots < MAX_SHOTS) {
+            boolean holeBefore = shield.getSweepTime(x, shield.getY() - 40, x, player.getY(),
+                    ProjectilePool.WIDTH, ProjectilePool.HEIGHT) < 0;
+            int lives = player.getLives();
+            world.getProjectiles().add(x, shield.getY() - 40, ProjectilePool.OWNER_ALIEN);
+            shots++;
+            while(world.getProjectileCount() > 0) {
+                world.getProjectiles().update(GamePanel.TIME_INTERVAL);
+            }
+            hitPlayer = player.getLives() < lives;
+            // Each shot must be stopped by the shield until there is a hole, and then go through it.
+            consistent &= hitPlayer == holeBefore;
+        }
+        boolean passed = hitPlayer && consistent && shots > 1;
+        System.out.println("Alien shots down one column wear through the shield and hit the player: "
+                + (passed ? "yes" : "no") + " (" + shots + " shots)");
+        return passed;
+    }
+
+    /**
+     * Times sweep tests of projectiles falling onto a solid rectangle and onto a shield worn away by many craters.
+     */
+    private static void timeQueries() {
+        Rectangle rectangle = new Rectangle(100, 100, 50, 20);
+        Obstacle shield = new Obstacle(new EntityStore(), 100, 100, 50, 20);
+        Random random = new Random(42);
+        for(int i = 0; i < 40; i++) {
+            shield.carve(random.nextInt(50) - 4, random.nextInt(20) - 3);
+        }
+        int[] queryX = new int[1024];
+        for(int i = 0; i < queryX.length; i++) {
+            queryX[i] = 90 + random.nextInt(70);
+        }
+        for(int round = 0; round < 3; round++) {
+            long rectangleNanos = time(rectangle, queryX);
+            long shieldNanos = time(shield, queryX);
+            if(round == 2) {
+                System.out.printf("Sweep test: solid rectangle %.1f ns, eroded shield %.1f ns%n",
+                        (double)rectangleNanos / TIMED_QUERIES, (double)shieldNanos / TIMED_QUERIES);
+            }
+        }
+    }
+
+    /**
+     * Times sweep tests of projectiles moving down by one update's distance from above the object.
+     *
+     * @param target The object to test against.
+     * @param queryX X coordinates to test from.
+     * @return The total time in nanoseconds.
+     */
+    private static long time(Rectangle target, int[] queryX) {
+        int distance = ProjectilePool.MOVE_SPEED * GamePanel.TIME_INTERVAL / 1000;
+        long hits = 0;
+        long startTime = System.nanoTime();
+        for(int i = 0; i < TIMED_QUERIES; i++) {
+            int x = queryX[i & (queryX.length - 1)];
+            int fromY = 80 + (i % 40);
+            hits += target.getSweepTime(x, fromY, x, fromY + distance, ProjectilePool.WIDTH, ProjectilePool.HEIGHT) >= 0 ? 1 : 0;
+        }
+        long nanos = System.nanoTime() - startTime;
+        if(hits < 0) {
+            System.out.println(hits);
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,181 @@
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * TimeStepCheck class:
+ * Checks that long time steps can be used for batch runs. First, single projectiles are
+ * fired with a step long enough to jump far past their targets, and each one must still
+ * hit the first object in its path: the lowest alien in a column, an obstacle in front of
+ * the player, and the player. The player is moved right for the same time with steps of
+ * different lengths, including ones that do not divide evenly into pixels, and must travel
+ * the same distance with each. Then the same seeded games are played with the normal time
+ * step and with longer ones, and the outcomes, scores, game time, and speed are printed side
+ * by side for comparison. The player stands still away from the obstacles and fires at a
+ * fixed interval, so the only difference between the runs is the time step.
+ * Exits with a non-zero status if any projectile misses or the player moves a different distance.
+ */
+public class TimeStepCheck {
+    /**
+     * Time step long enough for a projectile to move much further than an alien and the gap between aliens.
+     */
+    private static final int LONG_TIME_STEP = 500;
+    /**
+     * Time steps the games are compared with.
+     */
+    private static final int[] TIME_STEPS = {GamePanel.TIME_INTERVAL, 50, 100, 200};
+    /**
+     * Default number of games for each time step.
+     */
+    private static final int DEFAULT_GAMES = 500;
+    /**
+     * Game time in milliseconds before a game is stopped.
+     */
+    private static final int MAX_GAME_TIME = 1_000_000;
+    /**
+     * Time in milliseconds between the player's shots.
+     */
+    private static final int FIRE_INTERVAL = 500;
+    /**
+     * X coordinate the player stands at, between the first two obstacles.
+     */
+    private static final int PLAYER_X = 4 * Player.WIDTH;
+    /**
+     * Time steps the player is moved with, each of which divides evenly into MOVE_TIME.
+     */
+    private static final int[] MOVE_TIME_STEPS = {1, 3, GamePanel.TIME_INTERVAL, 25, 75};
+    /**
+     * Time in milliseconds the player is moved for.
+     */
+    private static final int MOVE_TIME = 300;
+
+    /**
+     * Runs the checks and prints the comparison.
+     *
+     * @param args Optional number of games for each time step.
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+        boolean passed = checkPlayerProjectile();
+        passed &= checkAlienProjectile(true);
+        passed &= checkAlienProjectile(false);
+        passed &= checkPlayerMovement();
+
+        System.out.printf("%-10s %8s %8s %8s %8s %10s %10s %10s%n",
+                "step (ms)", "won", "lives", "invaded", "running", "avg score", "avg time s", "games/s");
+        for(int timeStep : TIME_STEPS) {
+            int[] outcomes = new int[GameOutcome.values().length];
+            long totalScore = 0, totalTime = 0;
+            long startTime = System.nanoTime();
+            HeadlessGame game = new HeadlessGame(0, timeStep);
+            for(int i = 0; i < games; i++) {
+                game.reset(i);
+                play(game);
+                outcomes[game.getOutcome().ordinal()]++;
+                totalScore += game.getScore();
+                totalTime += (long)game.getTicks() * timeStep;
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            System.out.printf("%-10d %8d %8d %8d %8d %10.1f %10.1f %10.1f%n", timeStep,
+                    outcomes[GameOutcome.WON.ordinal()], outcomes[GameOutcome.LOST_ALL_LIVES.ordinal()],
+                    outcomes[GameOutcome.LOST_BY_INVASION.ordinal()], outcomes[GameOutcome.IN_PROGRESS.ordinal()],
+                    (double)totalScore / games, totalTime / 1000.0 / games, games / seconds);
+        }
+        if(!passed) {
+            System.out.println("FAILED: a projectile passed through its target or the player moved a different distance.");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Plays a game with the player standing still and firing at a fixed interval of game time.
+     *
+     * @param game The game to play, which has just been reset.
+     */
+    private static void play(HeadlessGame game) {
+        ObjectManager world = game.getObjectManager();
+        Player player = world.getPlayer();
+        player.setPosition(PLAYER_X, player.getY());
+        player.storePreviousPosition();
+        int timeStep = game.getTimeStep();
+        while(game.getOutcome() == GameOutcome.IN_PROGRESS && (long)game.getTicks() * timeStep < MAX_GAME_TIME) {
+            if((long)game.getTicks() * timeStep % FIRE_INTERVAL < timeStep) {
+                game.applyInput(KeyEvent.VK_SPACE, true);
+            }
+            game.step();
+        }
+    }
+
+    /**
+     * Fires a player projectile up a column of aliens with a long step and checks the lowest alien is the one hit.
+     *
+     * @return True if the lowest alien was hit and no other.
+     */
+    private static boolean checkPlayerProjectile() {
+        ObjectManager world = new ObjectManager(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, new GameRandom(1));
+        AlienManager alienManager = world.getAlienManager();
+        world.getProjectiles().clear();
+        int x = alienManager.getTopLeft().x + Alien.WIDTH / 2;
+        int lowestY = alienManager.getLowestAlienY();
+        world.getProjectiles().add(x, lowestY + Alien.HEIGHT + 5, ProjectilePool.OWNER_PLAYER);
+        Rectangle lowest = alienManager.getCollision(x, lowestY, 1, 1);
+        int aliens = world.getAlienCount();
+        world.getProjectiles().update(LONG_TIME_STEP);
+        boolean passed = lowest != null && ((Alien)lowest).isExpired() && world.getScore() == (((Alien)lowest).getType() + 1) * 3
+                && world.getProjectileCount() == 0;
+        System.out.println("Player projectile hits lowest alien with a " + LONG_TIME_STEP + "ms step: "
+                + (passed ? "yes" : "no") + " (" + aliens + " aliens)");
+        return passed;
+    }
+
+    /**
+     * Fires an alien projectile down at the player with a long step, either through the middle
+     * obstacle or beside it, and checks the first object in the way is the one hit.
+     *
+     * @param throughObstacle True to fire through the middle obstacle, false to miss the obstacles.
+     * @return True if the obstacle or the player was hit as expected.
+     */
+    private static boolean checkAlienProjectile(boolean throughObstacle) {
+        ObjectManager world = new ObjectManager(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, new GameRandom(1));
+        Player player = world.getPlayer();
+        world.getProjectiles().clear();
+        int x = throughObstacle ? GamePanel.PANEL_WIDTH / 2 : Player.WIDTH;
+        player.setPosition(x - Player.WIDTH / 2, player.getY());
+        int startY = player.getY() - 140;
+        world.getProjectiles().add(x, startY, ProjectilePool.OWNER_ALIEN);
+        int lives = player.getLives();
+        world.getProjectiles().update(LONG_TIME_STEP);
+        boolean playerHit = player.getLives() < lives;
+        boolean passed = playerHit != throughObstacle && world.getProjectileCount() == 0;
+        System.out.println("Alien projectile " + (throughObstacle ? "stopped by obstacle" : "hits player")
+                + " with a " + LONG_TIME_STEP + "ms step: " + (passed ? "yes" : "no"));
+        return passed;
+    }
+
+    /**
+     * Holds right for MOVE_TIME with each of the MOVE_TIME_STEPS and checks the player moves the same distance.
+     *
+     * @return True if the player moved the same distance with every time step.
+     */
+    private static boolean checkPlayerMovement() {
+        int[] distances = new int[MOVE_TIME_STEPS.length];
+        boolean passed = true;
+        for(int i = 0; i < MOVE_TIME_STEPS.length; i++) {
+            ObjectManager world = new ObjectManager(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, new GameRandom(1));
+            Player player = world.getPlayer();
+            int startX = player.getX();
+            player.handleInput(KeyEvent.VK_RIGHT, true);
+            for(int time = 0; time < MOVE_TIME; time += MOVE_TIME_STEPS[i]) {
+                player.update(MOVE_TIME_STEPS[i]);
+            }
+            distances[i] = player.getX() - startX;
+            passed &= distances[i] == distances[0];
+        }
+        System.out.println("Player moves the same distance with steps of " + Arrays.toString(MOVE_TIME_STEPS)
+                + "ms: " + (passed ? "yes" : "no") + " " + Arrays.toString(distances));
+        return passed;
+    }
+}
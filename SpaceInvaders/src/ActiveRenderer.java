@@ -0,0 +1,101 @@
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * ActiveRenderer class:
+ * Draws frames directly from the game loop thread onto a Canvas using a
+ * BufferStrategy, instead of asking Swing to repaint later on its own thread.
+ * Each frame is drawn into the back buffer and then shown straight away,
+ * which avoids waiting in the Swing event queue between a frame being ready
+ * and it appearing on the screen.
+ */
+public class ActiveRenderer {
+    /**
+     * Number of buffers used for the BufferStrategy. 2 gives a single back buffer.
+     */
+    private static final int BUFFER_COUNT = 2;
+    /**
+     * The canvas that frames are shown on.
+     */
+    private Canvas canvas;
+    /**
+     * The buffers for the canvas, created once the canvas is displayable.
+     */
+    private BufferStrategy bufferStrategy;
+    /**
+     * The panel that draws the contents of each frame.
+     */
+    private GamePanel gamePanel;
+
+    /**
+     * Checks if active rendering should be used. It requires a display with accelerated
+     * images, and can be turned off by setting the spaceinvaders.passiveRendering property to true.
+     *
+     * @return True if active rendering is available.
+     */
+    public static boolean isSupported() {
+        if(GraphicsEnvironment.isHeadless() || Boolean.getBoolean("spaceinvaders.passiveRendering")) {
+            return false;
+        }
+        GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return configuration.getImageCapabilities().isAccelerated();
+    }
+
+    /**
+     * Creates the canvas for the panel. The canvas does not take focus, so keys
+     * still go to the frame, and ignores repaints because all drawing is done by render().
+     *
+     * @param gamePanel The panel that draws the contents of each frame.
+     */
+    public ActiveRenderer(GamePanel gamePanel) {
+        this.gamePanel = gamePanel;
+        canvas = new Canvas();
+        canvas.setPreferredSize(gamePanel.getPreferredSize());
+        canvas.setBackground(Color.BLACK);
+        canvas.setIgnoreRepaint(true);
+        canvas.setFocusable(false);
+    }
+
+    /**
+     * Gets the canvas so it can be added to the panel.
+     *
+     * @return The canvas that frames are shown on.
+     */
+    public Canvas getCanvas() {
+        return canvas;
+    }
+
+    /**
+     * Draws and shows one frame. The first time the canvas is displayable the buffers are created.
+     * Drawing is repeated if the buffer contents were lost, which can happen when the display changes.
+     *
+     * @param alpha How far the frame is between the previous and the current update, from 0 to 1.
+     * @return False if the canvas is not displayable yet and nothing was drawn.
+     */
+    public boolean render(float alpha) {
+        if(bufferStrategy == null) {
+            if(!canvas.isDisplayable()) {
+                return false;
+            }
+            canvas.createBufferStrategy(BUFFER_COUNT);
+            bufferStrategy = canvas.getBufferStrategy();
+        }
+        do {
+            do {
+                Graphics g = bufferStrategy.getDrawGraphics();
+                try {
+                    gamePanel.drawFrame(g, alpha);
+                } finally {
+                    g.dispose();
+                }
+            } while(bufferStrategy.contentsRestored());
+            bufferStrategy.show();
+        } while(bufferStrategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        return true;
+    }
+}
@@ -1,4 +1,5 @@
 import java.awt.*;
+import java.nio.ByteBuffer;
 
 /**
  * Space Invaders
@@ -7,13 +8,17 @@ import java.awt.*;
  * Alien class:
  * Defines an alien that will be controlled by the Alien Manager.
  * Aliens die after they are hit by a projectile, and can fire
- * projectiles of their own on a random interval of 30s or less.
+ * projectiles of their own on a random interval of 20s or less.
  */
 public class Alien extends Rectangle implements CollidableObject {
     /**
      * Defines the number of different alien types and the colours associated with them.
      */
-    private final Color[] ALIEN_TYPE_COLOURS = {Color.RED, Color.BLUE, Color.YELLOW, Color.CYAN, Color.ORANGE};
+    private static final Color[] ALIEN_TYPE_COLOURS = {Color.RED, Color.BLUE, Color.YELLOW, Color.CYAN, Color.ORANGE};
+    /**
+     * Number of different alien types.
+     */
+    public static final int TYPE_COUNT = ALIEN_TYPE_COLOURS.length;
     /**
      * Width of the alien.
      */
@@ -23,55 +28,53 @@ public class Alien extends Rectangle implements CollidableObject {
      */
     public static final int HEIGHT = 20;
     /**
-     * Used to determine if the Alien is ready to be destroyed.
+     * Longest time between firing projectiles in milliseconds.
      */
-    private boolean isExpired;
+    public static final int MAX_FIRE_INTERVAL = 20000;
     /**
-     * Reference to the objectManager for creating projectiles and applying score on death.
+     * Number of bytes written by writeState().
      */
-    private ObjectManager objectManager;
+    public static final int STATE_SIZE = 1;
     /**
-     * The colour to show for this alien based on the type.
+     * Reference to the objectManager for creating projectiles and applying score on death.
      */
-    private Color drawColor;
+    private ObjectManager objectManager;
     /**
      * The type used to determine both colour and amount of score on destruction.
      */
     private int type;
-    /**
-     * Timer to track how long between firing projectiles.
-     */
-    private ActionTimer fireTimer;
 
     /**
      * Creates an alien with the specified properties ready to start playing.
+     * The AlienManager adds aliens to its store in formation order, so the alien's slot in
+     * the store is also its index in the formation. The alien is alive while its health is above 0.
      *
-     * @param position Initial position to spawn the alien at.
+     * @param store The AlienManager's store to add the alien to.
+     * @param x Initial x coordinate to spawn the alien at.
+     * @param y Initial y coordinate to spawn the alien at.
      * @param objectManager Reference to the ObjectManager for spawning projectiles and applying score changes.
      * @param type The type to make the alien. Changes colour and score associated.
      */
-    public Alien(Position position, ObjectManager objectManager, int type) {
-        super(position, WIDTH, HEIGHT);
-        isExpired = false;
+    public Alien(EntityStore store, int x, int y, ObjectManager objectManager, int type) {
+        super(store, x, y, WIDTH, HEIGHT, EntityStore.FACTION_ALIEN);
+        store.setHealth(entity, 1);
         this.objectManager = objectManager;
         this.type = type;
-        drawColor = ALIEN_TYPE_COLOURS[type];
-        fireTimer = new ActionTimer((int)(Math.random()*20000));
     }
 
     /**
-     * Updates the timer for firing shots. When it triggers, a
-     * projectile is fired down and the timer is reset with a
-     * new random interval.
+     * Fires a projectile down. The AlienManager decides when each alien fires.
+     * The projectile starts from where the alien was when its fire time arrived
+     * part way through the update, so long updates fire from the same places as short ones.
+     * Called after the alien has been moved for this update.
      *
+     * @param late How long ago in milliseconds the alien was due to fire, up to deltaTime.
      * @param deltaTime Time since last update.
      */
-    public void update(int deltaTime) {
-        fireTimer.update(deltaTime);
-        if(fireTimer.isTriggered()) {
-            objectManager.addProjectile(this);
-            fireTimer.setTimer((int)(Math.random()*20000));
-        }
+    public void fire(int late, int deltaTime) {
+        Position moveOffset = objectManager.getAlienManager().getMoveOffset();
+        objectManager.getProjectiles().add(getCentreX() - (late > 0 ? moveOffset.x * late / deltaTime : 0),
+                getCentreY() - (late > 0 ? moveOffset.y * late / deltaTime : 0), ProjectilePool.OWNER_ALIEN);
     }
 
     /**
@@ -80,8 +83,43 @@ public class Alien extends Rectangle implements CollidableObject {
      * @param g Reference to the Graphics object for rendering.
      */
     public void paint(Graphics g) {
-        g.setColor(drawColor);
-        g.fillRect(position.x, position.y, width, height);
+        draw(g, type, getX(), getY());
+    }
+
+    /**
+     * Draws an alien of the specified type, used to draw aliens straight from the AlienManager's store.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param type The type of alien.
+     * @param x X coordinate of the top left corner.
+     * @param y Y coordinate of the top left corner.
+     */
+    public static void draw(Graphics g, int type, int x, int y) {
+        if(SpriteCache.isEnabled()) {
+            g.drawImage(SpriteCache.getAlienSprite(type), x, y, null);
+        } else {
+            g.setColor(ALIEN_TYPE_COLOURS[type]);
+            g.fillRect(x, y, WIDTH, HEIGHT);
+        }
+    }
+
+    /**
+     * Gets the type used to determine both colour and amount of score on destruction.
+     *
+     * @return The type of the alien.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Gets the colour used to draw aliens of the specified type.
+     *
+     * @param type The type of alien.
+     * @return The colour for the type.
+     */
+    public static Color getTypeColour(int type) {
+        return ALIEN_TYPE_COLOURS[type];
     }
 
     /**
@@ -90,16 +128,60 @@ public class Alien extends Rectangle implements CollidableObject {
      * @return True when the alien should be destroyed.
      */
     public boolean isExpired() {
-        return isExpired;
+        return store.getHealth(entity) <= 0;
+    }
+
+    /**
+     * Gets the index of the alien in the AlienManager's formation.
+     *
+     * @return The formation index.
+     */
+    public int getFormationIndex() {
+        return entity;
     }
 
     /**
-     * When hit with a projectile the alien should expire
-     * and increase the score relative to the type of the alien.
+     * Mixes the alien's formation index and position into a hash.
+     *
+     * @param hash The hash so far.
+     * @return The new hash.
+     */
+    public long hashState(long hash) {
+        hash = StateHash.mix(hash, entity);
+        return StateHash.mix(hash, ((long)getX() << 32) | (getY() & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Writes whether the alien has been destroyed. The position is not written because
+     * the AlienManager can work it out from the formation, and it keeps track of when the alien fires.
+     *
+     * @param buffer The buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.put((byte)(isExpired() ? 1 : 0));
+    }
+
+    /**
+     * Restores the alien from state written by writeState().
+     *
+     * @param buffer The buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+        store.setHealth(entity, buffer.get() != 0 ? 0 : 1);
+    }
+
+    /**
+     * When hit with a projectile the alien's health drops to 0 so it expires,
+     * and the score increases relative to the type of the alien.
+     * Only the first hit counts: the AlienManager is told so it can update the formation bounds,
+     * and an alien that has already expired gives no more points.
      */
     @Override
     public void hit() {
-        isExpired = true;
-        objectManager.increaseScore((type+1)*3);
+        if(!isExpired()) {
+            store.setHealth(entity, 0);
+            objectManager.getAlienManager().alienHit(this);
+            objectManager.increaseScore((type+1)*3);
+        }
     }
 }
@@ -1,6 +1,8 @@
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Space Invaders
@@ -10,28 +12,117 @@ import java.util.List;
  * Manages a group of aliens by spawning them in,
  * it moves them gradually down the screen moving left
  * to right.
+ * The aliens' components are kept in an EntityStore in formation order, so moving
+ * and drawing them loops straight through its arrays.
  */
 public class AlienManager {
     /**
-     * List of aliens that are currently spawned in and alive.
+     * Components of every alien that was spawned, with each alien's slot the same as its formation index.
      */
-    private List<Alien> aliens;
+    private EntityStore entities;
+    /**
+     * Number of aliens that are alive, including any hit since the last update that have not been removed yet.
+     */
+    private int aliveCount;
+    /**
+     * Formation indexes of aliens hit since the last update, which are removed during the next update.
+     */
+    private int[] pendingRemovals;
+    /**
+     * Number of formation indexes in pendingRemovals.
+     */
+    private int pendingRemovalCount;
     /**
      * Reference to the ObjectManager for passing to the Aliens.
      */
     private ObjectManager objectManager;
     /**
-     * The unit vector indicating direction of motion.
+     * The direction the aliens are currently moving in.
+     */
+    private MoveDirection curMoveDir;
+    /**
+     * The amount all aliens are moved by during the current update.
      */
-    private Position curMoveDir;
+    private Position moveOffset;
     /**
-     * The speed to move at in direction of the unit vector.
+     * The speed to move at in direction of the unit vector, in pixels per GamePanel.TIME_INTERVAL.
      */
     private final int MOVE_SPEED = 1;
+    /**
+     * The gap between aliens horizontally and vertically.
+     */
+    private static final int ALIEN_PADDING = 10;
+    /**
+     * The formation turns around when moving left once its leftmost living alien reaches this x coordinate.
+     */
+    private static final int LEFT_EDGE = 2*Alien.WIDTH;
+    /**
+     * The formation turns around when moving right once its rightmost living alien is this close to the right side.
+     */
+    private static final int RIGHT_EDGE_MARGIN = Alien.WIDTH+ALIEN_PADDING;
+    /**
+     * Largest formation in pixels that is drawn from a single cached image.
+     * Larger formations draw each alien's sprite separately instead.
+     */
+    private static final int MAX_FORMATION_IMAGE_PIXELS = 2048*2048;
+    /**
+     * Every MoveDirection indexed by ordinal, kept so that restoring state does not copy MoveDirection.values().
+     */
+    private static final MoveDirection[] MOVE_DIRECTIONS = MoveDirection.values();
     /**
      * Top left corner of the AlienManager used for tracking where the whole grid of aliens are.
      */
     private Position topLeft;
+    /**
+     * Top left corner before the most recent update, used to interpolate drawing between updates.
+     */
+    private Position previousTopLeft;
+    /**
+     * A view of every alien that was spawned indexed by column*formationRows+row, including dead aliens.
+     */
+    private Alien[] formation;
+    /**
+     * Bit for each formation index that is set while the alien at that index is alive.
+     */
+    private BitSet formationAlive;
+    /**
+     * Number of columns and rows of aliens in the formation.
+     */
+    private int formationColumns, formationRows;
+    /**
+     * Number of aliens that have not been hit in each column of the formation.
+     */
+    private int[] columnAliveCounts;
+    /**
+     * Number of aliens that have not been hit in each row of the formation.
+     */
+    private int[] rowAliveCounts;
+    /**
+     * The leftmost and rightmost columns that still have aliens that have not been hit.
+     * When every alien has been hit firstAliveColumn is formationColumns and lastAliveColumn is -1.
+     */
+    private int firstAliveColumn, lastAliveColumn;
+    /**
+     * The lowest row that still has aliens that have not been hit, or -1 when every alien has been hit.
+     */
+    private int lastAliveRow;
+    /**
+     * Image of all the living aliens at their place in the formation, drawn at topLeft.
+     * Created the first time the aliens are drawn, and reused after respawning unless the formation size changes.
+     */
+    private BufferedImage formationImage;
+    /**
+     * Graphics kept for redrawing the formationImage without creating a new one each time.
+     */
+    private Graphics2D formationGraphics;
+    /**
+     * True when aliens have been destroyed since the formationImage was last drawn.
+     */
+    private boolean formationImageDirty;
+    /**
+     * Increased every time aliens are destroyed or the formation is replaced, so the panel knows when to draw it again.
+     */
+    private int formationVersion;
     /**
      * When true the last movement for left/right was moving left. It means that the next should be right.
      */
@@ -41,9 +132,14 @@ public class AlienManager {
      */
     private int downNextTrigger;
     /**
-     * Stores the lowest alien Y coordinate for checking for alien invasions.
+     * Movement carried over from earlier updates that did not add up to a whole pixel,
+     * in pixels multiplied by GamePanel.TIME_INTERVAL.
+     */
+    private int moveRemainder;
+    /**
+     * Decides when each alien fires, indexed by formation index.
      */
-    private int lowestAlienY;
+    private FireScheduler fireScheduler;
 
     /**
      * Sets up the manager and spawns in an example set of aliens.
@@ -51,8 +147,11 @@ public class AlienManager {
      * @param objectManager Reference to the ObjectManager to pass to the aliens.
      */
     public AlienManager(ObjectManager objectManager) {
-        aliens = new ArrayList<>();
+        entities = new EntityStore();
+        fireScheduler = new FireScheduler(entities, 0);
         this.objectManager = objectManager;
+        curMoveDir = MoveDirection.RIGHT;
+        moveOffset = new Position(0, 0);
         reset();
     }
 
@@ -62,78 +161,483 @@ public class AlienManager {
      */
     public void reset() {
         spawnAliens();
-        curMoveDir = Position.RIGHT;
+        curMoveDir = MoveDirection.RIGHT;
         lastLeft = false;
         downNextTrigger = 5;
-        lowestAlienY = 0;
+        moveRemainder = 0;
     }
 
     /**
-     * Creates a grid of aliens to fill the area horizontally, with 5 rows.
+     * Creates a grid of aliens to fill the width of the game area, with 5 rows.
      * Each row has a different type.
      */
     public void spawnAliens() {
-        aliens.clear();
-        int padding = 10;
-        int rowWidth = (GamePanel.PANEL_WIDTH-4*Alien.WIDTH)/(Alien.WIDTH+padding);
-        int rows = 5;
+        spawnAliens((objectManager.getWidth()-4*Alien.WIDTH)/(Alien.WIDTH+ALIEN_PADDING), 5);
+    }
+
+    /**
+     * Creates a grid of aliens with the specified size. Each row has a different type,
+     * repeating after every 5 rows. Grids wider or taller than the game area can be used
+     * for stress testing.
+     *
+     * @param rowWidth Number of aliens in each row.
+     * @param rows Number of rows of aliens.
+     */
+    public void spawnAliens(int rowWidth, int rows) {
+        entities.clear();
+        entities.ensureCapacity(rowWidth*rows);
+        int padding = ALIEN_PADDING;
         int startX = 2*Alien.WIDTH;
         int startY = 50;
         topLeft = new Position(startX, startY);
+        previousTopLeft = new Position(topLeft);
+        formationColumns = rowWidth;
+        formationRows = rows;
+        formation = new Alien[rowWidth*rows];
+        formationAlive = new BitSet(formation.length);
+        fireScheduler.clear(formation.length);
+        if(pendingRemovals == null || pendingRemovals.length < formation.length) {
+            pendingRemovals = new int[formation.length];
+        }
         for(int x = 0; x < rowWidth; x++) {
             for(int y = 0; y < rows; y++) {
-                aliens.add(new Alien(new Position(startX+x*(Alien.WIDTH+padding),
-                                                 startY+y*(Alien.HEIGHT+padding)),objectManager,y%5));
+                Alien alien = new Alien(entities, startX+x*(Alien.WIDTH+padding),
+                                        startY+y*(Alien.HEIGHT+padding), objectManager, y%5);
+                formation[alien.getFormationIndex()] = alien;
+                fireScheduler.schedule(alien.getFormationIndex(), objectManager.getRandom().nextInt(Alien.MAX_FIRE_INTERVAL));
             }
         }
+        formationAlive.set(0, formation.length);
+        aliveCount = formation.length;
+        columnAliveCounts = new int[rowWidth];
+        rowAliveCounts = new int[rows];
+        countAliveAliens();
+        formationImageDirty = true;
+        formationVersion++;
     }
 
     /**
-     * Gets the amount to move all the aliens and then applies to them all.
-     * The aliens are removed if they were destroyed since last update.
-     * They are also updated to manage their individual attack timers.
-     * Finally, the state information for moving the whole group of aliens is
-     * updated to correctly change direction.
+     * Called by an alien the first time it is hit, and remembers it to be removed during the next update.
+     * Reduces the alive counts for its column and row, and moves the formation bounds in past any
+     * columns or rows that are now empty. Each column and row is only passed over once, so keeping
+     * the bounds up to date costs O(1) per alien over a whole wave.
+     *
+     * @param alien The alien that was hit.
+     */
+    public void alienHit(Alien alien) {
+        int column = alien.getFormationIndex() / formationRows;
+        int row = alien.getFormationIndex() % formationRows;
+        pendingRemovals[pendingRemovalCount++] = alien.getFormationIndex();
+        columnAliveCounts[column]--;
+        rowAliveCounts[row]--;
+        while(firstAliveColumn <= lastAliveColumn && columnAliveCounts[firstAliveColumn] == 0) {
+            firstAliveColumn++;
+        }
+        while(lastAliveColumn >= firstAliveColumn && columnAliveCounts[lastAliveColumn] == 0) {
+            lastAliveColumn--;
+        }
+        while(lastAliveRow >= 0 && rowAliveCounts[lastAliveRow] == 0) {
+            lastAliveRow--;
+        }
+    }
+
+    /**
+     * Counts the aliens that have not been hit in every column and row and finds the formation bounds.
+     * Aliens that have been hit but not removed yet are remembered to be removed during the next update.
+     * Used after spawning or restoring the formation, when the counts cannot be kept up to date one hit at a time.
+     */
+    private void countAliveAliens() {
+        Arrays.fill(columnAliveCounts, 0);
+        Arrays.fill(rowAliveCounts, 0);
+        aliveCount = 0;
+        pendingRemovalCount = 0;
+        for(int i = formationAlive.nextSetBit(0); i >= 0; i = formationAlive.nextSetBit(i + 1)) {
+            aliveCount++;
+            if(entities.getHealth(i) > 0) {
+                columnAliveCounts[i / formationRows]++;
+                rowAliveCounts[i % formationRows]++;
+            } else {
+                pendingRemovals[pendingRemovalCount++] = i;
+            }
+        }
+        firstAliveColumn = 0;
+        while(firstAliveColumn < formationColumns && columnAliveCounts[firstAliveColumn] == 0) {
+            firstAliveColumn++;
+        }
+        lastAliveColumn = formationColumns - 1;
+        while(lastAliveColumn >= firstAliveColumn && columnAliveCounts[lastAliveColumn] == 0) {
+            lastAliveColumn--;
+        }
+        lastAliveRow = formationRows - 1;
+        while(lastAliveRow >= 0 && rowAliveCounts[lastAliveRow] == 0) {
+            lastAliveRow--;
+        }
+    }
+
+    /**
+     * Gets the amount to move all the aliens and then applies to them all in a single pass.
+     * No objects are created so that updates do not produce any garbage.
+     * The distance moved is in proportion to deltaTime, and the group changes direction
+     * part way through the move when it reaches either side or has moved down far enough,
+     * so a long update moves the formation to the same place as several short ones.
+     * The aliens that were destroyed since last update are removed from the formation,
+     * and then every alien in the store is moved in one pass over its arrays. Dead aliens are
+     * moved as well, which is cheaper than skipping them and keeps them in their place in the formation.
+     * Then only the aliens whose fire time has arrived are visited to fire and choose
+     * a new random time. Aliens that were destroyed are left in the FireScheduler and
+     * skipped here when their time arrives, instead of being taken out when they are hit.
      *
      * @param deltaTime Time since last update.
      */
     public void update(int deltaTime) {
-        lowestAlienY = 0;
-        Position moveOffset = new Position(curMoveDir);
-        moveOffset.multiply(MOVE_SPEED);
-        aliens.forEach(alien -> {alien.position.add(moveOffset);
-                                 if(alien.position.y > lowestAlienY) {
-                                     lowestAlienY = alien.position.y;
-                                 }});
-        for(int i = 0; i < aliens.size(); i++) {
-            if(aliens.get(i).isExpired()) {
-                aliens.remove(i);
-                i--;
-            } else {
-                aliens.get(i).update(deltaTime);
+        previousTopLeft.setPosition(topLeft);
+        moveRemainder += MOVE_SPEED * deltaTime;
+        int distance = moveRemainder / GamePanel.TIME_INTERVAL;
+        moveRemainder %= GamePanel.TIME_INTERVAL;
+        while(distance > 0) {
+            int step = Math.min(distance, getDistanceUntilTurn());
+            topLeft.x += curMoveDir.x * step;
+            topLeft.y += curMoveDir.y * step;
+            distance -= step;
+            updateMoveDirection(step);
+        }
+        moveOffset.setPosition(topLeft);
+        moveOffset.subtract(previousTopLeft);
+        if(pendingRemovalCount > 0) {
+            for(int i = 0; i < pendingRemovalCount; i++) {
+                formationAlive.clear(pendingRemovals[i]);
+            }
+            aliveCount -= pendingRemovalCount;
+            pendingRemovalCount = 0;
+            formationImageDirty = true;
+            formationVersion++;
+        }
+        entities.translate(moveOffset.x, moveOffset.y);
+        int dueCount = fireScheduler.advance(deltaTime);
+        for(int i = 0; i < dueCount; i++) {
+            int index = fireScheduler.getDue(i);
+            if(entities.getHealth(index) <= 0) {
+                continue;
             }
+            formation[index].fire(deltaTime > 0 ? Math.min(-fireScheduler.getTimeUntilFire(index), deltaTime) : 0, deltaTime);
+            fireScheduler.schedule(index, objectManager.getRandom().nextInt(Alien.MAX_FIRE_INTERVAL));
         }
-        topLeft.add(moveOffset);
-        if((curMoveDir.equals(Position.LEFT) && topLeft.x <= 2*Alien.WIDTH)
-        || (curMoveDir.equals(Position.RIGHT) && topLeft.x >= 4*Alien.WIDTH)) {
-            curMoveDir = new Position(Position.DOWN);
-        } else if(curMoveDir.equals(Position.DOWN)) {
-            downNextTrigger -= moveOffset.y;
+    }
+
+    /**
+     * Gets how many pixels the formation can move in the current direction before it needs to
+     * change direction. Always at least 1, so a formation already past a side still moves
+     * once before turning.
+     *
+     * @return The distance in pixels.
+     */
+    private int getDistanceUntilTurn() {
+        if(curMoveDir == MoveDirection.LEFT) {
+            return Math.max(1, getLeftBound() - LEFT_EDGE);
+        } else if(curMoveDir == MoveDirection.RIGHT) {
+            return Math.max(1, objectManager.getWidth() - RIGHT_EDGE_MARGIN - getRightBound());
+        }
+        return Math.max(1, downNextTrigger);
+    }
+
+    /**
+     * Changes direction after moving when the living aliens have reached either side,
+     * or they have moved down far enough to start moving to the other side.
+     *
+     * @param step The distance just moved in the current direction.
+     */
+    private void updateMoveDirection(int step) {
+        if((curMoveDir == MoveDirection.LEFT && getLeftBound() <= LEFT_EDGE)
+        || (curMoveDir == MoveDirection.RIGHT && getRightBound() >= objectManager.getWidth() - RIGHT_EDGE_MARGIN)) {
+            curMoveDir = MoveDirection.DOWN;
+        } else if(curMoveDir == MoveDirection.DOWN) {
+            downNextTrigger -= step;
             if(downNextTrigger <= 0) {
-                curMoveDir = new Position(lastLeft ? Position.RIGHT : Position.LEFT);
+                curMoveDir = lastLeft ? MoveDirection.RIGHT : MoveDirection.LEFT;
                 lastLeft = !lastLeft;
                 downNextTrigger = 20;
             }
         }
     }
 
+    /**
+     * Mixes the group movement state and every living alien with the time until it fires into a hash.
+     *
+     * @param hash The hash so far.
+     * @return The new hash.
+     */
+    public long hashState(long hash) {
+        hash = StateHash.mix(hash, ((long)topLeft.x << 32) | (topLeft.y & 0xFFFFFFFFL));
+        hash = StateHash.mix(hash, curMoveDir.ordinal() | (lastLeft ? 8 : 0));
+        hash = StateHash.mix(hash, downNextTrigger);
+        hash = StateHash.mix(hash, moveRemainder);
+        hash = StateHash.mix(hash, aliveCount);
+        for(int i = formationAlive.nextSetBit(0); i >= 0; i = formationAlive.nextSetBit(i + 1)) {
+            hash = formation[i].hashState(hash);
+            hash = StateHash.mix(hash, fireScheduler.getTimeUntilFire(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the group movement state, the size of the formation, a bit for each alien that is
+     * alive, and then each living alien's state and time until it fires in formation order. Alien positions are not written
+     * because every living alien is at its place in the formation relative to topLeft.
+     *
+     * @param buffer The buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(topLeft.x);
+        buffer.putInt(topLeft.y);
+        buffer.putInt(previousTopLeft.x);
+        buffer.putInt(previousTopLeft.y);
+        buffer.put((byte)curMoveDir.ordinal());
+        buffer.put((byte)(lastLeft ? 1 : 0));
+        buffer.putInt(downNextTrigger);
+        buffer.putInt(moveRemainder);
+        buffer.putInt(formationColumns);
+        buffer.putInt(formationRows);
+        for(int word = 0; word < getFormationWordCount(); word++) {
+            buffer.putLong(getFormationWord(word));
+        }
+        for(int i = formationAlive.nextSetBit(0); i >= 0; i = formationAlive.nextSetBit(i + 1)) {
+            formation[i].writeState(buffer);
+            buffer.putInt(fireScheduler.getTimeUntilFire(i));
+        }
+    }
+
+    /**
+     * Restores the aliens from state written by writeState(). The existing aliens are reused
+     * and only a formation of a different size creates new ones.
+     *
+     * @param buffer The buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+        int topLeftX = buffer.getInt();
+        int topLeftY = buffer.getInt();
+        int previousTopLeftX = buffer.getInt();
+        int previousTopLeftY = buffer.getInt();
+        curMoveDir = MOVE_DIRECTIONS[buffer.get()];
+        lastLeft = buffer.get() != 0;
+        downNextTrigger = buffer.getInt();
+        moveRemainder = buffer.getInt();
+        int columns = buffer.getInt();
+        int rows = buffer.getInt();
+        if(columns != formationColumns || rows != formationRows) {
+            spawnAliens(columns, rows);
+        }
+        topLeft.setPosition(topLeftX, topLeftY);
+        previousTopLeft.setPosition(previousTopLeftX, previousTopLeftY);
+        formationAlive.clear();
+        fireScheduler.clear(formation.length);
+        for(int word = 0; word < getFormationWordCount(); word++) {
+            long bits = buffer.getLong();
+            while(bits != 0) {
+                formationAlive.set(word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        for(int i = 0; i < formation.length; i++) {
+            entities.setPosition(i, topLeft.x + (i / formationRows) * (Alien.WIDTH + ALIEN_PADDING),
+                                    topLeft.y + (i % formationRows) * (Alien.HEIGHT + ALIEN_PADDING));
+            entities.setHealth(i, 0);
+        }
+        for(int i = formationAlive.nextSetBit(0); i >= 0; i = formationAlive.nextSetBit(i + 1)) {
+            formation[i].readState(buffer);
+            fireScheduler.schedule(i, buffer.getInt());
+        }
+        countAliveAliens();
+        formationImageDirty = true;
+        formationVersion++;
+    }
+
+    /**
+     * Gets the number of bytes writeState() will write.
+     *
+     * @return The size of the state in bytes.
+     */
+    public int getStateSize() {
+        return 8 * Integer.BYTES + 2 + getFormationWordCount() * Long.BYTES + aliveCount * (Alien.STATE_SIZE + Integer.BYTES);
+    }
+
+    /**
+     * Gets the number of longs needed to store a bit for every alien in the formation.
+     *
+     * @return The number of longs.
+     */
+    public int getFormationWordCount() {
+        return (formation.length + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Gets 64 of the bits that show which aliens in the formation are alive.
+     * Bit b of word w is set when the alien at formation index w*64+b is alive.
+     *
+     * @param word Index of the word from 0 to getFormationWordCount()-1.
+     * @return The bits for the word.
+     */
+    public long getFormationWord(int word) {
+        long bits = 0;
+        int end = (word + 1) * Long.SIZE;
+        for(int i = formationAlive.nextSetBit(word * Long.SIZE); i >= 0 && i < end; i = formationAlive.nextSetBit(i + 1)) {
+            bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    /**
+     * Gets the number of columns in the formation.
+     *
+     * @return The number of columns.
+     */
+    public int getFormationColumns() {
+        return formationColumns;
+    }
+
+    /**
+     * Gets the number of rows in the formation.
+     *
+     * @return The number of rows.
+     */
+    public int getFormationRows() {
+        return formationRows;
+    }
+
+    /**
+     * Gets the top left corner of the formation. Every living alien is at its place in the formation relative to this.
+     *
+     * @return The top left corner, which must not be changed.
+     */
+    public Position getTopLeft() {
+        return topLeft;
+    }
+
+    /**
+     * Gets a number that changes every time aliens are destroyed or the formation is replaced.
+     *
+     * @return The number of changes to the formation.
+     */
+    public int getFormationVersion() {
+        return formationVersion;
+    }
+
+    /**
+     * Gets the x coordinate the top left corner of the formation is drawn at, part way between
+     * where it was before the last update and where it is now.
+     *
+     * @param alpha How far between the previous and current positions, from 0 to 1.
+     * @return The x coordinate the formation is drawn at.
+     */
+    public int getPaintX(float alpha) {
+        return topLeft.x + Math.round((topLeft.x - previousTopLeft.x) * (alpha - 1));
+    }
+
+    /**
+     * Gets the y coordinate the top left corner of the formation is drawn at, part way between
+     * where it was before the last update and where it is now.
+     *
+     * @param alpha How far between the previous and current positions, from 0 to 1.
+     * @return The y coordinate the formation is drawn at.
+     */
+    public int getPaintY(float alpha) {
+        return topLeft.y + Math.round((topLeft.y - previousTopLeft.y) * (alpha - 1));
+    }
+
+    /**
+     * Gets the width of the whole formation including aliens that have been hit.
+     *
+     * @return The width from the left of the first column to the right of the last column.
+     */
+    public int getFormationWidth() {
+        return formationColumns*(Alien.WIDTH+ALIEN_PADDING) - ALIEN_PADDING;
+    }
+
+    /**
+     * Gets the height of the whole formation including aliens that have been hit.
+     *
+     * @return The height from the top of the first row to the bottom of the last row.
+     */
+    public int getFormationHeight() {
+        return formationRows*(Alien.HEIGHT+ALIEN_PADDING) - ALIEN_PADDING;
+    }
+
     /**
      * Draws all the aliens.
      *
      * @param g Reference to the Graphics object for rendering.
      */
     public void paint(Graphics g) {
-        aliens.forEach(a -> a.paint(g));
+        paint(g, 1);
+    }
+
+    /**
+     * Draws all the aliens part way between where they were before the last update
+     * and where they are now. All the aliens moved by the same amount, so they are
+     * all shifted back by the same offset. When the sprite cache is enabled the aliens
+     * are drawn as one cached image of the whole formation that is only redrawn after
+     * aliens are destroyed.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param alpha How far between the previous and current positions, from 0 to 1.
+     */
+    public void paint(Graphics g, float alpha) {
+        int offsetX = getPaintX(alpha) - topLeft.x;
+        int offsetY = getPaintY(alpha) - topLeft.y;
+        int imageWidth = getFormationWidth();
+        int imageHeight = getFormationHeight();
+        if(SpriteCache.isEnabled() && imageWidth > 0 && imageHeight > 0
+                && (long)imageWidth*imageHeight <= MAX_FORMATION_IMAGE_PIXELS) {
+            if(formationImage == null || formationImage.getWidth() != imageWidth
+                    || formationImage.getHeight() != imageHeight) {
+                if(formationGraphics != null) {
+                    formationGraphics.dispose();
+                }
+                formationImage = SpriteCache.createImage(imageWidth, imageHeight, true);
+                formationGraphics = formationImage.createGraphics();
+            }
+            if(formationImageDirty) {
+                drawFormationImage();
+            }
+            g.drawImage(formationImage, topLeft.x + offsetX, topLeft.y + offsetY, null);
+        } else {
+            for(int i = formationAlive.nextSetBit(0); i >= 0; i = formationAlive.nextSetBit(i + 1)) {
+                Alien.draw(g, getType(i), entities.getX(i) + offsetX, entities.getY(i) + offsetY);
+            }
+        }
+    }
+
+    /**
+     * Clears the formationImage and draws every living alien's sprite into it
+     * relative to the top left corner of the formation.
+     */
+    private void drawFormationImage() {
+        formationGraphics.setComposite(AlphaComposite.Clear);
+        formationGraphics.fillRect(0, 0, formationImage.getWidth(), formationImage.getHeight());
+        formationGraphics.setComposite(AlphaComposite.SrcOver);
+        for(int i = formationAlive.nextSetBit(0); i >= 0; i = formationAlive.nextSetBit(i + 1)) {
+            formationGraphics.drawImage(SpriteCache.getAlienSprite(getType(i)),
+                    entities.getX(i) - topLeft.x, entities.getY(i) - topLeft.y, null);
+        }
+        formationImageDirty = false;
+    }
+
+    /**
+     * Gets the store holding the aliens' components. Each alien's slot is its formation index.
+     *
+     * @return The store, which must not be changed.
+     */
+    public EntityStore getEntities() {
+        return entities;
+    }
+
+    /**
+     * Checks if the alien at a formation index is still alive.
+     *
+     * @param index Formation index of the alien.
+     * @return True if the alien has not been destroyed.
+     */
+    public boolean isAlive(int index) {
+        return formationAlive.get(index);
     }
 
     /**
@@ -142,31 +646,133 @@ public class AlienManager {
      * @return The number of aliens.
      */
     public int getAlienCount() {
-        return aliens.size();
+        return aliveCount;
     }
 
     /**
-     * Tests all aliens to check if the projectile specified
-     * has collided with any of the aliens.
+     * Gets the type of the alien at a formation index. Each row has a different type, repeating after every 5 rows.
      *
-     * @param projectile The projectile to test against all the aliens.
+     * @param index Formation index of the alien.
+     * @return The type of the alien.
+     */
+    public int getType(int index) {
+        return index % formationRows % 5;
+    }
+
+    /**
+     * Checks if the projectile's rectangle has collided with any of the aliens.
+     * The aliens always move together, so the projectile position relative to topLeft
+     * gives the only columns and rows of the formation it can be touching. Only the
+     * aliens still alive in those cells are tested, skipping any already hit during this update.
+     *
+     * @param x X coordinate of the projectile's top left corner.
+     * @param y Y coordinate of the projectile's top left corner.
+     * @param width Width of the projectile.
+     * @param height Height of the projectile.
      * @return The alien that was hit or null.
      */
-    public Rectangle getCollision(Projectile projectile) {
-        for (Alien alien : aliens) {
-            if(alien.isIntersecting(projectile)) {
-                return alien;
+    public Rectangle getCollision(int x, int y, int width, int height) {
+        int relativeX = x - topLeft.x;
+        int relativeY = y - topLeft.y;
+        int columnSpacing = Alien.WIDTH + ALIEN_PADDING;
+        int rowSpacing = Alien.HEIGHT + ALIEN_PADDING;
+        // Edges touching count as intersecting, so include cells that end exactly where the projectile starts.
+        int minColumn = Math.max(0, Math.floorDiv(relativeX - Alien.WIDTH + columnSpacing - 1, columnSpacing));
+        int maxColumn = Math.min(formationColumns - 1, Math.floorDiv(relativeX + width, columnSpacing));
+        int minRow = Math.max(0, Math.floorDiv(relativeY - Alien.HEIGHT + rowSpacing - 1, rowSpacing));
+        int maxRow = Math.min(formationRows - 1, Math.floorDiv(relativeY + height, rowSpacing));
+        for(int column = minColumn; column <= maxColumn; column++) {
+            for(int row = minRow; row <= maxRow; row++) {
+                int index = column*formationRows + row;
+                if(entities.getHealth(index) > 0 && formation[index].isIntersecting(x, y, width, height)) {
+                    return formation[index];
+                }
             }
         }
         return null;
     }
 
+    /**
+     * Finds the first alien a projectile touches while moving in a straight line during the
+     * last update. The formation's own movement during the update is added to the
+     * projectile's start, so the path is relative to the aliens where they are now and
+     * they are treated as moving at the same time. Only the
+     * columns and rows of the formation the projectile passes through are tested, and aliens
+     * that have already been hit are passed through.
+     *
+     * @param fromX X coordinate of the projectile's top left corner before it moved.
+     * @param fromY Y coordinate of the projectile's top left corner before it moved.
+     * @param toX X coordinate of the projectile's top left corner after it moved.
+     * @param toY Y coordinate of the projectile's top left corner after it moved.
+     * @param width Width of the projectile.
+     * @param height Height of the projectile.
+     * @return The first alien touched or null.
+     */
+    public Rectangle getCollisionAlong(int fromX, int fromY, int toX, int toY, int width, int height) {
+        fromX += topLeft.x - previousTopLeft.x;
+        fromY += topLeft.y - previousTopLeft.y;
+        int columnSpacing = Alien.WIDTH + ALIEN_PADDING;
+        int rowSpacing = Alien.HEIGHT + ALIEN_PADDING;
+        int relativeX = Math.min(fromX, toX) - topLeft.x;
+        int relativeY = Math.min(fromY, toY) - topLeft.y;
+        int sweptWidth = Math.abs(toX - fromX) + width;
+        int sweptHeight = Math.abs(toY - fromY) + height;
+        int minColumn = Math.max(0, Math.floorDiv(relativeX - Alien.WIDTH + columnSpacing - 1, columnSpacing));
+        int maxColumn = Math.min(formationColumns - 1, Math.floorDiv(relativeX + sweptWidth, columnSpacing));
+        int minRow = Math.max(0, Math.floorDiv(relativeY - Alien.HEIGHT + rowSpacing - 1, rowSpacing));
+        int maxRow = Math.min(formationRows - 1, Math.floorDiv(relativeY + sweptHeight, rowSpacing));
+        Alien first = null;
+        int firstTime = Integer.MAX_VALUE;
+        for(int column = minColumn; column <= maxColumn; column++) {
+            for(int row = minRow; row <= maxRow; row++) {
+                int index = column*formationRows + row;
+                if(entities.getHealth(index) > 0) {
+                    int time = formation[index].getSweepTime(fromX, fromY, toX, toY, width, height);
+                    if(time >= 0 && time < firstTime) {
+                        first = formation[index];
+                        firstTime = time;
+                    }
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Gets the movement of the formation during the last update.
+     *
+     * @return The offset moved, which must not be changed.
+     */
+    public Position getMoveOffset() {
+        return moveOffset;
+    }
+
     /**
      * Gets the lowest alien position for checking game over conditions.
+     * Aliens that have been hit are ignored, even before they are removed.
      *
-     * @return The y coordinate of the lowest alien.
+     * @return The y coordinate of the top of the lowest alien, or 0 if every alien has been hit.
      */
     public int getLowestAlienY() {
-        return lowestAlienY;
+        return lastAliveRow < 0 ? 0 : topLeft.y + lastAliveRow*(Alien.HEIGHT+ALIEN_PADDING);
+    }
+
+    /**
+     * Gets the left side of the leftmost column that still has an alien that has not been hit.
+     *
+     * @return The x coordinate of the formation's left side, or topLeft.x if every alien has been hit.
+     */
+    public int getLeftBound() {
+        return firstAliveColumn > lastAliveColumn ? topLeft.x : topLeft.x + firstAliveColumn*(Alien.WIDTH+ALIEN_PADDING);
+    }
+
+    /**
+     * Gets the right side of the rightmost column that still has an alien that has not been hit.
+     *
+     * @return The x coordinate of the formation's right side, or topLeft.x if every alien has been hit.
+     */
+    public int getRightBound() {
+        return firstAliveColumn > lastAliveColumn ? topLeft.x
+                : topLeft.x + lastAliveColumn*(Alien.WIDTH+ALIEN_PADDING) + Alien.WIDTH;
     }
 }
@@ -0,0 +1,381 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * Autopilot class:
+ * A bot that plays the game by looking ahead. Every few updates it takes a snapshot of the
+ * game with writeState() and tries every plan of two actions held one after the other,
+ * restoring the snapshot into a scratch world for each plan and playing it forward
+ * for a couple of seconds. The plan that loses the fewest lives, scores the most, and
+ * ends closest to an alien to shoot at is chosen, and its first action is played until the
+ * next search. The scratch worlds are created once and reused, so trying a plan only copies
+ * the state bytes back in. Plans are shared between threads that each have their own scratch
+ * world. Every simulated update is counted as a node, and the nodes searched per second of
+ * search time show how fast the search is.
+ * chooseAction() waits for each search, so a batch of games plays the same every time.
+ * chooseActionLater() only takes the snapshot on the calling thread and runs the search on the
+ * pool, playing the previous action until the result is ready, so a game shown on screen is never
+ * held up by a search.
+ */
+public class Autopilot {
+    /**
+     * Number of updates each action in a plan is held for.
+     */
+    private static final int SEGMENT_TICKS = 40;
+    /**
+     * Number of actions in each plan.
+     */
+    private static final int SEGMENTS = 2;
+    /**
+     * Number of updates between searches. The first action of the best plan is played in between.
+     */
+    private static final int DECISION_TICKS = 5;
+    /**
+     * Value taken off a plan for each life lost.
+     */
+    private static final long LIFE_PENALTY = 1_000_000;
+    /**
+     * Value taken off a plan that ends the game by losing.
+     */
+    private static final long GAME_OVER_PENALTY = 10_000_000;
+    /**
+     * Value added to a plan for each point scored, so one alien is worth more than any distance across the screen.
+     */
+    private static final long SCORE_WEIGHT = 1_000;
+    /**
+     * Number of plans, one for every pair of actions.
+     */
+    private static final int PLAN_COUNT = VectorEnv.ACTION_COUNT * VectorEnv.ACTION_COUNT;
+    /**
+     * The pool the plans are tried on.
+     */
+    private ForkJoinPool pool;
+    /**
+     * One task for each thread, each trying every plan whose index is its own index plus a multiple of the number of tasks.
+     */
+    private List<Callable<Void>> tasks;
+    /**
+     * Scratch world for each task to restore the snapshot into.
+     */
+    private ObjectManager[] scratchWorlds;
+    /**
+     * Time in milliseconds for each simulated update.
+     */
+    private int timeStep;
+    /**
+     * Snapshot of the game taken at the start of each search.
+     */
+    private ByteBuffer snapshot;
+    /**
+     * Value of each plan found by the last search.
+     */
+    private long[] planValues;
+    /**
+     * Number of updates each task simulated during the last search.
+     */
+    private long[] taskNodes;
+    /**
+     * The action being played until the next search.
+     */
+    private int action;
+    /**
+     * Number of updates until the next search.
+     */
+    private int ticksUntilSearch;
+    /**
+     * Search started by chooseActionLater() that has not been collected yet, or null when none is running.
+     */
+    private Future<Integer> pendingSearch;
+    /**
+     * True when reset() was called while pendingSearch was running, so its result is for an old game and is ignored.
+     */
+    private boolean pendingSearchStale;
+    /**
+     * Total number of updates simulated by every search.
+     */
+    private long nodeCount;
+    /**
+     * Total time spent searching in nanoseconds.
+     */
+    private long searchNanos;
+    /**
+     * Number of searches run.
+     */
+    private long searchCount;
+
+    /**
+     * Plays a batch of games with the autopilot and prints the results and the search speed.
+     *
+     * @param args Optional number of games, number of threads, maximum ticks per game, and base seed.
+     * @throws InterruptedException If interrupted while searching.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxTicks = args.length > 2 ? Integer.parseInt(args[2]) : 50000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        Autopilot autopilot = new Autopilot(threads, GamePanel.TIME_INTERVAL);
+        GameResults results = new GameResults();
+        HeadlessGame game = new HeadlessGame(seed);
+        long startTime = System.nanoTime();
+        for(int i = 0; i < games; i++) {
+            game.reset(seed + i);
+            autopilot.reset();
+            while(game.getOutcome() == GameOutcome.IN_PROGRESS && game.getTicks() < maxTicks) {
+                VectorEnv.applyAction(game.getObjectManager().getPlayer(), autopilot.chooseAction(game.getObjectManager()));
+                game.step();
+            }
+            results.add(game);
+        }
+        System.out.println("Threads: " + threads);
+        results.print((System.nanoTime() - startTime) / 1e9);
+        System.out.println(autopilot.getSummary());
+        autopilot.shutdown();
+    }
+
+    /**
+     * Creates the autopilot with its own pool of threads and a scratch world for each.
+     *
+     * @param threads Number of threads to search on.
+     * @param timeStep Time in milliseconds for each update of the game being played.
+     */
+    public Autopilot(int threads, int timeStep) {
+        this.timeStep = timeStep;
+        pool = new ForkJoinPool(threads);
+        scratchWorlds = new ObjectManager[threads];
+        tasks = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            scratchWorlds[i] = new ObjectManager(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, new GameRandom(0));
+            int task = i;
+            tasks.add(() -> {
+                searchPlans(task);
+                return null;
+            });
+        }
+        snapshot = ByteBuffer.allocate(scratchWorlds[0].getStateSize());
+        planValues = new long[PLAN_COUNT];
+        taskNodes = new long[threads];
+        reset();
+    }
+
+    /**
+     * Forgets the current plan so the next call to chooseAction() searches again, such as when a new game starts.
+     */
+    public void reset() {
+        action = VectorEnv.ACTION_NOOP;
+        ticksUntilSearch = 0;
+        pendingSearchStale = pendingSearch != null;
+    }
+
+    /**
+     * Gets the action to play for the next update, searching for a new plan every DECISION_TICKS calls.
+     * Must be called once before every update of the game.
+     *
+     * @param world The game being played, which is not changed.
+     * @return One of the VectorEnv ACTION values.
+     * @throws InterruptedException If interrupted while searching.
+     */
+    public int chooseAction(ObjectManager world) throws InterruptedException {
+        if(ticksUntilSearch <= 0) {
+            takeSnapshot(world);
+            action = searchSnapshot();
+            ticksUntilSearch = DECISION_TICKS;
+        }
+        ticksUntilSearch--;
+        return action;
+    }
+
+    /**
+     * Gets the action to play for the next update without waiting for a search. Every DECISION_TICKS
+     * calls a snapshot of the game is taken and a search of it is started on the pool, unless the
+     * last one is still running. The action from the latest finished search is played until the next
+     * one finishes. A search that fails is printed and the previous action is kept.
+     * Must be called once before every update of the game, by one thread at a time.
+     *
+     * @param world The game being played, which is not changed.
+     * @return One of the VectorEnv ACTION values.
+     */
+    public int chooseActionLater(ObjectManager world) {
+        if(pendingSearch != null && pendingSearch.isDone()) {
+            collectPendingSearch();
+        }
+        if(ticksUntilSearch <= 0 && pendingSearch == null) {
+            takeSnapshot(world);
+            pendingSearch = pool.submit(this::searchSnapshot);
+            ticksUntilSearch = DECISION_TICKS;
+        }
+        ticksUntilSearch--;
+        return action;
+    }
+
+    /**
+     * Stops the threads used by the search.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Gets the total number of updates simulated by every search.
+     *
+     * @return The number of nodes searched.
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the number of updates simulated per second of search time.
+     *
+     * @return The nodes searched per second, or 0 before the first search.
+     */
+    public double getNodesPerSecond() {
+        return searchNanos == 0 ? 0 : nodeCount * 1e9 / searchNanos;
+    }
+
+    /**
+     * Gets a one line summary of the search speed.
+     *
+     * @return The summary.
+     */
+    public String getSummary() {
+        return String.format("Searches: %d, nodes: %d, average search: %.2fms, nodes/s: %.0f",
+                searchCount, nodeCount, searchCount == 0 ? 0 : searchNanos / 1e6 / searchCount, getNodesPerSecond());
+    }
+
+    /**
+     * Takes the result of the search started by chooseActionLater(), which must have finished.
+     */
+    private void collectPendingSearch() {
+        try {
+            int result = pendingSearch.get();
+            if(!pendingSearchStale) {
+                action = result;
+            }
+        } catch(ExecutionException e) {
+            System.err.println("Autopilot search failed, keeping the previous action:");
+            e.getCause().printStackTrace();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pendingSearch = null;
+        pendingSearchStale = false;
+    }
+
+    /**
+     * Copies the state of the game into the snapshot that the next search starts from.
+     *
+     * @param world The game being played.
+     */
+    private void takeSnapshot(ObjectManager world) {
+        if(snapshot.capacity() < world.getStateSize()) {
+            snapshot = ByteBuffer.allocate(world.getStateSize() * 2);
+        }
+        snapshot.clear();
+        world.writeState(snapshot);
+        snapshot.flip();
+    }
+
+    /**
+     * Tries every plan from the snapshot in parallel and picks the best.
+     * Ties go to the plan with the lowest index, so the choice does not depend on the number of threads.
+     *
+     * @return The first action of the best plan.
+     * @throws InterruptedException If interrupted while searching.
+     */
+    private int searchSnapshot() throws InterruptedException {
+        long startTime = System.nanoTime();
+        for(Future<Void> result : pool.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch(ExecutionException e) {
+                throw new IllegalStateException("Autopilot search failed", e.getCause());
+            }
+        }
+        int best = 0;
+        for(int plan = 1; plan < PLAN_COUNT; plan++) {
+            if(planValues[plan] > planValues[best]) {
+                best = plan;
+            }
+        }
+        for(int i = 0; i < taskNodes.length; i++) {
+            nodeCount += taskNodes[i];
+        }
+        searchNanos += System.nanoTime() - startTime;
+        searchCount++;
+        return getPlanAction(best, 0);
+    }
+
+    /**
+     * Run by one task to try its share of the plans in its own scratch world.
+     *
+     * @param task Index of the task.
+     */
+    private void searchPlans(int task) {
+        ObjectManager scratch = scratchWorlds[task];
+        ByteBuffer state = snapshot.duplicate();
+        long nodes = 0;
+        for(int plan = task; plan < PLAN_COUNT; plan += scratchWorlds.length) {
+            state.rewind();
+            scratch.readState(state);
+            int startScore = scratch.getScore();
+            int startLives = scratch.getPlayer().getLives();
+            GameOutcome outcome = GameOutcome.IN_PROGRESS;
+            for(int tick = 0; tick < SEGMENTS * SEGMENT_TICKS && outcome == GameOutcome.IN_PROGRESS; tick++) {
+                VectorEnv.applyAction(scratch.getPlayer(), getPlanAction(plan, tick / SEGMENT_TICKS));
+                scratch.update(timeStep);
+                outcome = scratch.getGameOutcome();
+                nodes++;
+            }
+            planValues[plan] = evaluate(scratch, outcome, startScore, startLives);
+        }
+        taskNodes[task] = nodes;
+    }
+
+    /**
+     * Scores where a plan ended up. Lives lost matter most, then points scored,
+     * and then how far the player is from the nearest alien it could shoot.
+     *
+     * @param scratch The world at the end of the plan.
+     * @param outcome The outcome at the end of the plan.
+     * @param startScore Score when the plan started.
+     * @param startLives Lives when the plan started.
+     * @return The value of the plan, where higher is better.
+     */
+    private long evaluate(ObjectManager scratch, GameOutcome outcome, int startScore, int startLives) {
+        long value = (scratch.getScore() - startScore) * SCORE_WEIGHT
+                - (startLives - scratch.getPlayer().getLives()) * LIFE_PENALTY;
+        if(outcome == GameOutcome.LOST_ALL_LIVES || outcome == GameOutcome.LOST_BY_INVASION) {
+            value -= GAME_OVER_PENALTY;
+        }
+        AlienManager alienManager = scratch.getAlienManager();
+        EntityStore aliens = alienManager.getEntities();
+        int playerCentre = scratch.getPlayer().getCentreX();
+        int nearest = Integer.MAX_VALUE;
+        for(int i = 0; i < aliens.size(); i++) {
+            if(alienManager.isAlive(i)) {
+                nearest = Math.min(nearest, Math.abs(aliens.getX(i) + Alien.WIDTH / 2 - playerCentre));
+            }
+        }
+        return nearest == Integer.MAX_VALUE ? value : value - nearest;
+    }
+
+    /**
+     * Gets one of the actions in a plan. Plan p holds action p / ACTION_COUNT and then action p % ACTION_COUNT.
+     *
+     * @param plan Index of the plan.
+     * @param segment Index of the action in the plan.
+     * @return One of the VectorEnv ACTION values.
+     */
+    private static int getPlanAction(int plan, int segment) {
+        return segment == 0 ? plan / VectorEnv.ACTION_COUNT : plan % VectorEnv.ACTION_COUNT;
+    }
+}
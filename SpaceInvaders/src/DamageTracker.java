@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * DamageTracker class:
+ * Works out which parts of the panel have changed since the last frame, so only those parts
+ * are drawn again. It remembers where the player, the formation, and every projectile were
+ * drawn last frame and which version of each shield was drawn. Anything that moved adds both
+ * where it was and where it is now to a DirtyRegion, a projectile that has gone adds where it
+ * was, and a shield that has been hit adds its bounds. Anything that did not change adds
+ * nothing, so a frame where nothing moves draws nothing. Collecting the changes does not
+ * allocate unless there are more projectiles than ever before.
+ */
+public class DamageTracker {
+    /**
+     * Number of projectiles remembered before the arrays need to grow, the same as the slots in a ProjectilePool.
+     */
+    private static final int INITIAL_SHOTS = 256;
+    /**
+     * True when nothing has been drawn yet, or the last frame is no longer known, so the whole area must be drawn.
+     */
+    private boolean invalid;
+    /**
+     * Where the player was drawn last frame.
+     */
+    private int playerX, playerY;
+    /**
+     * Where the formation was drawn last frame, its size, and the version of the formation drawn.
+     */
+    private int formationX, formationY, formationWidth, formationHeight, formationVersion;
+    /**
+     * The version of each shield drawn last frame.
+     */
+    private int[] shieldVersions;
+    /**
+     * Where each projectile was drawn last frame.
+     */
+    private int[] shotX, shotY;
+    private int shotCount;
+    /**
+     * Where each projectile is drawn this frame, swapped with shotX and shotY once the frame is collected.
+     */
+    private int[] nextShotX, nextShotY;
+
+    /**
+     * Creates a tracker that draws the whole area on the first frame.
+     */
+    public DamageTracker() {
+        shieldVersions = new int[0];
+        shotX = new int[INITIAL_SHOTS];
+        shotY = new int[INITIAL_SHOTS];
+        nextShotX = new int[INITIAL_SHOTS];
+        nextShotY = new int[INITIAL_SHOTS];
+        invalidate();
+    }
+
+    /**
+     * Forgets the last frame, so the next call to collect() adds the whole area.
+     */
+    public void invalidate() {
+        invalid = true;
+    }
+
+    /**
+     * Adds the parts of the world that look different from the last frame to the region,
+     * and remembers this frame as the last frame.
+     *
+     * @param world The world that is about to be drawn.
+     * @param alpha How far the frame is between the previous and the current update, from 0 to 1.
+     * @param region The region to add the changed rectangles to.
+     */
+    public void collect(ObjectManager world, float alpha, DirtyRegion region) {
+        if(shieldVersions.length != world.getObstacles().size()) {
+            shieldVersions = new int[world.getObstacles().size()];
+            invalid = true;
+        }
+        if(invalid) {
+            region.addAll();
+        }
+        collectPlayer(world.getPlayer(), alpha, region);
+        collectFormation(world.getAlienManager(), alpha, region);
+        collectShields(world, region);
+        collectProjectiles(world.getProjectiles(), alpha, region);
+        invalid = false;
+    }
+
+    /**
+     * Adds the player's old and new bounds if it moved. The outlines of the tank are drawn one pixel
+     * past its width and height.
+     *
+     * @param player The player.
+     * @param alpha How far between the previous and current position, from 0 to 1.
+     * @param region The region to add to.
+     */
+    private void collectPlayer(Player player, float alpha, DirtyRegion region) {
+        int x = player.getInterpolatedX(alpha);
+        int y = player.getInterpolatedY(alpha);
+        if(x != playerX || y != playerY) {
+            region.add(playerX, playerY, Player.WIDTH + 1, Player.HEIGHT + 1);
+            region.add(x, y, Player.WIDTH + 1, Player.HEIGHT + 1);
+            playerX = x;
+            playerY = y;
+        }
+    }
+
+    /**
+     * Adds the formation's old and new bounds if it moved or aliens were destroyed.
+     *
+     * @param alienManager The aliens.
+     * @param alpha How far between the previous and current position, from 0 to 1.
+     * @param region The region to add to.
+     */
+    private void collectFormation(AlienManager alienManager, float alpha, DirtyRegion region) {
+        int x = alienManager.getPaintX(alpha);
+        int y = alienManager.getPaintY(alpha);
+        int width = alienManager.getFormationWidth();
+        int height = alienManager.getFormationHeight();
+        if(x != formationX || y != formationY || width != formationWidth || height != formationHeight
+                || alienManager.getFormationVersion() != formationVersion) {
+            region.add(formationX, formationY, formationWidth, formationHeight);
+            region.add(x, y, width, height);
+            formationX = x;
+            formationY = y;
+            formationWidth = width;
+            formationHeight = height;
+            formationVersion = alienManager.getFormationVersion();
+        }
+    }
+
+    /**
+     * Adds the bounds of every shield that changed. Shields never move.
+     *
+     * @param world The world holding the shields.
+     * @param region The region to add to.
+     */
+    private void collectShields(ObjectManager world, DirtyRegion region) {
+        for(int i = 0; i < shieldVersions.length; i++) {
+            Obstacle shield = world.getObstacles().get(i);
+            if(shield.getVersion() != shieldVersions[i]) {
+                region.add(shield.getX(), shield.getY(), shield.getWidth(), shield.getHeight());
+                shieldVersions[i] = shield.getVersion();
+            }
+        }
+    }
+
+    /**
+     * Adds where every projectile was drawn last frame and where every projectile is drawn now,
+     * leaving out any projectile that is in exactly the same place.
+     *
+     * @param projectiles The projectiles.
+     * @param alpha How far between the previous and current position, from 0 to 1.
+     * @param region The region to add to.
+     */
+    private void collectProjectiles(ProjectilePool projectiles, float alpha, DirtyRegion region) {
+        int count = projectiles.size();
+        if(nextShotX.length < count) {
+            nextShotX = Arrays.copyOf(nextShotX, count * 2);
+            nextShotY = Arrays.copyOf(nextShotY, count * 2);
+        }
+        for(int i = 0; i < count; i++) {
+            nextShotX[i] = projectiles.getInterpolatedX(i, alpha);
+            nextShotY[i] = projectiles.getInterpolatedY(i, alpha);
+            // Slots are reused in order, so a projectile that has not moved is usually in the same slot.
+            if(i >= shotCount || nextShotX[i] != shotX[i] || nextShotY[i] != shotY[i]) {
+                region.add(nextShotX[i], nextShotY[i], ProjectilePool.WIDTH, ProjectilePool.HEIGHT);
+                if(i < shotCount) {
+                    region.add(shotX[i], shotY[i], ProjectilePool.WIDTH, ProjectilePool.HEIGHT);
+                }
+            }
+        }
+        for(int i = count; i < shotCount; i++) {
+            region.add(shotX[i], shotY[i], ProjectilePool.WIDTH, ProjectilePool.HEIGHT);
+        }
+        int[] swap = shotX;
+        shotX = nextShotX;
+        nextShotX = swap;
+        swap = shotY;
+        shotY = nextShotY;
+        nextShotY = swap;
+        shotCount = count;
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * DirtyRegion class:
+ * A set of rectangles of the panel that need to be drawn again. Rectangles are clipped to
+ * the panel as they are added, and a new rectangle is merged into an existing one when
+ * their combined bounds cover few pixels that neither of them does, so small objects moving
+ * near each other become one rectangle while objects far apart stay separate. Only a small
+ * number of rectangles are kept, and once they are all used each new rectangle is merged
+ * into the one it adds the fewest pixels to. The rectangles are kept in arrays that are
+ * created up front, so adding rectangles does not allocate.
+ */
+public class DirtyRegion {
+    /**
+     * Most rectangles kept before new ones are always merged.
+     */
+    private static final int MAX_RECTANGLES = 8;
+    /**
+     * Most pixels that may be added by merging two rectangles when there is still room for another rectangle.
+     */
+    private static final int MERGE_SLACK = 2048;
+    /**
+     * Width and height of the area the rectangles are clipped to.
+     */
+    private int width, height;
+    /**
+     * Left, top, right, and bottom edges of each rectangle, where the right and bottom are not included.
+     */
+    private int[] left, top, right, bottom;
+    /**
+     * Number of rectangles.
+     */
+    private int count;
+
+    /**
+     * Creates an empty region.
+     *
+     * @param width Width of the area the rectangles are clipped to.
+     * @param height Height of the area the rectangles are clipped to.
+     */
+    public DirtyRegion(int width, int height) {
+        this.width = width;
+        this.height = height;
+        left = new int[MAX_RECTANGLES];
+        top = new int[MAX_RECTANGLES];
+        right = new int[MAX_RECTANGLES];
+        bottom = new int[MAX_RECTANGLES];
+    }
+
+    /**
+     * Adds a rectangle, merging it with the rectangles already added where it is cheaper to draw them together.
+     *
+     * @param x X coordinate of the top left corner.
+     * @param y Y coordinate of the top left corner.
+     * @param rectWidth Width of the rectangle.
+     * @param rectHeight Height of the rectangle.
+     */
+    public void add(int x, int y, int rectWidth, int rectHeight) {
+        int newLeft = Math.max(0, x);
+        int newTop = Math.max(0, y);
+        int newRight = Math.min(width, x + rectWidth);
+        int newBottom = Math.min(height, y + rectHeight);
+        if(newLeft >= newRight || newTop >= newBottom) {
+            return;
+        }
+        int best = findCheapestMerge(newLeft, newTop, newRight, newBottom);
+        if(best < 0 || (count < MAX_RECTANGLES
+                && getMergeCost(best, newLeft, newTop, newRight, newBottom) > MERGE_SLACK)) {
+            left[count] = newLeft;
+            top[count] = newTop;
+            right[count] = newRight;
+            bottom[count] = newBottom;
+            count++;
+            return;
+        }
+        // The merged rectangle is taken out and added again, so it can merge with any rectangle it now reaches.
+        newLeft = Math.min(newLeft, left[best]);
+        newTop = Math.min(newTop, top[best]);
+        newRight = Math.max(newRight, right[best]);
+        newBottom = Math.max(newBottom, bottom[best]);
+        removeAt(best);
+        add(newLeft, newTop, newRight - newLeft, newBottom - newTop);
+    }
+
+    /**
+     * Adds the whole area as a single rectangle, replacing every other rectangle.
+     */
+    public void addAll() {
+        count = 0;
+        add(0, 0, width, height);
+    }
+
+    /**
+     * Removes every rectangle.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Checks if there is nothing to draw.
+     *
+     * @return True if there are no rectangles.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Gets the number of rectangles.
+     *
+     * @return The number of rectangles.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the x coordinate of the top left corner of a rectangle.
+     *
+     * @param index Index of the rectangle.
+     * @return The x coordinate.
+     */
+    public int getX(int index) {
+        return left[index];
+    }
+
+    /**
+     * Gets the y coordinate of the top left corner of a rectangle.
+     *
+     * @param index Index of the rectangle.
+     * @return The y coordinate.
+     */
+    public int getY(int index) {
+        return top[index];
+    }
+
+    /**
+     * Gets the width of a rectangle.
+     *
+     * @param index Index of the rectangle.
+     * @return The width.
+     */
+    public int getWidth(int index) {
+        return right[index] - left[index];
+    }
+
+    /**
+     * Gets the height of a rectangle.
+     *
+     * @param index Index of the rectangle.
+     * @return The height.
+     */
+    public int getHeight(int index) {
+        return bottom[index] - top[index];
+    }
+
+    /**
+     * Gets the number of pixels that will be drawn for all the rectangles. Pixels where
+     * rectangles overlap are counted once for each rectangle, as they are drawn once for each.
+     *
+     * @return The total area of the rectangles.
+     */
+    public int getArea() {
+        int area = 0;
+        for(int i = 0; i < count; i++) {
+            area += getWidth(i) * getHeight(i);
+        }
+        return area;
+    }
+
+    /**
+     * Finds the rectangle that adds the fewest pixels when merged with a new rectangle.
+     *
+     * @param newLeft Left edge of the new rectangle.
+     * @param newTop Top edge of the new rectangle.
+     * @param newRight Right edge of the new rectangle.
+     * @param newBottom Bottom edge of the new rectangle.
+     * @return Index of the rectangle, or -1 if there are none.
+     */
+    private int findCheapestMerge(int newLeft, int newTop, int newRight, int newBottom) {
+        int best = -1;
+        int bestCost = Integer.MAX_VALUE;
+        for(int i = 0; i < count; i++) {
+            int cost = getMergeCost(i, newLeft, newTop, newRight, newBottom);
+            if(cost < bestCost) {
+                best = i;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the pixels added by merging a rectangle with a new rectangle, compared to drawing both on their own.
+     * This is negative when they overlap.
+     *
+     * @param index Index of the rectangle.
+     * @param newLeft Left edge of the new rectangle.
+     * @param newTop Top edge of the new rectangle.
+     * @param newRight Right edge of the new rectangle.
+     * @param newBottom Bottom edge of the new rectangle.
+     * @return The pixels covered by the merged rectangle that neither rectangle covers.
+     */
+    private int getMergeCost(int index, int newLeft, int newTop, int newRight, int newBottom) {
+        int mergedArea = (Math.max(right[index], newRight) - Math.min(left[index], newLeft))
+                * (Math.max(bottom[index], newBottom) - Math.min(top[index], newTop));
+        return mergedArea - getWidth(index) * getHeight(index) - (newRight - newLeft) * (newBottom - newTop);
+    }
+
+    /**
+     * Removes a rectangle by moving the last rectangle into its place.
+     *
+     * @param index Index of the rectangle.
+     */
+    private void removeAt(int index) {
+        count--;
+        left[index] = left[count];
+        top[index] = top[count];
+        right[index] = right[count];
+        bottom[index] = bottom[count];
+    }
+}
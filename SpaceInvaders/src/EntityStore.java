@@ -0,0 +1,395 @@
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * EntityStore class:
+ * Stores the components of a group of entities in parallel primitive arrays, one
+ * slot per entity: position, previous position, size, velocity, faction, health, and a timer.
+ * Each kind of object that is updated together is kept in its own store, so the systems
+ * that move, draw, and check them loop straight through the arrays instead of
+ * following a reference to each object. The Rectangle classes are views of one slot.
+ * Slots are numbered from 0 in the order they are added. Removing a slot moves the last
+ * entity into it, so stores with views that keep their slot number only ever add entities
+ * until they are cleared. The arrays only grow when more entities are added than ever before.
+ */
+public class EntityStore {
+    /**
+     * Faction of the player and the projectiles it fires.
+     */
+    public static final byte FACTION_PLAYER = 0;
+    /**
+     * Faction of the aliens and the projectiles they fire.
+     */
+    public static final byte FACTION_ALIEN = 1;
+    /**
+     * Faction of objects that block projectiles but are not hit by them.
+     */
+    public static final byte FACTION_NEUTRAL = 2;
+    /**
+     * Number of slots created when no size is given.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+    /**
+     * X coordinate of the top left corner of each entity.
+     */
+    private int[] x;
+    /**
+     * Y coordinate of the top left corner of each entity.
+     */
+    private int[] y;
+    /**
+     * Top left corner of each entity before the most recent update, used to interpolate drawing and sweep collisions.
+     */
+    private int[] previousX, previousY;
+    /**
+     * Width and height of each entity.
+     */
+    private int[] width, height;
+    /**
+     * Speed of each entity in pixels over 1000ms, used by integrate().
+     */
+    private int[] velocityX, velocityY;
+    /**
+     * Which side each entity is on, one of the FACTION values.
+     */
+    private byte[] faction;
+    /**
+     * Health of each entity. Its meaning depends on the kind of entity.
+     */
+    private int[] health;
+    /**
+     * Timer value for each entity. Its meaning depends on the kind of entity.
+     */
+    private int[] timer;
+    /**
+     * Number of entities. Slots from 0 to count-1 are in use.
+     */
+    private int count;
+
+    /**
+     * Creates an empty store with a default number of slots.
+     */
+    public EntityStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store with slots ready for the specified number of entities.
+     *
+     * @param capacity Number of slots to create up front.
+     */
+    public EntityStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        x = new int[capacity];
+        y = new int[capacity];
+        previousX = new int[capacity];
+        previousY = new int[capacity];
+        width = new int[capacity];
+        height = new int[capacity];
+        velocityX = new int[capacity];
+        velocityY = new int[capacity];
+        faction = new byte[capacity];
+        health = new int[capacity];
+        timer = new int[capacity];
+        count = 0;
+    }
+
+    /**
+     * Adds an entity into the next free slot with no velocity, health, or timer.
+     * The previous position starts the same as the position.
+     *
+     * @param entityX X coordinate of the top left corner.
+     * @param entityY Y coordinate of the top left corner.
+     * @param entityWidth Width of the entity.
+     * @param entityHeight Height of the entity.
+     * @param entityFaction One of the FACTION values.
+     * @return The slot of the new entity.
+     */
+    public int add(int entityX, int entityY, int entityWidth, int entityHeight, byte entityFaction) {
+        if(count == x.length) {
+            grow(count * 2);
+        }
+        x[count] = entityX;
+        y[count] = entityY;
+        previousX[count] = entityX;
+        previousY[count] = entityY;
+        width[count] = entityWidth;
+        height[count] = entityHeight;
+        velocityX[count] = 0;
+        velocityY[count] = 0;
+        faction[count] = entityFaction;
+        health[count] = 0;
+        timer[count] = 0;
+        return count++;
+    }
+
+    /**
+     * Removes the entity in the slot by moving the last entity into it.
+     *
+     * @param index Slot of the entity to remove.
+     */
+    public void removeAt(int index) {
+        count--;
+        x[index] = x[count];
+        y[index] = y[count];
+        previousX[index] = previousX[count];
+        previousY[index] = previousY[count];
+        width[index] = width[count];
+        height[index] = height[count];
+        velocityX[index] = velocityX[count];
+        velocityY[index] = velocityY[count];
+        faction[index] = faction[count];
+        health[index] = health[count];
+        timer[index] = timer[count];
+    }
+
+    /**
+     * Removes every entity. The slots are kept for reuse.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Makes sure there are slots for at least the specified number of entities, so adding them does not grow the arrays.
+     *
+     * @param capacity Number of slots needed.
+     */
+    public void ensureCapacity(int capacity) {
+        if(capacity > x.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * Gets the number of entities.
+     *
+     * @return The number of entities.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Movement system for entities with a velocity. Remembers every entity's position as
+     * its previous position and then moves it by its velocity for deltaTime.
+     *
+     * @param deltaTime Time since last update.
+     */
+    public void integrate(int deltaTime) {
+        for(int i = 0; i < count; i++) {
+            previousX[i] = x[i];
+            previousY[i] = y[i];
+            x[i] += velocityX[i] * deltaTime / 1000;
+            y[i] += velocityY[i] * deltaTime / 1000;
+        }
+    }
+
+    /**
+     * Movement system for entities that move together. Moves every entity by the same amount
+     * without changing the previous positions.
+     *
+     * @param offsetX Amount to add to every x coordinate.
+     * @param offsetY Amount to add to every y coordinate.
+     */
+    public void translate(int offsetX, int offsetY) {
+        for(int i = 0; i < count; i++) {
+            x[i] += offsetX;
+            y[i] += offsetY;
+        }
+    }
+
+    /**
+     * Rendering system for entities drawn as filled rectangles. Draws every entity part way between
+     * where it was before the last update and where it is now, in the colour for its faction.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param alpha How far between the previous and current positions, from 0 to 1.
+     * @param factionColours Colour for each faction, indexed by the FACTION values.
+     */
+    public void fill(Graphics g, float alpha, Color[] factionColours) {
+        for(int i = 0; i < count; i++) {
+            g.setColor(factionColours[faction[i]]);
+            g.fillRect(previousX[i] + Math.round((x[i] - previousX[i]) * alpha),
+                       previousY[i] + Math.round((y[i] - previousY[i]) * alpha), width[i], height[i]);
+        }
+    }
+
+    /**
+     * Gets the x coordinate of the entity's top left corner.
+     *
+     * @param index Slot of the entity.
+     * @return The x coordinate.
+     */
+    public int getX(int index) {
+        return x[index];
+    }
+
+    /**
+     * Gets the y coordinate of the entity's top left corner.
+     *
+     * @param index Slot of the entity.
+     * @return The y coordinate.
+     */
+    public int getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * Moves the entity's top left corner to the specified coordinates.
+     *
+     * @param index Slot of the entity.
+     * @param entityX The new x coordinate.
+     * @param entityY The new y coordinate.
+     */
+    public void setPosition(int index, int entityX, int entityY) {
+        x[index] = entityX;
+        y[index] = entityY;
+    }
+
+    /**
+     * Gets the x coordinate of the entity's top left corner before the most recent update.
+     *
+     * @param index Slot of the entity.
+     * @return The previous x coordinate.
+     */
+    public int getPreviousX(int index) {
+        return previousX[index];
+    }
+
+    /**
+     * Gets the y coordinate of the entity's top left corner before the most recent update.
+     *
+     * @param index Slot of the entity.
+     * @return The previous y coordinate.
+     */
+    public int getPreviousY(int index) {
+        return previousY[index];
+    }
+
+    /**
+     * Sets the entity's top left corner before the most recent update.
+     *
+     * @param index Slot of the entity.
+     * @param entityX The previous x coordinate.
+     * @param entityY The previous y coordinate.
+     */
+    public void setPreviousPosition(int index, int entityX, int entityY) {
+        previousX[index] = entityX;
+        previousY[index] = entityY;
+    }
+
+    /**
+     * Remembers the entity's current position as its previous position.
+     *
+     * @param index Slot of the entity.
+     */
+    public void storePreviousPosition(int index) {
+        previousX[index] = x[index];
+        previousY[index] = y[index];
+    }
+
+    /**
+     * Gets the width of the entity.
+     *
+     * @param index Slot of the entity.
+     * @return The width.
+     */
+    public int getWidth(int index) {
+        return width[index];
+    }
+
+    /**
+     * Gets the height of the entity.
+     *
+     * @param index Slot of the entity.
+     * @return The height.
+     */
+    public int getHeight(int index) {
+        return height[index];
+    }
+
+    /**
+     * Sets the speed the entity is moved at by integrate().
+     *
+     * @param index Slot of the entity.
+     * @param speedX Horizontal speed in pixels over 1000ms.
+     * @param speedY Vertical speed in pixels over 1000ms. Negative moves up.
+     */
+    public void setVelocity(int index, int speedX, int speedY) {
+        velocityX[index] = speedX;
+        velocityY[index] = speedY;
+    }
+
+    /**
+     * Gets which side the entity is on.
+     *
+     * @param index Slot of the entity.
+     * @return One of the FACTION values.
+     */
+    public byte getFaction(int index) {
+        return faction[index];
+    }
+
+    /**
+     * Gets the health of the entity.
+     *
+     * @param index Slot of the entity.
+     * @return The health.
+     */
+    public int getHealth(int index) {
+        return health[index];
+    }
+
+    /**
+     * Sets the health of the entity.
+     *
+     * @param index Slot of the entity.
+     * @param amount The new health.
+     */
+    public void setHealth(int index, int amount) {
+        health[index] = amount;
+    }
+
+    /**
+     * Gets the timer value of the entity.
+     *
+     * @param index Slot of the entity.
+     * @return The timer value.
+     */
+    public int getTimer(int index) {
+        return timer[index];
+    }
+
+    /**
+     * Sets the timer value of the entity.
+     *
+     * @param index Slot of the entity.
+     * @param time The new timer value.
+     */
+    public void setTimer(int index, int time) {
+        timer[index] = time;
+    }
+
+    /**
+     * Resizes every array to the specified number of slots.
+     *
+     * @param capacity The new number of slots.
+     */
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        faction = Arrays.copyOf(faction, capacity);
+        health = Arrays.copyOf(health, capacity);
+        timer = Arrays.copyOf(timer, capacity);
+    }
+}
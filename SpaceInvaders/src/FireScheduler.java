@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * FireScheduler class:
+ * A timing wheel that decides when each alien fires, so that updates only touch
+ * the aliens whose fire time has arrived instead of counting down a timer for every alien.
+ * Time is split into slots of GamePanel.TIME_INTERVAL and each slot holds a linked list
+ * of the aliens due to fire during it, stored in arrays indexed by formation index so
+ * scheduling never allocates. The time each alien fires is kept as the timer component
+ * of its slot in the AlienManager's EntityStore. There are enough slots to cover the longest fire interval,
+ * so every alien in a slot that is reached is due to fire. Aliens that are destroyed are
+ * not removed from the wheel; the AlienManager ignores them when their time arrives.
+ */
+public class FireScheduler {
+    /**
+     * Time in milliseconds covered by each slot.
+     */
+    private static final int SLOT_TIME = GamePanel.TIME_INTERVAL;
+    /**
+     * Number of slots in the wheel. Must be a power of 2 and cover the longest time an alien waits to fire.
+     */
+    private static final int SLOT_COUNT = Integer.highestOneBit((Alien.MAX_FIRE_INTERVAL / SLOT_TIME) * 2);
+    /**
+     * Index of the first alien in each slot's list, or -1 for an empty slot.
+     */
+    private int[] slotHeads;
+    /**
+     * Index of the next alien in the same slot's list for each alien, or -1 for the last.
+     */
+    private int[] next;
+    /**
+     * The AlienManager's store, holding the time each alien is due to fire as its timer.
+     */
+    private EntityStore store;
+    /**
+     * Aliens that became due during the last call to advance(), in formation order.
+     */
+    private int[] due;
+    /**
+     * Number of aliens in due.
+     */
+    private int dueCount;
+    /**
+     * Time since the formation was spawned in milliseconds.
+     */
+    private int time;
+
+    /**
+     * Creates an empty wheel with room for a formation of the specified size.
+     *
+     * @param store The store holding the aliens, where the fire times are kept.
+     * @param capacity Number of aliens in the formation.
+     */
+    public FireScheduler(EntityStore store, int capacity) {
+        this.store = store;
+        slotHeads = new int[SLOT_COUNT];
+        clear(capacity);
+    }
+
+    /**
+     * Removes every alien from the wheel and sets the time back to 0, making room for a formation of the specified size.
+     *
+     * @param capacity Number of aliens in the formation.
+     */
+    public void clear(int capacity) {
+        if(next == null || next.length < capacity) {
+            next = new int[capacity];
+            due = new int[capacity];
+        }
+        Arrays.fill(slotHeads, -1);
+        dueCount = 0;
+        time = 0;
+    }
+
+    /**
+     * Adds an alien to fire after a delay from now. The alien must not already be waiting in the wheel.
+     *
+     * @param index Formation index of the alien.
+     * @param delay Time in milliseconds from now, up to Alien.MAX_FIRE_INTERVAL.
+     */
+    public void schedule(int index, int delay) {
+        store.setTimer(index, time + delay);
+        int slot = getSlot(time + delay);
+        next[index] = slotHeads[slot];
+        slotHeads[slot] = index;
+    }
+
+    /**
+     * Moves time forward and collects every alien due to fire by the new time, taking them out of the wheel.
+     * Only the slots passed over are visited. The aliens collected can be read with getDue().
+     *
+     * @param deltaTime Time in milliseconds to move forward.
+     * @return The number of aliens that are due.
+     */
+    public int advance(int deltaTime) {
+        dueCount = 0;
+        int firstSlot = Math.floorDiv(time, SLOT_TIME);
+        time += deltaTime;
+        int lastSlot = Math.min(Math.floorDiv(time, SLOT_TIME), firstSlot + SLOT_COUNT - 1);
+        for(int slot = firstSlot; slot <= lastSlot; slot++) {
+            int wheelSlot = slot & (SLOT_COUNT - 1);
+            int previous = -1;
+            int index = slotHeads[wheelSlot];
+            while(index >= 0) {
+                int following = next[index];
+                if(store.getTimer(index) <= time) {
+                    if(previous < 0) {
+                        slotHeads[wheelSlot] = following;
+                    } else {
+                        next[previous] = following;
+                    }
+                    due[dueCount++] = index;
+                } else {
+                    previous = index;
+                }
+                index = following;
+            }
+        }
+        // Fire in formation order so the random numbers are used in the same order as updating every alien.
+        Arrays.sort(due, 0, dueCount);
+        return dueCount;
+    }
+
+    /**
+     * Gets one of the aliens collected by the last call to advance().
+     *
+     * @param i Index from 0 to the count returned by advance()-1.
+     * @return Formation index of the alien.
+     */
+    public int getDue(int i) {
+        return due[i];
+    }
+
+    /**
+     * Gets the time left before an alien fires.
+     * For an alien that was collected by advance() it is how long ago it was due, as a negative number.
+     *
+     * @param index Formation index of the alien.
+     * @return Time in milliseconds.
+     */
+    public int getTimeUntilFire(int index) {
+        return store.getTimer(index) - time;
+    }
+
+    /**
+     * Gets the slot in the wheel for a time.
+     *
+     * @param fireTime The time in milliseconds.
+     * @return Index of the slot.
+     */
+    private int getSlot(int fireTime) {
+        return Math.floorDiv(fireTime, SLOT_TIME) & (SLOT_COUNT - 1);
+    }
+}
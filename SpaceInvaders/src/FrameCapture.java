@@ -0,0 +1,333 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * FrameCapture class:
+ * Records the frames of a game to disk without making the game wait. Frames are drawn
+ * straight into a ring of images that are all created up front, and a background thread
+ * encodes them to files through NIO channels, either as a PNG for each frame or as raw pixels
+ * added to a single file. Only one thread may draw frames and only the background thread
+ * encodes them, so the ring needs no locks: each side only moves its own counter forward.
+ * When every image in the ring is still waiting to be encoded, the frame is dropped and
+ * counted instead of waiting for the encoder. Frames can also be skipped on purpose so
+ * that only every Nth frame is kept. Drawing a frame into the ring does not allocate.
+ */
+public class FrameCapture {
+    /**
+     * Ways the frames can be written to disk.
+     */
+    public enum Format {
+        /**
+         * A PNG file for each frame, named frame-000000.png, frame-000001.png, and so on.
+         */
+        PNG,
+        /**
+         * A single file named frames.raw holding every frame one after another, each as
+         * 4 bytes per pixel of 0x00RRGGBB in big-endian order, in rows from the top left.
+         */
+        RAW
+    }
+
+    /**
+     * Time the encoder waits for a frame before checking again, in nanoseconds.
+     */
+    private static final long IDLE_NANOS = 1_000_000L;
+    /**
+     * Width and height of every frame.
+     */
+    private int width, height;
+    /**
+     * The folder the files are written to.
+     */
+    private Path directory;
+    /**
+     * How the frames are written.
+     */
+    private Format format;
+    /**
+     * Number of frames skipped on purpose after each frame that is kept.
+     */
+    private int frameSkip;
+    /**
+     * The images in the ring. Frame n is drawn into images[n % images.length].
+     */
+    private BufferedImage[] images;
+    /**
+     * Graphics for drawing into each image, created once.
+     */
+    private Graphics2D[] graphics;
+    /**
+     * Number of frames put into the ring. Only changed by the thread drawing frames.
+     */
+    private AtomicLong head;
+    /**
+     * Number of frames taken out of the ring after being encoded. Only changed by the encoder thread.
+     */
+    private AtomicLong tail;
+    /**
+     * Number of frames offered with beginFrame(), including any skipped or dropped.
+     */
+    private long offeredCount;
+    /**
+     * Number of frames skipped on purpose because of the frame skip.
+     */
+    private long skippedCount;
+    /**
+     * Number of frames dropped because the encoder had fallen behind.
+     */
+    private long droppedCount;
+    /**
+     * Number of frames written to disk.
+     */
+    private volatile long writtenCount;
+    /**
+     * Number of frames that could not be written.
+     */
+    private volatile long failedCount;
+    /**
+     * True between beginFrame() returning Graphics and endFrame().
+     */
+    private boolean frameOpen;
+    /**
+     * Set to false to make the encoder finish the frames in the ring and stop.
+     */
+    private volatile boolean running;
+    /**
+     * The thread that encodes the frames.
+     */
+    private Thread encoder;
+    /**
+     * The file raw frames are added to, or null for PNG.
+     */
+    private FileChannel rawChannel;
+    /**
+     * Buffer used by the encoder to write a raw frame.
+     */
+    private ByteBuffer rawBuffer;
+
+    /**
+     * Creates the ring of images and starts the encoder thread.
+     *
+     * @param width Width of the frames.
+     * @param height Height of the frames.
+     * @param slots Number of frames that can wait to be encoded before frames are dropped.
+     * @param directory The folder to write the files to, which is created if it does not exist.
+     * @param format How the frames are written.
+     * @param frameSkip Number of frames to skip after each frame that is kept, 0 to keep every frame.
+     * @throws IOException If the folder or the raw file could not be created.
+     */
+    public FrameCapture(int width, int height, int slots, Path directory, Format format, int frameSkip) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.directory = directory;
+        this.format = format;
+        this.frameSkip = frameSkip;
+        Files.createDirectories(directory);
+        images = new BufferedImage[slots];
+        graphics = new Graphics2D[slots];
+        for(int i = 0; i < slots; i++) {
+            images[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            graphics[i] = images[i].createGraphics();
+            // Drawing once sets up the image for drawing, which would otherwise allocate during the first frame.
+            graphics[i].setColor(Color.BLACK);
+            graphics[i].fillRect(0, 0, width, height);
+        }
+        head = new AtomicLong();
+        tail = new AtomicLong();
+        if(format == Format.RAW) {
+            rawChannel = FileChannel.open(directory.resolve("frames.raw"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            rawBuffer = ByteBuffer.allocateDirect(width * height * Integer.BYTES);
+        }
+        running = true;
+        encoder = new Thread(this::encodeFrames, "Frame Capture");
+        encoder.setDaemon(true);
+        encoder.setPriority(Thread.MIN_PRIORITY);
+        encoder.start();
+    }
+
+    /**
+     * Starts a frame. When the frame is kept, the Graphics returned draws into the next image
+     * in the ring, and endFrame() must be called once it is drawn. Returns null without waiting
+     * when the frame is skipped or the ring is full, and then nothing needs to be drawn.
+     *
+     * @return Graphics to draw the frame with, or null if the frame is not kept.
+     */
+    public Graphics beginFrame() {
+        long frame = offeredCount++;
+        if(frame % (frameSkip + 1) != 0) {
+            skippedCount++;
+            return null;
+        }
+        long next = head.get();
+        if(next - tail.get() >= images.length) {
+            droppedCount++;
+            return null;
+        }
+        frameOpen = true;
+        return graphics[(int)(next % images.length)];
+    }
+
+    /**
+     * Finishes the frame started by beginFrame() and hands it to the encoder.
+     */
+    public void endFrame() {
+        if(!frameOpen) {
+            return;
+        }
+        frameOpen = false;
+        head.lazySet(head.get() + 1);
+        LockSupport.unpark(encoder);
+    }
+
+    /**
+     * Waits for the encoder to write every frame in the ring and then stops it.
+     *
+     * @throws InterruptedException If interrupted while waiting for the encoder.
+     */
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(encoder);
+        encoder.join();
+        if(rawChannel != null) {
+            try {
+                rawChannel.close();
+            } catch(IOException e) {
+                System.err.println("Unable to close the capture file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of frames offered with beginFrame(), including any skipped or dropped.
+     *
+     * @return The number of frames offered.
+     */
+    public long getOfferedCount() {
+        return offeredCount;
+    }
+
+    /**
+     * Gets the number of frames handed to the encoder.
+     *
+     * @return The number of frames kept.
+     */
+    public long getCapturedCount() {
+        return head.get();
+    }
+
+    /**
+     * Gets the number of frames skipped on purpose because of the frame skip.
+     *
+     * @return The number of frames skipped.
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Gets the number of frames dropped because the encoder had fallen behind.
+     *
+     * @return The number of frames dropped.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Gets the number of frames written to disk so far.
+     *
+     * @return The number of frames written.
+     */
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * Gets the number of frames that could not be written.
+     *
+     * @return The number of frames that failed.
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Gets a one line summary of the counters.
+     *
+     * @return The summary.
+     */
+    public String getSummary() {
+        return String.format("Captured %d of %d frames to %s (%d skipped, %d dropped, %d written, %d failed)",
+                getCapturedCount(), offeredCount, directory, skippedCount, droppedCount, writtenCount, failedCount);
+    }
+
+    /**
+     * Run by the encoder thread. Writes each frame as soon as it is in the ring, and waits
+     * when there is nothing to do. After close() it finishes the frames left in the ring.
+     */
+    private void encodeFrames() {
+        while(true) {
+            long frame = tail.get();
+            if(frame == head.get()) {
+                if(!running) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            try {
+                writeFrame(frame, images[(int)(frame % images.length)]);
+                writtenCount++;
+            } catch(IOException e) {
+                if(failedCount == 0) {
+                    System.err.println("Unable to write captured frame " + frame + ": " + e.getMessage());
+                }
+                failedCount++;
+            }
+            tail.lazySet(frame + 1);
+        }
+    }
+
+    /**
+     * Writes one frame in the chosen format.
+     *
+     * @param frame Number of the frame, counting only frames that were kept.
+     * @param image The image holding the frame.
+     * @throws IOException If the frame could not be written.
+     */
+    private void writeFrame(long frame, BufferedImage image) throws IOException {
+        if(format == Format.PNG) {
+            Path file = directory.resolve(String.format("frame-%06d.png", frame));
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                OutputStream output = Channels.newOutputStream(channel)) {
+                ImageIO.write(image, "png", output);
+            }
+        } else {
+            int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+            rawBuffer.clear();
+            IntBuffer intView = rawBuffer.asIntBuffer();
+            intView.put(pixels, 0, width * height);
+            while(rawBuffer.hasRemaining()) {
+                rawChannel.write(rawBuffer);
+            }
+        }
+    }
+}
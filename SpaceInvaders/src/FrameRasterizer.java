@@ -0,0 +1,350 @@
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * FrameRasterizer class:
+ * Draws the game into a reusable byte array at any resolution without using AWT,
+ * for agents that learn from pixels and for checking what the game looks like in tests.
+ * Each byte is a palette index, or a grey level when grayscale is turned on.
+ * Every output pixel shows the game pixel at its centre, so a frame is the same as drawing
+ * the game with ObjectManager.paint() at full size and then scaling it down by picking the
+ * nearest pixel. Tables made once up front give the first output column and row at or after
+ * every game coordinate, so each rectangle becomes a run of Arrays.fill() calls, one per row.
+ * Drawing a frame does not allocate anything.
+ */
+public class FrameRasterizer {
+    /**
+     * Palette index of the background.
+     */
+    public static final int COLOUR_BACKGROUND = 0;
+    /**
+     * Palette index of the shields.
+     */
+    public static final int COLOUR_SHIELD = 1;
+    /**
+     * Palette index of the player's tank.
+     */
+    public static final int COLOUR_PLAYER = 2;
+    /**
+     * Palette index of the outlines and barrel drawn over the player's tank.
+     */
+    public static final int COLOUR_PLAYER_DETAIL = 3;
+    /**
+     * Palette index of projectiles fired by the player.
+     */
+    public static final int COLOUR_PLAYER_SHOT = 4;
+    /**
+     * Palette index of projectiles fired by aliens.
+     */
+    public static final int COLOUR_ALIEN_SHOT = 5;
+    /**
+     * Palette index of the first alien type. Each type follows on from it.
+     */
+    public static final int COLOUR_ALIEN = 6;
+    /**
+     * Colour of every palette index, matching the colours used to draw with Graphics.
+     */
+    private static final Color[] PALETTE = {
+            Color.BLACK, Obstacle.getColour(), Player.getBodyColour(), Player.getDetailColour(),
+            ProjectilePool.getOwnerColour(ProjectilePool.OWNER_PLAYER), ProjectilePool.getOwnerColour(ProjectilePool.OWNER_ALIEN),
+            Alien.getTypeColour(0), Alien.getTypeColour(1), Alien.getTypeColour(2),
+            Alien.getTypeColour(3), Alien.getTypeColour(4)
+    };
+    /**
+     * Width and height of the game area that is drawn.
+     */
+    private int sourceWidth, sourceHeight;
+    /**
+     * Width and height of the frame in pixels.
+     */
+    private int width, height;
+    /**
+     * The frame, one byte per pixel in rows from the top left.
+     */
+    private byte[] frame;
+    /**
+     * Game x coordinate shown by each column of the frame.
+     */
+    private int[] sampleX;
+    /**
+     * Game y coordinate shown by each row of the frame.
+     */
+    private int[] sampleY;
+    /**
+     * First column of the frame that shows game x coordinate x or further right, for x from 0 to sourceWidth.
+     */
+    private int[] firstColumn;
+    /**
+     * First row of the frame that shows game y coordinate y or further down, for y from 0 to sourceHeight.
+     */
+    private int[] firstRow;
+    /**
+     * Byte written for each palette index, either the index itself or its grey level.
+     */
+    private byte[] values;
+
+    /**
+     * Creates a rasterizer for a game area the size of the GamePanel.
+     *
+     * @param width Width of the frame in pixels.
+     * @param height Height of the frame in pixels.
+     */
+    public FrameRasterizer(int width, int height) {
+        this(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, width, height);
+    }
+
+    /**
+     * Creates a rasterizer that scales a game area of any size to the frame.
+     *
+     * @param sourceWidth Width of the game area.
+     * @param sourceHeight Height of the game area.
+     * @param width Width of the frame in pixels.
+     * @param height Height of the frame in pixels.
+     */
+    public FrameRasterizer(int sourceWidth, int sourceHeight, int width, int height) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.width = width;
+        this.height = height;
+        frame = new byte[width * height];
+        sampleX = createSamples(sourceWidth, width);
+        sampleY = createSamples(sourceHeight, height);
+        firstColumn = createFirstIndexes(sampleX, sourceWidth);
+        firstRow = createFirstIndexes(sampleY, sourceHeight);
+        values = new byte[PALETTE.length];
+        setGrayscale(false);
+    }
+
+    /**
+     * Chooses if the frame holds palette indexes or grey levels.
+     *
+     * @param grayscale True to write the brightness of each colour from 0 to 255, false to write palette indexes.
+     */
+    public void setGrayscale(boolean grayscale) {
+        for(int i = 0; i < PALETTE.length; i++) {
+            Color colour = PALETTE[i];
+            values[i] = (byte)(grayscale
+                    ? (299 * colour.getRed() + 587 * colour.getGreen() + 114 * colour.getBlue() + 500) / 1000
+                    : i);
+        }
+    }
+
+    /**
+     * Draws the shields, player, aliens, and projectiles where they are now, in the same order as ObjectManager.paint().
+     *
+     * @param world The game to draw.
+     * @return The frame, which is reused for every call.
+     */
+    public byte[] render(ObjectManager world) {
+        Arrays.fill(frame, values[COLOUR_BACKGROUND]);
+        for(int i = 0; i < world.getObstacles().size(); i++) {
+            drawShield(world.getObstacles().get(i));
+        }
+        drawTank(world.getPlayer().getX(), world.getPlayer().getY());
+        AlienManager alienManager = world.getAlienManager();
+        EntityStore aliens = alienManager.getEntities();
+        for(int i = 0; i < aliens.size(); i++) {
+            if(alienManager.isAlive(i)) {
+                fillRect(aliens.getX(i), aliens.getY(i), Alien.WIDTH, Alien.HEIGHT, COLOUR_ALIEN + alienManager.getType(i));
+            }
+        }
+        ProjectilePool projectiles = world.getProjectiles();
+        for(int i = 0; i < projectiles.size(); i++) {
+            fillRect(projectiles.getX(i), projectiles.getY(i), ProjectilePool.WIDTH, ProjectilePool.HEIGHT,
+                    projectiles.getOwner(i) == ProjectilePool.OWNER_PLAYER ? COLOUR_PLAYER_SHOT : COLOUR_ALIEN_SHOT);
+        }
+        return frame;
+    }
+
+    /**
+     * Gets the frame drawn by the last call to render().
+     *
+     * @return The frame, one byte per pixel in rows from the top left.
+     */
+    public byte[] getFrame() {
+        return frame;
+    }
+
+    /**
+     * Gets the width of the frame.
+     *
+     * @return The width in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the frame.
+     *
+     * @return The height in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the game x coordinate shown by a column of the frame.
+     *
+     * @param column Column of the frame.
+     * @return The x coordinate at the centre of the column.
+     */
+    public int getSampleX(int column) {
+        return sampleX[column];
+    }
+
+    /**
+     * Gets the game y coordinate shown by a row of the frame.
+     *
+     * @param row Row of the frame.
+     * @return The y coordinate at the centre of the row.
+     */
+    public int getSampleY(int row) {
+        return sampleY[row];
+    }
+
+    /**
+     * Gets the number of colours in the palette.
+     *
+     * @return The number of palette indexes.
+     */
+    public static int getPaletteSize() {
+        return PALETTE.length;
+    }
+
+    /**
+     * Gets the colour of a palette index.
+     *
+     * @param index The palette index.
+     * @return The colour drawn for it with Graphics.
+     */
+    public static Color getPaletteColour(int index) {
+        return PALETTE[index];
+    }
+
+    /**
+     * Draws the player's tank the same way as Player.drawTank(). The outlines drawn by Graphics.drawRect()
+     * cover one pixel more than their width and height, so each side is filled as a rectangle one pixel thick.
+     *
+     * @param x X coordinate of the top left corner.
+     * @param y Y coordinate of the top left corner.
+     */
+    private void drawTank(int x, int y) {
+        fillRect(x, y, Player.WIDTH, Player.HEIGHT, COLOUR_PLAYER);
+        drawRect(x, y, 5, Player.HEIGHT, COLOUR_PLAYER_DETAIL);
+        drawRect(x + Player.WIDTH - 5, y, 5, Player.HEIGHT, COLOUR_PLAYER_DETAIL);
+        fillRect(x + Player.WIDTH / 2 - 2, y + Player.HEIGHT / 3, 4, Player.HEIGHT * 2 / 3 + 1, COLOUR_PLAYER_DETAIL);
+    }
+
+    /**
+     * Draws the outline of a rectangle the same as Graphics.drawRect().
+     *
+     * @param x X coordinate of the top left corner.
+     * @param y Y coordinate of the top left corner.
+     * @param rectWidth Width of the rectangle.
+     * @param rectHeight Height of the rectangle.
+     * @param colour Palette index to draw with.
+     */
+    private void drawRect(int x, int y, int rectWidth, int rectHeight, int colour) {
+        fillRect(x, y, rectWidth + 1, 1, colour);
+        fillRect(x, y + rectHeight, rectWidth + 1, 1, colour);
+        fillRect(x, y, 1, rectHeight + 1, colour);
+        fillRect(x + rectWidth, y, 1, rectHeight + 1, colour);
+    }
+
+    /**
+     * Fills every pixel of the frame whose centre is inside a rectangle of the game area.
+     *
+     * @param x X coordinate of the top left corner.
+     * @param y Y coordinate of the top left corner.
+     * @param rectWidth Width of the rectangle.
+     * @param rectHeight Height of the rectangle.
+     * @param colour Palette index to fill with.
+     */
+    private void fillRect(int x, int y, int rectWidth, int rectHeight, int colour) {
+        int startColumn = firstColumn[clamp(x, sourceWidth)];
+        int endColumn = firstColumn[clamp(x + rectWidth, sourceWidth)];
+        int startRow = firstRow[clamp(y, sourceHeight)];
+        int endRow = firstRow[clamp(y + rectHeight, sourceHeight)];
+        if(startColumn >= endColumn) {
+            return;
+        }
+        byte value = values[colour];
+        for(int row = startRow; row < endRow; row++) {
+            Arrays.fill(frame, row * width + startColumn, row * width + endColumn, value);
+        }
+    }
+
+    /**
+     * Fills every pixel of the frame whose centre is on a solid pixel of the shield.
+     *
+     * @param shield The shield to draw.
+     */
+    private void drawShield(Obstacle shield) {
+        int left = shield.getX();
+        int top = shield.getY();
+        int wordsPerRow = shield.getMaskWordCount() / shield.getHeight();
+        int startColumn = firstColumn[clamp(left, sourceWidth)];
+        int endColumn = firstColumn[clamp(left + shield.getWidth(), sourceWidth)];
+        int startRow = firstRow[clamp(top, sourceHeight)];
+        int endRow = firstRow[clamp(top + shield.getHeight(), sourceHeight)];
+        byte value = values[COLOUR_SHIELD];
+        for(int row = startRow; row < endRow; row++) {
+            int wordStart = (sampleY[row] - top) * wordsPerRow;
+            for(int column = startColumn; column < endColumn; column++) {
+                int bit = sampleX[column] - left;
+                if((shield.getMaskWord(wordStart + bit / Long.SIZE) & (1L << bit)) != 0) {
+                    frame[row * width + column] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Limits a coordinate to the game area, where size itself is allowed as the end of a rectangle.
+     *
+     * @param coordinate The coordinate.
+     * @param size Width or height of the game area.
+     * @return The coordinate from 0 to size.
+     */
+    private static int clamp(int coordinate, int size) {
+        return Math.max(0, Math.min(size, coordinate));
+    }
+
+    /**
+     * Finds the game coordinate at the centre of each pixel along one side of the frame.
+     *
+     * @param sourceSize Width or height of the game area.
+     * @param size Width or height of the frame.
+     * @return The game coordinate for each pixel.
+     */
+    private static int[] createSamples(int sourceSize, int size) {
+        int[] samples = new int[size];
+        for(int i = 0; i < size; i++) {
+            samples[i] = (int)((2L * i + 1) * sourceSize / (2L * size));
+        }
+        return samples;
+    }
+
+    /**
+     * Finds the first pixel showing each game coordinate or one after it.
+     *
+     * @param samples The game coordinate for each pixel, in increasing order.
+     * @param sourceSize Width or height of the game area.
+     * @return For each coordinate from 0 to sourceSize, the first pixel at or after it, or samples.length if there is none.
+     */
+    private static int[] createFirstIndexes(int[] samples, int sourceSize) {
+        int[] firstIndexes = new int[sourceSize + 1];
+        int index = 0;
+        for(int coordinate = 0; coordinate <= sourceSize; coordinate++) {
+            while(index < samples.length && samples[index] < coordinate) {
+                index++;
+            }
+            firstIndexes[coordinate] = index;
+        }
+        return firstIndexes;
+    }
+}
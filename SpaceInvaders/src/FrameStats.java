@@ -0,0 +1,105 @@
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * FrameStats class:
+ * Collects frame pacing statistics for the GameLoop over a reporting window.
+ * Tracks the time between rendered frames, how many simulation steps were run,
+ * and how often the loop had to drop time because it could not catch up.
+ * Values are only recorded into primitive fields so that collecting them does not allocate.
+ */
+public class FrameStats {
+    /**
+     * Number of frames rendered in the current window.
+     */
+    private int frames;
+    /**
+     * Number of simulation steps in the current window.
+     */
+    private int steps;
+    /**
+     * Number of frames where the catch-up cap was hit and time was dropped.
+     */
+    private int cappedFrames;
+    /**
+     * Sum and sum of squares of the time between frames in nanoseconds.
+     */
+    private double frameTimeSum, frameTimeSquaredSum;
+    /**
+     * Shortest and longest time between frames in nanoseconds.
+     */
+    private long minFrameTime, maxFrameTime;
+    /**
+     * Time when the current window started.
+     */
+    private long windowStart;
+
+    /**
+     * Creates the stats with an empty window starting now.
+     */
+    public FrameStats() {
+        reset(System.nanoTime());
+    }
+
+    /**
+     * Records a rendered frame.
+     *
+     * @param frameTime Nanoseconds since the previous frame.
+     * @param simulationSteps Number of simulation steps run for this frame.
+     * @param capped True if the catch-up cap was hit during this frame.
+     */
+    public void recordFrame(long frameTime, int simulationSteps, boolean capped) {
+        frames++;
+        steps += simulationSteps;
+        if(capped) {
+            cappedFrames++;
+        }
+        frameTimeSum += frameTime;
+        frameTimeSquaredSum += (double)frameTime * frameTime;
+        minFrameTime = Math.min(minFrameTime, frameTime);
+        maxFrameTime = Math.max(maxFrameTime, frameTime);
+    }
+
+    /**
+     * Gets the time in nanoseconds since the window started.
+     *
+     * @param now The current time from System.nanoTime().
+     * @return Nanoseconds since the window started.
+     */
+    public long getWindowLength(long now) {
+        return now - windowStart;
+    }
+
+    /**
+     * Creates a one line summary of the window. The frame rate and simulation rate
+     * show if the simulation kept its fixed rate, and the jitter shows how evenly frames were paced.
+     *
+     * @param now The current time from System.nanoTime().
+     * @return A summary of the statistics.
+     */
+    public String getSummary(long now) {
+        double seconds = getWindowLength(now) / 1e9;
+        double mean = frames > 0 ? frameTimeSum / frames : 0;
+        double variance = frames > 0 ? frameTimeSquaredSum / frames - mean * mean : 0;
+        return String.format("fps %.1f, steps/s %.1f, frame ms avg %.2f min %.2f max %.2f jitter %.2f, capped %d",
+                frames / seconds, steps / seconds, mean / 1e6,
+                frames > 0 ? minFrameTime / 1e6 : 0, maxFrameTime / 1e6,
+                Math.sqrt(Math.max(0, variance)) / 1e6, cappedFrames);
+    }
+
+    /**
+     * Clears all the statistics and starts a new window.
+     *
+     * @param now The current time from System.nanoTime().
+     */
+    public void reset(long now) {
+        frames = 0;
+        steps = 0;
+        cappedFrames = 0;
+        frameTimeSum = 0;
+        frameTimeSquaredSum = 0;
+        minFrameTime = Long.MAX_VALUE;
+        maxFrameTime = 0;
+        windowStart = now;
+    }
+}
@@ -0,0 +1,169 @@
+import java.awt.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * GameLoop class:
+ * Runs the game on its own thread with a fixed timestep. Real time is accumulated
+ * and the simulation is stepped every GamePanel.TIME_INTERVAL, so the game always runs
+ * at the same speed no matter how long rendering takes. Rendering happens once per frame
+ * at the display refresh rate and is given how far between the previous and current
+ * simulation step the frame is, so that movement can be interpolated smoothly.
+ * When frames take too long only a limited number of steps are run to catch up
+ * and the rest of the time is dropped, so a slow frame can not cause an ever growing backlog.
+ * An exception thrown while updating or drawing is printed and the loop carries on with the next
+ * step or frame, the same as the Swing thread does, so one failure does not leave the window frozen.
+ */
+public class GameLoop implements Runnable {
+    /**
+     * Time of one simulation step in nanoseconds.
+     */
+    private static final long STEP_NANOS = GamePanel.TIME_INTERVAL * 1_000_000L;
+    /**
+     * Most simulation steps that will be run for a single frame.
+     */
+    private static final int MAX_STEPS_PER_FRAME = 5;
+    /**
+     * Frame rate used when the display does not report a refresh rate.
+     */
+    private static final int DEFAULT_FRAME_RATE = 60;
+    /**
+     * How often frame pacing statistics are printed when enabled.
+     */
+    private static final long STATS_INTERVAL_NANOS = 5_000_000_000L;
+    /**
+     * The panel that is updated and drawn.
+     */
+    private GamePanel gamePanel;
+    /**
+     * Target time between rendered frames in nanoseconds.
+     */
+    private long frameNanos;
+    /**
+     * Frame pacing statistics for the current reporting window.
+     */
+    private FrameStats frameStats;
+    /**
+     * When true the frame pacing statistics are printed every STATS_INTERVAL_NANOS.
+     */
+    private boolean printStats;
+    /**
+     * The thread running the loop.
+     */
+    private Thread thread;
+
+    /**
+     * Creates the loop ready to start. The frame rate matches the refresh rate of the
+     * display unless it is set with the spaceinvaders.fps system property.
+     * Setting spaceinvaders.frameStats to true prints frame pacing statistics every 5 seconds.
+     *
+     * @param gamePanel The panel to update and draw.
+     */
+    public GameLoop(GamePanel gamePanel) {
+        this.gamePanel = gamePanel;
+        frameNanos = 1_000_000_000L / Integer.getInteger("spaceinvaders.fps", getDisplayRefreshRate());
+        frameStats = new FrameStats();
+        printStats = Boolean.getBoolean("spaceinvaders.frameStats");
+    }
+
+    /**
+     * Starts the loop on a new daemon thread.
+     */
+    public void start() {
+        thread = new Thread(this, "Game Loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Accumulates time, runs the fixed simulation steps, renders with the interpolation
+     * amount, and then waits until the next frame is due. A step or frame that throws is
+     * reported and counted as done.
+     */
+    @Override
+    public void run() {
+        long previousTime = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previousTime;
+        frameStats.reset(previousTime);
+        while(!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            long frameTime = now - previousTime;
+            previousTime = now;
+            accumulator += frameTime;
+
+            int steps = 0;
+            while(accumulator >= STEP_NANOS && steps < MAX_STEPS_PER_FRAME) {
+                try {
+                    gamePanel.tick();
+                } catch(RuntimeException e) {
+                    reportFailure("update", e);
+                }
+                accumulator -= STEP_NANOS;
+                steps++;
+            }
+            boolean capped = accumulator >= STEP_NANOS;
+            if(capped) {
+                // Too far behind to catch up, so drop the extra time instead of spiralling.
+                accumulator %= STEP_NANOS;
+            }
+
+            try {
+                gamePanel.render((float)accumulator / STEP_NANOS);
+            } catch(RuntimeException e) {
+                reportFailure("frame", e);
+            }
+            frameStats.recordFrame(frameTime, steps, capped);
+            if(printStats && frameStats.getWindowLength(now) >= STATS_INTERVAL_NANOS) {
+                System.out.println(frameStats.getSummary(now));
+                frameStats.reset(now);
+            }
+
+            nextFrame += frameNanos;
+            long sleepTime = nextFrame - System.nanoTime();
+            if(sleepTime > 0) {
+                LockSupport.parkNanos(sleepTime);
+            } else if(-sleepTime > frameNanos) {
+                // Missed a whole frame, so schedule from now instead of rushing to catch up.
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Gets the frame pacing statistics for the current window.
+     *
+     * @return The frame pacing statistics.
+     */
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
+    /**
+     * Prints an exception thrown by an update or frame so the loop can carry on.
+     *
+     * @param what What was running when it was thrown, either update or frame.
+     * @param e The exception.
+     */
+    private static void reportFailure(String what, RuntimeException e) {
+        System.err.println("Game loop " + what + " failed:");
+        e.printStackTrace();
+    }
+
+    /**
+     * Gets the refresh rate of the main display.
+     *
+     * @return The refresh rate in Hz, or DEFAULT_FRAME_RATE if it is unknown.
+     */
+    private static int getDisplayRefreshRate() {
+        if(GraphicsEnvironment.isHeadless()) {
+            return DEFAULT_FRAME_RATE;
+        }
+        DisplayMode displayMode = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDisplayMode();
+        int refreshRate = displayMode.getRefreshRate();
+        return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_FRAME_RATE : refreshRate;
+    }
+}
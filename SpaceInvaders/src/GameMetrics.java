@@ -0,0 +1,420 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * GameMetrics class:
+ * Measures how long updates and drawing take while the game is running.
+ * Every update is timed as a whole and split into the player, alien, and projectile
+ * phases, and every frame is timed while drawing. The time from the fire key being pressed
+ * to the update that spawned the shot is recorded as the input latency. Times are collected into histograms
+ * over a one second window, and when the window ends it is copied to be read by the
+ * on screen overlay or through JMX while the next window is collected.
+ * Also counts updates that took longer than the time between updates, the number of
+ * projectiles and aliens, and how quickly memory is allocated while updating and drawing.
+ * The recording methods must only be called by one thread at a time, such as while
+ * holding the GamePanel's lock, and they do not allocate.
+ */
+public class GameMetrics implements GameMetricsMBean {
+    /**
+     * Timer for a whole update.
+     */
+    public static final int TICK = 0;
+    /**
+     * Timer for updating the player.
+     */
+    public static final int PLAYER_UPDATE = 1;
+    /**
+     * Timer for updating the aliens.
+     */
+    public static final int ALIEN_UPDATE = 2;
+    /**
+     * Timer for updating the projectiles.
+     */
+    public static final int PROJECTILE_UPDATE = 3;
+    /**
+     * Timer for drawing a frame.
+     */
+    public static final int PAINT = 4;
+    /**
+     * Timer for the time from a key event being received to the end of the update it had an effect in.
+     */
+    public static final int INPUT = 5;
+    /**
+     * Number of different timers.
+     */
+    private static final int TIMER_COUNT = 6;
+    /**
+     * Names of the timers shown on the overlay.
+     */
+    private static final String[] TIMER_NAMES = {"tick", "player", "aliens", "shots", "paint", "input"};
+    /**
+     * Length of each window of collected values.
+     */
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    /**
+     * Name the metrics are registered with in the platform MBean server.
+     */
+    private static final String OBJECT_NAME = "SpaceInvaders:type=GameMetrics";
+    /**
+     * Histograms being recorded into for the current window.
+     */
+    private LatencyHistogram[] current;
+    /**
+     * Histograms for the last completed window that are read by the overlay and JMX.
+     */
+    private LatencyHistogram[] published;
+    /**
+     * Updates taking longer than this are counted as overruns.
+     */
+    private long tickBudgetNanos;
+    /**
+     * Times when the current update started, when the current update phase started, and when the current frame started.
+     */
+    private long tickStart, lapStart, paintStart;
+    /**
+     * Bytes allocated by the thread when the current update or frame started.
+     */
+    private long tickAllocationStart, paintAllocationStart;
+    /**
+     * Time when the current window started.
+     */
+    private long windowStart;
+    /**
+     * Bytes allocated while updating and drawing during the current window.
+     */
+    private long windowAllocatedBytes;
+    /**
+     * Bytes allocated per second during the last completed window.
+     */
+    private double allocationRate;
+    /**
+     * Number of updates and how many of them took longer than tickBudgetNanos.
+     */
+    private volatile long tickCount, tickOverruns;
+    /**
+     * Number of projectiles and aliens after the latest update.
+     */
+    private volatile int projectileCount, alienCount;
+    /**
+     * Increased every time a window is completed, so readers can tell when values have changed.
+     */
+    private volatile int windowNumber;
+    /**
+     * Used to read how many bytes the current thread has allocated, or null when not supported.
+     */
+    private com.sun.management.ThreadMXBean allocationBean;
+
+    /**
+     * Creates empty metrics.
+     *
+     * @param tickBudgetMillis Time between updates. Updates taking longer are counted as overruns.
+     */
+    public GameMetrics(int tickBudgetMillis) {
+        tickBudgetNanos = tickBudgetMillis * 1_000_000L;
+        current = new LatencyHistogram[TIMER_COUNT];
+        published = new LatencyHistogram[TIMER_COUNT];
+        for(int i = 0; i < TIMER_COUNT; i++) {
+            current[i] = new LatencyHistogram();
+            published[i] = new LatencyHistogram();
+        }
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if(threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+            allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            allocationBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            allocationRate = -1;
+        }
+        windowStart = System.nanoTime();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server so they can be read through JMX.
+     * The game keeps running without JMX if this fails.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch(JMException e) {
+            System.err.println("Unable to register the game metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts timing an update. This also starts the first phase of the update.
+     */
+    public void startTick() {
+        tickAllocationStart = getAllocatedBytes();
+        tickStart = System.nanoTime();
+        lapStart = tickStart;
+    }
+
+    /**
+     * Ends the current phase of the update and starts the next one.
+     *
+     * @param timer The timer to record the phase into, such as PLAYER_UPDATE.
+     */
+    public void lap(int timer) {
+        long now = System.nanoTime();
+        current[timer].record(now - lapStart);
+        lapStart = now;
+    }
+
+    /**
+     * Ends timing an update. The time since the last lap is recorded as the projectile update,
+     * and the window is ended if it has run for long enough.
+     *
+     * @param projectiles Number of projectiles after the update.
+     * @param aliens Number of aliens after the update.
+     */
+    public void endTick(int projectiles, int aliens) {
+        lap(PROJECTILE_UPDATE);
+        long tickTime = lapStart - tickStart;
+        current[TICK].record(tickTime);
+        if(tickTime > tickBudgetNanos) {
+            tickOverruns++;
+        }
+        tickCount++;
+        projectileCount = projectiles;
+        alienCount = aliens;
+        windowAllocatedBytes += getAllocatedBytes() - tickAllocationStart;
+        checkWindow(lapStart);
+    }
+
+    /**
+     * Starts timing a frame being drawn.
+     */
+    public void startPaint() {
+        paintAllocationStart = getAllocatedBytes();
+        paintStart = System.nanoTime();
+    }
+
+    /**
+     * Ends timing a frame being drawn, and ends the window if it has run for long enough.
+     */
+    public void endPaint() {
+        long now = System.nanoTime();
+        current[PAINT].record(now - paintStart);
+        windowAllocatedBytes += getAllocatedBytes() - paintAllocationStart;
+        checkWindow(now);
+    }
+
+    /**
+     * Ends the window if it has run for long enough. Updates and frames already do this, so this
+     * is only needed when neither is happening, such as after the game is over when there are no updates
+     * and nothing changes to be drawn.
+     */
+    public void checkWindow() {
+        checkWindow(System.nanoTime());
+    }
+
+    /**
+     * Records the time from a key event being received to the end of the update it had an effect in.
+     *
+     * @param eventTime Time the key event was received from System.nanoTime().
+     */
+    public void recordInputLatency(long eventTime) {
+        current[INPUT].record(System.nanoTime() - eventTime);
+    }
+
+    /**
+     * Gets a number that changes every time a window is completed.
+     *
+     * @return The number of completed windows.
+     */
+    public int getWindowNumber() {
+        return windowNumber;
+    }
+
+    /**
+     * Creates the lines of text shown on the overlay for the last completed window.
+     *
+     * @return One line per timer followed by the counts and allocation rate.
+     */
+    public synchronized String[] getSummaryLines() {
+        String[] lines = new String[TIMER_COUNT + 2];
+        for(int i = 0; i < TIMER_COUNT; i++) {
+            lines[i] = String.format("%-6s p50 %6.1f p99 %6.1f max %7.1f us", TIMER_NAMES[i],
+                    getMicros(i, 0.5), getMicros(i, 0.99), published[i].getMax() / 1000.0);
+        }
+        lines[TIMER_COUNT] = String.format("overruns %d  shots %d  aliens %d",
+                tickOverruns, projectileCount, alienCount);
+        lines[TIMER_COUNT + 1] = allocationRate < 0 ? "alloc n/a"
+                : String.format("alloc %.1f KB/s", allocationRate / 1024);
+        return lines;
+    }
+
+    @Override
+    public double getTickP50Micros() {
+        return getMicros(TICK, 0.5);
+    }
+
+    @Override
+    public double getTickP99Micros() {
+        return getMicros(TICK, 0.99);
+    }
+
+    @Override
+    public double getTickMaxMicros() {
+        return getMicros(TICK, 1);
+    }
+
+    @Override
+    public double getPlayerUpdateP50Micros() {
+        return getMicros(PLAYER_UPDATE, 0.5);
+    }
+
+    @Override
+    public double getPlayerUpdateP99Micros() {
+        return getMicros(PLAYER_UPDATE, 0.99);
+    }
+
+    @Override
+    public double getPlayerUpdateMaxMicros() {
+        return getMicros(PLAYER_UPDATE, 1);
+    }
+
+    @Override
+    public double getAlienUpdateP50Micros() {
+        return getMicros(ALIEN_UPDATE, 0.5);
+    }
+
+    @Override
+    public double getAlienUpdateP99Micros() {
+        return getMicros(ALIEN_UPDATE, 0.99);
+    }
+
+    @Override
+    public double getAlienUpdateMaxMicros() {
+        return getMicros(ALIEN_UPDATE, 1);
+    }
+
+    @Override
+    public double getProjectileUpdateP50Micros() {
+        return getMicros(PROJECTILE_UPDATE, 0.5);
+    }
+
+    @Override
+    public double getProjectileUpdateP99Micros() {
+        return getMicros(PROJECTILE_UPDATE, 0.99);
+    }
+
+    @Override
+    public double getProjectileUpdateMaxMicros() {
+        return getMicros(PROJECTILE_UPDATE, 1);
+    }
+
+    @Override
+    public double getPaintP50Micros() {
+        return getMicros(PAINT, 0.5);
+    }
+
+    @Override
+    public double getPaintP99Micros() {
+        return getMicros(PAINT, 0.99);
+    }
+
+    @Override
+    public double getPaintMaxMicros() {
+        return getMicros(PAINT, 1);
+    }
+
+    @Override
+    public double getInputLatencyP50Micros() {
+        return getMicros(INPUT, 0.5);
+    }
+
+    @Override
+    public double getInputLatencyP99Micros() {
+        return getMicros(INPUT, 0.99);
+    }
+
+    @Override
+    public double getInputLatencyMaxMicros() {
+        return getMicros(INPUT, 1);
+    }
+
+    @Override
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    @Override
+    public long getTickOverruns() {
+        return tickOverruns;
+    }
+
+    @Override
+    public int getProjectileCount() {
+        return projectileCount;
+    }
+
+    @Override
+    public int getAlienCount() {
+        return alienCount;
+    }
+
+    @Override
+    public synchronized double getAllocationRateBytesPerSecond() {
+        return allocationRate;
+    }
+
+    /**
+     * Reads a percentile from the last completed window.
+     *
+     * @param timer The timer to read, such as TICK.
+     * @param fraction The percentile as a fraction from 0 to 1.
+     * @return The value in microseconds.
+     */
+    private synchronized double getMicros(int timer, double fraction) {
+        return published[timer].getPercentile(fraction) / 1000.0;
+    }
+
+    /**
+     * Copies the current window for reading and starts a new window once the current window
+     * has been collecting for WINDOW_NANOS.
+     *
+     * @param now The current time from System.nanoTime().
+     */
+    private void checkWindow(long now) {
+        if(now - windowStart >= WINDOW_NANOS) {
+            publishWindow(now);
+        }
+    }
+
+    /**
+     * Copies the current window so it can be read and starts a new window.
+     *
+     * @param now The current time from System.nanoTime().
+     */
+    private void publishWindow(long now) {
+        synchronized(this) {
+            for(int i = 0; i < TIMER_COUNT; i++) {
+                published[i].copyFrom(current[i]);
+            }
+            if(allocationBean != null) {
+                allocationRate = windowAllocatedBytes * 1e9 / (now - windowStart);
+            }
+        }
+        for(int i = 0; i < TIMER_COUNT; i++) {
+            current[i].reset();
+        }
+        windowAllocatedBytes = 0;
+        windowStart = now;
+        windowNumber++;
+    }
+
+    /**
+     * Gets the number of bytes the current thread has allocated.
+     *
+     * @return The bytes allocated, or 0 when not supported.
+     */
+    private long getAllocatedBytes() {
+        return allocationBean != null ? allocationBean.getCurrentThreadAllocatedBytes() : 0;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * GameMetricsMBean interface:
+ * Management interface for GameMetrics so the values can be watched with JMX tools
+ * such as JConsole or VisualVM. Latencies are for the most recently completed
+ * one second window and are reported in microseconds.
+ */
+public interface GameMetricsMBean {
+    /**
+     * Gets the median time for a whole update.
+     *
+     * @return The 50th percentile in microseconds.
+     */
+    double getTickP50Micros();
+
+    /**
+     * Gets the 99th percentile time for a whole update.
+     *
+     * @return The 99th percentile in microseconds.
+     */
+    double getTickP99Micros();
+
+    /**
+     * Gets the longest update.
+     *
+     * @return The maximum in microseconds.
+     */
+    double getTickMaxMicros();
+
+    /**
+     * Gets the median time for updating the player.
+     *
+     * @return The 50th percentile in microseconds.
+     */
+    double getPlayerUpdateP50Micros();
+
+    /**
+     * Gets the 99th percentile time for updating the player.
+     *
+     * @return The 99th percentile in microseconds.
+     */
+    double getPlayerUpdateP99Micros();
+
+    /**
+     * Gets the longest player update.
+     *
+     * @return The maximum in microseconds.
+     */
+    double getPlayerUpdateMaxMicros();
+
+    /**
+     * Gets the median time for updating the aliens.
+     *
+     * @return The 50th percentile in microseconds.
+     */
+    double getAlienUpdateP50Micros();
+
+    /**
+     * Gets the 99th percentile time for updating the aliens.
+     *
+     * @return The 99th percentile in microseconds.
+     */
+    double getAlienUpdateP99Micros();
+
+    /**
+     * Gets the longest alien update.
+     *
+     * @return The maximum in microseconds.
+     */
+    double getAlienUpdateMaxMicros();
+
+    /**
+     * Gets the median time for updating the projectiles.
+     *
+     * @return The 50th percentile in microseconds.
+     */
+    double getProjectileUpdateP50Micros();
+
+    /**
+     * Gets the 99th percentile time for updating the projectiles.
+     *
+     * @return The 99th percentile in microseconds.
+     */
+    double getProjectileUpdateP99Micros();
+
+    /**
+     * Gets the longest projectile update.
+     *
+     * @return The maximum in microseconds.
+     */
+    double getProjectileUpdateMaxMicros();
+
+    /**
+     * Gets the median time for drawing a frame.
+     *
+     * @return The 50th percentile in microseconds.
+     */
+    double getPaintP50Micros();
+
+    /**
+     * Gets the 99th percentile time for drawing a frame.
+     *
+     * @return The 99th percentile in microseconds.
+     */
+    double getPaintP99Micros();
+
+    /**
+     * Gets the longest time drawing a frame.
+     *
+     * @return The maximum in microseconds.
+     */
+    double getPaintMaxMicros();
+
+    /**
+     * Gets the median time from the fire key being pressed to the update that spawned the shot.
+     *
+     * @return The 50th percentile in microseconds.
+     */
+    double getInputLatencyP50Micros();
+
+    /**
+     * Gets the 99th percentile time from the fire key being pressed to the update that spawned the shot.
+     *
+     * @return The 99th percentile in microseconds.
+     */
+    double getInputLatencyP99Micros();
+
+    /**
+     * Gets the longest time from the fire key being pressed to the update that spawned the shot.
+     *
+     * @return The maximum in microseconds.
+     */
+    double getInputLatencyMaxMicros();
+
+    /**
+     * Gets the number of updates since the metrics were created.
+     *
+     * @return The total number of updates.
+     */
+    long getTickCount();
+
+    /**
+     * Gets the number of updates that took longer than the time between updates.
+     *
+     * @return The total number of overruns since the metrics were created.
+     */
+    long getTickOverruns();
+
+    /**
+     * Gets the number of active projectiles after the latest update.
+     *
+     * @return The number of projectiles.
+     */
+    int getProjectileCount();
+
+    /**
+     * Gets the number of aliens remaining after the latest update.
+     *
+     * @return The number of aliens.
+     */
+    int getAlienCount();
+
+    /**
+     * Gets how quickly memory was allocated while updating and drawing.
+     *
+     * @return Bytes allocated per second, or -1 when the JVM can not measure it.
+     */
+    double getAllocationRateBytesPerSecond();
+}
@@ -0,0 +1,26 @@
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * GameOutcome enum:
+ * Represents the state of a game as either still being played,
+ * or one of the ways that the game can end.
+ */
+public enum GameOutcome {
+    /**
+     * The game has not ended yet.
+     */
+    IN_PROGRESS,
+    /**
+     * All aliens were destroyed.
+     */
+    WON,
+    /**
+     * The player ran out of lives.
+     */
+    LOST_ALL_LIVES,
+    /**
+     * The aliens moved down far enough to reach the player.
+     */
+    LOST_BY_INVASION
+}
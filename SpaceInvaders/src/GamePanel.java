@@ -1,8 +1,9 @@
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Space Invaders
@@ -10,8 +11,20 @@ import java.awt.event.KeyEvent;
  *
  * GamePanel class:
  * Shows the current game state and passes information to the correct objects.
+ * Key events are passed from the event thread through a lock-free InputQueue with the time they
+ * were received, and applied at the start of the next update, so a game can be recorded and
+ * replayed exactly. The time from pressing fire to the update that spawned the shot is recorded
+ * in the GameMetrics. Setting the spaceinvaders.seed property starts the game
+ * with a known seed, spaceinvaders.record saves the seed and input to a file on exit,
+ * and spaceinvaders.replay plays a saved file back and reports if it matched.
+ * Setting spaceinvaders.capture to a folder records every frame shown into it with a FrameCapture,
+ * using spaceinvaders.captureFormat (png or raw), spaceinvaders.captureSkip, and spaceinvaders.captureBuffer.
+ * Without active rendering only the parts of the panel that changed are drawn each frame, as worked out by
+ * a DamageTracker, unless spaceinvaders.fullRepaint is true.
+ * Setting spaceinvaders.autopilot to a number of threads lets an Autopilot play, restarting each time the game ends.
+ * Its key presses are applied like any others, so they can be recorded and replayed.
  */
-public class GamePanel extends JPanel implements ActionListener {
+public class GamePanel extends JPanel {
     /**
      * Time between updates.
      */
@@ -24,22 +37,82 @@ public class GamePanel extends JPanel implements ActionListener {
      * Width of the panel.
      */
     public static final int PANEL_WIDTH = 400;
+    /**
+     * Font used for all the text shown on the panel.
+     */
+    private static final Font HUD_FONT = new Font("Arial", Font.BOLD, 20);
+    /**
+     * Font used for the metrics overlay.
+     */
+    private static final Font METRICS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    /**
+     * Background behind the metrics overlay so it can be read over the game.
+     */
+    private static final Color METRICS_BACKGROUND = new Color(0, 0, 0, 180);
+    /**
+     * Number of key events that can wait for the next update before new events are dropped.
+     */
+    private static final int INPUT_QUEUE_CAPACITY = 256;
+    /**
+     * Top and height of the strip holding the score and lives text.
+     */
+    private static final int HUD_TOP = 10, HUD_HEIGHT = 40;
     /**
      * The object manager that controls all the individual elements of the game.
      */
     private ObjectManager objectManager;
     /**
-     * The timer used to force updates to happen at fixed intervals.
+     * The loop that runs updates at fixed intervals and draws frames in between.
      */
-    private Timer gameTimer;
+    private GameLoop gameLoop;
     /**
-     * A reference to the player to pass input to.
+     * Held while the game state is updated, drawn, or receives input,
+     * because the game loop thread and the Swing thread both use it.
      */
-    private Player player;
+    private final Object stateLock = new Object();
+    /**
+     * How far the next frame is between the previous and the current update, from 0 to 1.
+     * Only changed while holding the stateLock, so it always matches the game state being drawn.
+     */
+    private float renderAlpha;
+    /**
+     * Works out which parts of the game changed since the last frame. Null when the whole panel is repainted.
+     */
+    private DamageTracker damageTracker;
+    /**
+     * The parts of the panel waiting to be drawn.
+     */
+    private DirtyRegion damage;
+    /**
+     * Draws the parts of the panel waiting to be drawn, created once so requesting it does not allocate.
+     */
+    private Runnable damagePainter;
+    /**
+     * True while damagePainter is waiting to run on the Swing thread.
+     */
+    private volatile boolean damagePending;
     /**
-     * The current score.
+     * True while damagePainter is drawing, so paint() knows the changes have already been collected.
      */
-    private int score;
+    private boolean paintingDamage;
+    /**
+     * The score, lives, game over state, and metrics overlay state shown in the last frame drawn.
+     */
+    private int drawnScore, drawnLives;
+    private boolean drawnGameOver, drawnShowMetrics;
+    private int drawnMetricsWindow;
+    /**
+     * Top of the metrics overlay when it was last drawn, or 0 before it has been drawn.
+     */
+    private int metricsTop;
+    /**
+     * Draws frames directly from the game loop, or null when Swing repaints are used instead.
+     */
+    private ActiveRenderer activeRenderer;
+    /**
+     * A reference to the player to pass input to.
+     */
+    private Player player;
     /**
      * When true the game has ended as a win or loss represented by the gameOverMessage.
      */
@@ -48,6 +121,68 @@ public class GamePanel extends JPanel implements ActionListener {
      * Shows the message when the game has ended that will be set as either a win or loss.
      */
     private String gameOverMessage;
+    /**
+     * The score text shown on the panel and the score it was created for.
+     * Only rebuilt when the score changes so drawing does not create new strings every frame.
+     */
+    private String scoreText;
+    private int scoreTextValue;
+    /**
+     * The lives text shown on the panel and the lives it was created for.
+     */
+    private String livesText;
+    private int livesTextValue;
+    /**
+     * Timings and counts for the running game, available through JMX and the overlay.
+     */
+    private GameMetrics metrics;
+    /**
+     * When true the metrics overlay is drawn. Toggled with F3.
+     */
+    private volatile boolean showMetrics;
+    /**
+     * The lines shown on the metrics overlay and the metrics window they were created for.
+     * Only rebuilt once per window so drawing the overlay does not create new strings every frame.
+     */
+    private String[] metricsLines;
+    private int metricsLinesWindow;
+    /**
+     * Key events received since the last update, applied in order at the start of the next update.
+     */
+    private InputQueue inputQueue;
+    /**
+     * Number of updates since the game started, including updates after the game ended.
+     */
+    private int tickCount;
+    /**
+     * Input applied to the game, saved to recordingPath on exit. Null when not recording.
+     */
+    private InputRecording recording;
+    private Path recordingPath;
+    /**
+     * Recording being played back in place of keyboard input. Null when not replaying.
+     */
+    private InputRecording replay;
+    /**
+     * Index of the next event to apply from the replay.
+     */
+    private int replayEvent;
+    /**
+     * Running checksum of the game state after every update, kept while recording or replaying.
+     */
+    private long checksum;
+    /**
+     * Records the frames shown to disk in the background. Null when not capturing.
+     */
+    private FrameCapture capture;
+    /**
+     * The bot playing the game. Null when the keyboard is playing.
+     */
+    private Autopilot autopilot;
+    /**
+     * The action the autopilot is holding down, one of the VectorEnv ACTION values.
+     */
+    private int autopilotAction;
 
     /**
      * Configures the game ready to play and starts it right away.
@@ -55,32 +190,220 @@ public class GamePanel extends JPanel implements ActionListener {
     public GamePanel() {
         setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
         setBackground(Color.BLACK);
-        objectManager = new ObjectManager(this);
+        long seed = Long.getLong("spaceinvaders.seed", new GameRandom().nextLong());
+        String replayFile = System.getProperty("spaceinvaders.replay");
+        if(replayFile != null) {
+            try {
+                replay = InputRecording.load(Paths.get(replayFile));
+                seed = replay.getSeed();
+            } catch(IOException e) {
+                System.err.println("Unable to load the replay " + replayFile + ": " + e.getMessage());
+            }
+        }
+        String recordFile = System.getProperty("spaceinvaders.record");
+        if(recordFile != null) {
+            recordingPath = Paths.get(recordFile);
+            recording = new InputRecording(seed);
+            Runtime.getRuntime().addShutdownHook(new Thread(this::saveRecording));
+        }
+        inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+        tickCount = 0;
+        checksum = StateHash.INITIAL;
+        objectManager = new ObjectManager(PANEL_WIDTH, PANEL_HEIGHT, new GameRandom(seed));
         player = objectManager.getPlayer();
-        gameTimer = new Timer(TIME_INTERVAL, this);
-        gameTimer.start();
         gameOver = false;
+        scoreTextValue = -1;
+        livesTextValue = -1;
+        renderAlpha = 1;
+        metrics = new GameMetrics(TIME_INTERVAL);
+        metrics.register();
+        objectManager.setMetrics(metrics);
+        showMetrics = false;
+        metricsLinesWindow = -1;
+        String captureFolder = System.getProperty("spaceinvaders.capture");
+        if(captureFolder != null) {
+            startCapture(Paths.get(captureFolder));
+        }
+        Integer autopilotThreads = Integer.getInteger("spaceinvaders.autopilot");
+        if(autopilotThreads != null) {
+            autopilot = new Autopilot(autopilotThreads, TIME_INTERVAL);
+            autopilotAction = VectorEnv.ACTION_NOOP;
+        }
+        if(ActiveRenderer.isSupported()) {
+            activeRenderer = new ActiveRenderer(this);
+            setLayout(new BorderLayout());
+            add(activeRenderer.getCanvas(), BorderLayout.CENTER);
+        } else if(!Boolean.getBoolean("spaceinvaders.fullRepaint")) {
+            damageTracker = new DamageTracker();
+            damage = new DirtyRegion(PANEL_WIDTH, PANEL_HEIGHT);
+            damagePainter = this::paintDamage;
+        }
+        gameLoop = new GameLoop(this);
+        gameLoop.start();
     }
 
     /**
-     * Draws all the game elements. These are mostly contained in the objectManager.
+     * Draws all the game elements. These are mostly contained in the objectManager
+     * and are drawn interpolated between the last two updates.
      * Then all the text elements for lives, score, and if necessary game over are drawn.
+     * When Swing asks for a paint that did not come from the damage tracking, such as when the
+     * window is uncovered, the changes since the last frame are collected first so they are drawn
+     * everywhere else too.
      *
      * @param g Reference to the Graphics object for rendering.
      */
     public void paint(Graphics g) {
-        super.paint(g);
-        objectManager.paint(g);
+        synchronized(stateLock) {
+            if(damageTracker != null && !paintingDamage) {
+                collectDamage();
+                requestDamagePaint();
+            }
+            super.paint(g);
+            drawGame(g, renderAlpha, true);
+        }
+    }
+
+    /**
+     * Clears the background and draws a complete frame. Used by the ActiveRenderer
+     * that does not go through the Swing paint methods.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param alpha How far the frame is between the previous and the current update, from 0 to 1.
+     */
+    public void drawFrame(Graphics g, float alpha) {
+        drawFrame(g, alpha, true);
+    }
+
+    /**
+     * Clears the background and draws a complete frame.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param alpha How far the frame is between the previous and the current update, from 0 to 1.
+     * @param measured True to record the time taken as a paint in the metrics, false for extra
+     *                 copies of a frame such as captures, so each frame shown is only counted once.
+     */
+    private void drawFrame(Graphics g, float alpha, boolean measured) {
+        synchronized(stateLock) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, PANEL_WIDTH, PANEL_HEIGHT);
+            drawGame(g, alpha, measured);
+        }
+    }
+
+    /**
+     * Called by the game loop once per frame to draw the game. When active rendering
+     * is available the frame is drawn and shown right away, otherwise the parts that changed
+     * are drawn on the Swing thread, or the whole panel is repainted when damage tracking is off.
+     *
+     * @param alpha How far the frame is between the previous and the current update, from 0 to 1.
+     */
+    public void render(float alpha) {
+        if(activeRenderer == null || !activeRenderer.render(alpha)) {
+            synchronized(stateLock) {
+                renderAlpha = alpha;
+            }
+            if(damageTracker != null) {
+                requestDamagePaint();
+            } else {
+                repaint();
+            }
+        }
+        if(capture != null) {
+            Graphics g = capture.beginFrame();
+            if(g != null) {
+                drawFrame(g, alpha, false);
+                capture.endFrame();
+            }
+        }
+    }
+
+    /**
+     * Asks the Swing thread to draw the parts of the panel that changed, unless it has already been asked.
+     */
+    private void requestDamagePaint() {
+        if(!damagePending) {
+            damagePending = true;
+            SwingUtilities.invokeLater(damagePainter);
+        }
+    }
+
+    /**
+     * Run on the Swing thread to collect the parts of the panel that changed since the last frame
+     * and draw each of them straight away. Each rectangle is drawn on its own, because Swing would
+     * join separate repaint() calls into one rectangle covering all of them.
+     */
+    private void paintDamage() {
+        damagePending = false;
+        synchronized(stateLock) {
+            collectDamage();
+            paintingDamage = true;
+            try {
+                for(int i = 0; i < damage.size(); i++) {
+                    paintImmediately(damage.getX(i), damage.getY(i), damage.getWidth(i), damage.getHeight(i));
+                }
+            } finally {
+                paintingDamage = false;
+            }
+            damage.clear();
+        }
+    }
+
+    /**
+     * Adds the parts of the panel that will look different when drawn now to the damage:
+     * the game objects that changed, the score and lives text, the game over message, and the metrics overlay.
+     * Must be called while holding the stateLock.
+     */
+    private void collectDamage() {
+        damageTracker.collect(objectManager, renderAlpha, damage);
+        if(objectManager.getScore() != drawnScore || player.getLives() != drawnLives) {
+            damage.add(0, HUD_TOP, PANEL_WIDTH, HUD_HEIGHT);
+            drawnScore = objectManager.getScore();
+            drawnLives = player.getLives();
+        }
+        if(gameOver != drawnGameOver) {
+            damage.add(0, PANEL_HEIGHT/2-20, PANEL_WIDTH, 40);
+            drawnGameOver = gameOver;
+        }
+        boolean metricsVisible = showMetrics;
+        if(metricsVisible != drawnShowMetrics
+                || (metricsVisible && metrics.getWindowNumber() != drawnMetricsWindow)) {
+            damage.add(0, metricsTop - 5, PANEL_WIDTH, PANEL_HEIGHT - metricsTop + 5);
+            drawnShowMetrics = metricsVisible;
+            drawnMetricsWindow = metrics.getWindowNumber();
+        }
+    }
+
+    /**
+     * Draws the game elements followed by the text for lives, score, and if necessary game over.
+     * The time taken is recorded in the metrics when measured, and the metrics overlay is drawn on top when enabled.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param alpha How far the frame is between the previous and the current update, from 0 to 1.
+     * @param measured True to record the time taken as a paint in the metrics.
+     */
+    private void drawGame(Graphics g, float alpha, boolean measured) {
+        if(measured) {
+            metrics.startPaint();
+        }
+        objectManager.paint(g, alpha);
         drawScore(g);
         drawLives(g);
         if(gameOver) {
             drawGameOver(g);
         }
+        if(measured) {
+            metrics.endPaint();
+        }
+        if(showMetrics) {
+            drawMetrics(g);
+        }
     }
 
     /**
-     * Handles the input by checking first for Escape to quit, R to restart,
-     * and otherwise passes the input handling to the player.
+     * Handles the input by checking first for Escape to quit and F3 to toggle the metrics overlay.
+     * Any other key is added to the input queue with the time it was received, to be applied at the
+     * start of the next update. This does not wait for the lock, so it never waits for an update
+     * or a frame to finish. Must only be called from one thread, which is the event thread.
      *
      * @param keyCode The key that was pressed or released.
      * @param isPressed True indicates the key is pressed, false indicates released.
@@ -88,9 +411,51 @@ public class GamePanel extends JPanel implements ActionListener {
     public void handleInput(int keyCode, boolean isPressed) {
         if(keyCode == KeyEvent.VK_ESCAPE) {
             System.exit(0);
-        } else if(keyCode == KeyEvent.VK_R && isPressed) {
+        }
+        if(keyCode == KeyEvent.VK_F3) {
+            if(isPressed) {
+                showMetrics = !showMetrics;
+            }
+        } else if(!inputQueue.offer(keyCode, isPressed, System.nanoTime()) && inputQueue.getDroppedCount() == 1) {
+            System.err.println("Input queue is full, dropping key events until the game catches up");
+        }
+    }
+
+    /**
+     * Takes the key events for this update from the input queue and applies them in order.
+     * While a replay is playing the events are thrown away.
+     *
+     * @return Time the fire press applied was received, or -1 if fire was not pressed.
+     */
+    private long applyQueuedInput() {
+        if(replay != null) {
+            inputQueue.clear();
+            return -1;
+        }
+        long fireTime = -1;
+        inputQueue.startUpdate();
+        while(inputQueue.poll()) {
+            applyInput(inputQueue.getKeyCode(), inputQueue.isPressed());
+            if(inputQueue.getKeyCode() == KeyEvent.VK_SPACE && inputQueue.isPressed()) {
+                fireTime = inputQueue.getTime();
+            }
+        }
+        return fireTime;
+    }
+
+    /**
+     * Applies a key event at the start of an update. R restarts the game,
+     * and everything else is passed to the player. The event is added to the recording if there is one.
+     *
+     * @param keyCode The key that was pressed or released.
+     * @param isPressed True indicates the key is pressed, false indicates released.
+     */
+    private void applyInput(int keyCode, boolean isPressed) {
+        if(recording != null) {
+            recording.add(tickCount, keyCode, isPressed);
+        }
+        if(keyCode == KeyEvent.VK_R && isPressed) {
             objectManager.reset();
-            score = 0;
             gameOver = false;
         } else {
             player.handleInput(keyCode, isPressed);
@@ -98,37 +463,129 @@ public class GamePanel extends JPanel implements ActionListener {
     }
 
     /**
-     * Increases the score by the amount specified.
-     *
-     * @param amount Amount to increase the score by.
+     * Called by the game loop every TIME_INTERVAL of game time. First applies the input
+     * for this update from the replay or the keyboard. If the game is not ended it will
+     * update the game via the object manager, and record how long ago fire was pressed if it
+     * spawned a shot. Then checks for game over state changes and updates as necessary.
+     */
+    public void tick() {
+        synchronized(stateLock) {
+            if(replay != null) {
+                while(replayEvent < replay.size() && replay.getTick(replayEvent) == tickCount) {
+                    applyInput(replay.getKeyCode(replayEvent), replay.isPressed(replayEvent));
+                    replayEvent++;
+                }
+            }
+            long fireTime = applyQueuedInput();
+            if(autopilot != null && replay == null) {
+                applyAutopilot();
+            }
+            if(!gameOver) {
+                objectManager.update(TIME_INTERVAL);
+                if(fireTime >= 0) {
+                    metrics.recordInputLatency(fireTime);
+                }
+                switch(objectManager.getGameOutcome()) {
+                    case LOST_ALL_LIVES:
+                        gameOver = true;
+                        gameOverMessage = "You lost all lives! R to Restart.";
+                        break;
+                    case WON:
+                        gameOver = true;
+                        gameOverMessage = "You won! R to Restart.";
+                        break;
+                    case LOST_BY_INVASION:
+                        gameOver = true;
+                        gameOverMessage = "You lost by Invasion! R to Restart.";
+                        break;
+                }
+            }
+            // The metrics window is ended here as well, because nothing is updated once the game is over.
+            metrics.checkWindow();
+            if(recording != null || replay != null) {
+                checksum = StateHash.mix(checksum, objectManager.getStateHash());
+            }
+            tickCount++;
+            if(replay != null && tickCount >= replay.getLength()) {
+                finishReplay();
+            }
+        }
+    }
+
+    /**
+     * Presses and releases keys so the player does what the autopilot chose for this update.
+     * Arrow keys are only applied when they change, and space is pressed on every update that fires,
+     * the same as VectorEnv.applyAction(). When the game has ended R is pressed to start a new one.
      */
-    public void increaseScore(int amount) {
-        score += amount;
+    private void applyAutopilot() {
+        if(gameOver) {
+            applyInput(KeyEvent.VK_R, true);
+            applyInput(KeyEvent.VK_R, false);
+            autopilot.reset();
+        }
+        // The search runs on the autopilot's own threads, so this update is not held up waiting for it.
+        int action = autopilot.chooseActionLater(objectManager);
+        if(VectorEnv.isMovingLeft(action) != VectorEnv.isMovingLeft(autopilotAction)) {
+            applyInput(KeyEvent.VK_LEFT, VectorEnv.isMovingLeft(action));
+        }
+        if(VectorEnv.isMovingRight(action) != VectorEnv.isMovingRight(autopilotAction)) {
+            applyInput(KeyEvent.VK_RIGHT, VectorEnv.isMovingRight(action));
+        }
+        if(VectorEnv.isFiring(action)) {
+            applyInput(KeyEvent.VK_SPACE, true);
+        }
+        autopilotAction = action;
     }
 
     /**
-     * Called by the gameTimer on regular intervals. If the
-     * game is not ended it will update the game via the object manager.
-     * Then checks for game over state changes and updates as necessary.
+     * Reports if the replay matched the recording and returns control to the keyboard.
+     */
+    private void finishReplay() {
+        System.out.printf("Replay finished after %d ticks: checksum %016x %s the recorded %016x%n",
+                tickCount, checksum, checksum == replay.getChecksum() ? "matches" : "DOES NOT MATCH",
+                replay.getChecksum());
+        replay = null;
+    }
+
+    /**
+     * Starts capturing frames into a folder and stops when the program exits, after the frames
+     * still waiting have been written.
      *
-     * @param e Information about the event.
-     */
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if(!gameOver) {
-            objectManager.update(TIME_INTERVAL);
-            if(player.getLives() == 0) {
-                gameOver = true;
-                gameOverMessage = "You lost all lives! R to Restart.";
-            } else if(objectManager.getAlienCount() == 0) {
-                gameOver = true;
-                gameOverMessage = "You won! R to Restart.";
-            } else if(objectManager.getAlienTooFarDown()) {
-                gameOver = true;
-                gameOverMessage = "You lost by Invasion! R to Restart.";
+     * @param folder The folder to write the frames to.
+     */
+    private void startCapture(Path folder) {
+        FrameCapture.Format format = FrameCapture.Format.valueOf(
+                System.getProperty("spaceinvaders.captureFormat", "png").toUpperCase());
+        try {
+            capture = new FrameCapture(PANEL_WIDTH, PANEL_HEIGHT, Integer.getInteger("spaceinvaders.captureBuffer", 32),
+                    folder, format, Integer.getInteger("spaceinvaders.captureSkip", 0));
+        } catch(IOException e) {
+            System.err.println("Unable to capture to " + folder + ": " + e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                capture.close();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            System.out.println(capture.getSummary());
+        }));
+    }
+
+    /**
+     * Saves the recording with the number of updates and the checksum so far. Called when the program exits.
+     */
+    private void saveRecording() {
+        synchronized(stateLock) {
+            recording.finish(tickCount, checksum);
+            try {
+                recording.save(recordingPath);
+                System.out.printf("Saved %d ticks to %s, checksum %016x%n", tickCount, recordingPath, checksum);
+            } catch(IOException e) {
+                System.err.println("Unable to save the recording " + recordingPath + ": " + e.getMessage());
             }
         }
-        repaint();
     }
 
     /**
@@ -138,10 +595,13 @@ public class GamePanel extends JPanel implements ActionListener {
      */
     private void drawScore(Graphics g) {
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 20));
-        String scoreStr = "Score: " + score;
-        int strWidth = g.getFontMetrics().stringWidth(scoreStr);
-        g.drawString(scoreStr, PANEL_WIDTH/2-strWidth/2, 40);
+        g.setFont(HUD_FONT);
+        if(scoreTextValue != objectManager.getScore()) {
+            scoreTextValue = objectManager.getScore();
+            scoreText = "Score: " + scoreTextValue;
+        }
+        int strWidth = g.getFontMetrics().stringWidth(scoreText);
+        g.drawString(scoreText, PANEL_WIDTH/2-strWidth/2, 40);
     }
 
     /**
@@ -151,9 +611,34 @@ public class GamePanel extends JPanel implements ActionListener {
      */
     private void drawLives(Graphics g) {
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 20));
-        String livesStr = "Lives: " + player.getLives();
-        g.drawString(livesStr, 15, 40);
+        g.setFont(HUD_FONT);
+        if(livesTextValue != player.getLives()) {
+            livesTextValue = player.getLives();
+            livesText = "Lives: " + livesTextValue;
+        }
+        g.drawString(livesText, 15, 40);
+    }
+
+    /**
+     * Draws the metrics from the last completed window in the bottom left corner.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     */
+    private void drawMetrics(Graphics g) {
+        if(metricsLinesWindow != metrics.getWindowNumber()) {
+            metricsLinesWindow = metrics.getWindowNumber();
+            metricsLines = metrics.getSummaryLines();
+        }
+        g.setFont(METRICS_FONT);
+        int lineHeight = g.getFontMetrics().getHeight();
+        int top = PANEL_HEIGHT - 10 - lineHeight * metricsLines.length;
+        metricsTop = top;
+        g.setColor(METRICS_BACKGROUND);
+        g.fillRect(5, top - 5, PANEL_WIDTH - 10, lineHeight * metricsLines.length + 10);
+        g.setColor(Color.WHITE);
+        for(int i = 0; i < metricsLines.length; i++) {
+            g.drawString(metricsLines[i], 10, top + lineHeight * (i + 1) - 3);
+        }
     }
 
     /**
@@ -165,7 +650,7 @@ public class GamePanel extends JPanel implements ActionListener {
         g.setColor(Color.WHITE);
         g.fillRect(0,PANEL_HEIGHT/2-20, PANEL_WIDTH, 40);
         g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 20));
+        g.setFont(HUD_FONT);
         int strWidth = g.getFontMetrics().stringWidth(gameOverMessage);
         g.drawString(gameOverMessage, PANEL_WIDTH/2-strWidth/2, PANEL_HEIGHT/2+10);
     }
@@ -0,0 +1,93 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * GameRandom class:
+ * Random number generator owned by a single game. Each ObjectManager has its own,
+ * so games running at the same time on different threads never share or wait on
+ * a generator, and a game started with the same seed makes the same choices.
+ * Uses the SplitMix64 algorithm, where the whole state is a single long value.
+ * Not safe to share between threads.
+ */
+public class GameRandom {
+    /**
+     * Amount added to the state for every number generated.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    /**
+     * Used to give each generator created without a seed a different starting seed.
+     */
+    private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong(System.nanoTime());
+    /**
+     * The current state that the next number is generated from.
+     */
+    private long state;
+
+    /**
+     * Creates a generator with a seed that is different for each generator.
+     */
+    public GameRandom() {
+        this(SEED_UNIQUIFIER.addAndGet(GOLDEN_GAMMA) ^ System.nanoTime());
+    }
+
+    /**
+     * Creates a generator that will always produce the same numbers for the same seed.
+     *
+     * @param seed The seed to start from.
+     */
+    public GameRandom(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Restarts the generator from a seed.
+     *
+     * @param seed The seed to start from.
+     */
+    public void setSeed(long seed) {
+        state = seed;
+    }
+
+    /**
+     * Generates a random number from 0 up to but not including the bound.
+     *
+     * @param bound The upper limit, which must be greater than 0.
+     * @return A number from 0 to bound-1.
+     */
+    public int nextInt(int bound) {
+        // Taking the top 31 bits and scaling them gives an even spread without needing division.
+        return (int)(((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * Generates a random long value using all 64 bits.
+     *
+     * @return A random long value.
+     */
+    public long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets the current state. Two generators with the same state produce the same numbers from then on.
+     *
+     * @return The current state.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Continues the generator from a state returned by getState().
+     *
+     * @param state The state to continue from.
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * GameResults class:
+ * Combined results from a batch of headless games. Counts how each game ended
+ * along with the total score and number of updates. Results collected separately,
+ * such as on different threads, can be merged together at the end.
+ */
+public class GameResults {
+    /**
+     * Number of games that ended with each outcome, indexed by the outcome's ordinal.
+     */
+    private long[] outcomeCounts;
+    /**
+     * Number of games added.
+     */
+    private long games;
+    /**
+     * Sum of the final score of every game.
+     */
+    private long totalScore;
+    /**
+     * Sum of the updates applied in every game.
+     */
+    private long totalTicks;
+
+    /**
+     * Creates empty results.
+     */
+    public GameResults() {
+        outcomeCounts = new long[GameOutcome.values().length];
+    }
+
+    /**
+     * Adds the results of a game that has finished running.
+     *
+     * @param game The game to add.
+     */
+    public void add(HeadlessGame game) {
+        outcomeCounts[game.getOutcome().ordinal()]++;
+        games++;
+        totalScore += game.getScore();
+        totalTicks += game.getTicks();
+    }
+
+    /**
+     * Adds all the results from another set of results into these.
+     *
+     * @param other The results to add.
+     */
+    public void merge(GameResults other) {
+        for(int i = 0; i < outcomeCounts.length; i++) {
+            outcomeCounts[i] += other.outcomeCounts[i];
+        }
+        games += other.games;
+        totalScore += other.totalScore;
+        totalTicks += other.totalTicks;
+    }
+
+    /**
+     * Gets the number of games that ended with an outcome.
+     *
+     * @param outcome The outcome to count.
+     * @return The number of games with that outcome.
+     */
+    public long getOutcomeCount(GameOutcome outcome) {
+        return outcomeCounts[outcome.ordinal()];
+    }
+
+    /**
+     * Gets the number of games added.
+     *
+     * @return The number of games.
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the sum of the final score of every game.
+     *
+     * @return The total score.
+     */
+    public long getTotalScore() {
+        return totalScore;
+    }
+
+    /**
+     * Gets the sum of the updates applied in every game.
+     *
+     * @return The total number of updates.
+     */
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    /**
+     * Prints the speed the games were run at, the number of each outcome, and the average score.
+     *
+     * @param seconds How long it took to run all the games.
+     */
+    public void print(double seconds) {
+        System.out.printf("Games: %d in %.2fs (%.1f games/s, %.0f ticks/s)%n",
+                games, seconds, games / seconds, totalTicks / seconds);
+        for(GameOutcome gameOutcome : GameOutcome.values()) {
+            System.out.printf("  %-16s %d%n", gameOutcome, outcomeCounts[gameOutcome.ordinal()]);
+        }
+        System.out.printf("Average score: %.1f%n", games > 0 ? (double)totalScore / games : 0);
+    }
+}
@@ -0,0 +1,648 @@
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * GameServer class:
+ * Runs one headless game that is the only copy of the game that is updated, and shares it
+ * with many clients over non-blocking sockets. Everything runs on a single thread using a
+ * Selector, so no locks are needed. The first client to connect controls the player and any
+ * other clients are spectators. When the player leaves the longest connected spectator takes over.
+ *
+ * Input from the player is applied at the start of the next update, and at most MAX_INPUTS_PER_TICK
+ * key events are kept for each update so a client can not grow the server's memory by flooding it.
+ * After every update the
+ * NetworkView of the game is kept in a history of the last HISTORY_SIZE updates, and every client
+ * is sent one message with only the parts that changed since the last update it acknowledged.
+ * Clients that acknowledged the same update get the same bytes, so each distinct message is only
+ * encoded once per update no matter how many clients there are. A client that has not finished
+ * receiving its previous message is skipped for that update, and gets a later update that covers it.
+ *
+ * Every message in either direction is an int length followed by that many bytes, starting with
+ * the message type. A client that sends a length that does not fit its buffer or does not match
+ * the message type is disconnected, without affecting the game or any other client.
+ */
+public class GameServer implements Runnable {
+    /**
+     * Server message sent when a client connects or becomes the player: role byte, then tick interval int.
+     */
+    public static final byte MESSAGE_WELCOME = 1;
+    /**
+     * Server message with an update: tick int, base tick int or -1 for a full update,
+     * hash of the view long, then the NetworkView delta.
+     */
+    public static final byte MESSAGE_STATE = 2;
+    /**
+     * Client message with a key event: key code int, then pressed byte.
+     */
+    public static final byte MESSAGE_INPUT = 3;
+    /**
+     * Client message acknowledging an update: tick int.
+     */
+    public static final byte MESSAGE_ACK = 4;
+    /**
+     * Length of an input message after its length prefix.
+     */
+    public static final int INPUT_LENGTH = 1 + Integer.BYTES + 1;
+    /**
+     * Length of an acknowledgement message after its length prefix.
+     */
+    public static final int ACK_LENGTH = 1 + Integer.BYTES;
+    /**
+     * Role for the client controlling the player.
+     */
+    public static final byte ROLE_PLAYER = 0;
+    /**
+     * Role for clients that only watch.
+     */
+    public static final byte ROLE_SPECTATOR = 1;
+    /**
+     * Number of past updates kept to send changes against.
+     * Clients that have not acknowledged any of them get a full update.
+     */
+    public static final int HISTORY_SIZE = 32;
+    /**
+     * Most key events from the player kept for one update. Events past this until the next update are
+     * dropped. Far more than anyone can press in one update, so only a flooding client loses anything.
+     */
+    public static final int MAX_INPUTS_PER_TICK = 32;
+    /**
+     * Default port for the server to listen on.
+     */
+    public static final int DEFAULT_PORT = 7777;
+    /**
+     * Size of the length, type, tick, base tick, and hash at the start of a state message.
+     */
+    private static final int STATE_HEADER_SIZE = Integer.BYTES + 1 + 2 * Integer.BYTES + Long.BYTES;
+    /**
+     * Starting size of each client's buffers.
+     */
+    private static final int BUFFER_CAPACITY = 16 * 1024;
+    /**
+     * The game that is shared with every client.
+     */
+    private HeadlessGame game;
+    /**
+     * The socket clients connect to.
+     */
+    private ServerSocketChannel serverChannel;
+    /**
+     * Waits for sockets to be ready to accept, read, or write.
+     */
+    private Selector selector;
+    /**
+     * All the connected clients in the order they connected.
+     */
+    private List<Connection> connections;
+    /**
+     * The client controlling the player, or null when there is nobody connected.
+     */
+    private Connection playerConnection;
+    /**
+     * Key codes from the player received since the last update. There is room for MAX_INPUTS_PER_TICK
+     * events plus the key releases added when the player leaves.
+     */
+    private int[] pendingKeyCodes;
+    /**
+     * True for each pending key that was pressed, false for released.
+     */
+    private boolean[] pendingPressed;
+    /**
+     * Number of pending key events.
+     */
+    private int pendingCount;
+    /**
+     * The view after each of the recent updates, indexed by tick % HISTORY_SIZE.
+     */
+    private NetworkView[] history;
+    /**
+     * The tick each history entry is for, or -1 if it has not been used.
+     */
+    private int[] historyTicks;
+    /**
+     * Encoded state messages for the current update. Index d is the update against the view
+     * from d ticks ago, and index 0 is the full update.
+     */
+    private ByteBuffer[] encoded;
+    /**
+     * The tick each encoded message was made for, so messages are only encoded once per update.
+     */
+    private int[] encodedTicks;
+    /**
+     * Number of updates since the server started.
+     */
+    private int tick;
+    /**
+     * Hash of the view after the current update.
+     */
+    private long viewHash;
+    /**
+     * Time between updates in nanoseconds.
+     */
+    private long tickNanos;
+    /**
+     * Time between updates in milliseconds, sent to clients.
+     */
+    private int tickMillis;
+    /**
+     * Set to false to stop the server.
+     */
+    private volatile boolean running;
+    /**
+     * Number of state messages sent, how many of them were full updates, and how many were
+     * skipped because the client was still receiving the one before.
+     */
+    private long statesSent, fullStatesSent, statesSkipped;
+    /**
+     * Number of key events from the player dropped because MAX_INPUTS_PER_TICK had already been received for the update.
+     */
+    private long inputsDropped;
+    /**
+     * Total bytes of state messages sent.
+     */
+    private long bytesSent;
+
+    /**
+     * Starts a server and runs it until the process is stopped.
+     *
+     * @param args Optional port, update interval in milliseconds, and seed.
+     * @throws IOException If the server socket could not be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int tickMillis = args.length > 1 ? Integer.parseInt(args[1]) : GamePanel.TIME_INTERVAL;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new GameRandom().nextLong();
+        GameServer server = new GameServer(port, tickMillis, seed);
+        System.out.println("Listening on port " + server.getPort() + " with seed " + seed);
+        server.run();
+    }
+
+    /**
+     * Opens the server socket ready to accept clients.
+     *
+     * @param port Port to listen on, or 0 to pick a free port.
+     * @param tickMillis Time between updates in milliseconds.
+     * @param seed Seed for the game.
+     * @throws IOException If the server socket could not be opened.
+     */
+    public GameServer(int port, int tickMillis, long seed) throws IOException {
+        game = new HeadlessGame(seed);
+        this.tickMillis = tickMillis;
+        tickNanos = tickMillis * 1_000_000L;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        connections = new ArrayList<>();
+        pendingKeyCodes = new int[MAX_INPUTS_PER_TICK + 2];
+        pendingPressed = new boolean[MAX_INPUTS_PER_TICK + 2];
+        history = new NetworkView[HISTORY_SIZE];
+        historyTicks = new int[HISTORY_SIZE];
+        encoded = new ByteBuffer[HISTORY_SIZE];
+        encodedTicks = new int[HISTORY_SIZE];
+        for(int i = 0; i < HISTORY_SIZE; i++) {
+            history[i] = new NetworkView();
+            encoded[i] = ByteBuffer.allocate(BUFFER_CAPACITY);
+        }
+        Arrays.fill(historyTicks, -1);
+        Arrays.fill(encodedTicks, -1);
+        running = true;
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return The port number.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Handles sockets while waiting for the next update, and runs the updates at a fixed interval.
+     * Returns after stop() is called.
+     */
+    @Override
+    public void run() {
+        try {
+            long nextTick = System.nanoTime();
+            while(running) {
+                long waitNanos = nextTick - System.nanoTime();
+                if(waitNanos > 0) {
+                    selector.select(Math.max(1, waitNanos / 1_000_000));
+                } else {
+                    selector.selectNow();
+                }
+                handleSelectedKeys();
+                long now = System.nanoTime();
+                if(now - nextTick >= 0) {
+                    tick();
+                    nextTick += tickNanos;
+                    if(now - nextTick > tickNanos) {
+                        // Too far behind, so continue from now instead of running updates back to back.
+                        nextTick = now;
+                    }
+                }
+            }
+        } catch(IOException e) {
+            System.err.println("Server stopped: " + e.getMessage());
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stops the server. The thread running it closes every connection and returns from run().
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Gets a summary of the messages that have been sent.
+     *
+     * @return Counts of states sent, full states sent, states skipped, the average bytes per state, and inputs dropped.
+     */
+    public String getSummary() {
+        return String.format("ticks %d, states sent %d (full %d, skipped %d), %.1f bytes/state, inputs dropped %d",
+                tick, statesSent, fullStatesSent, statesSkipped, statesSent > 0 ? (double)bytesSent / statesSent : 0,
+                inputsDropped);
+    }
+
+    /**
+     * Gets the number of key events from the player dropped because too many arrived in one update.
+     *
+     * @return The number of dropped events.
+     */
+    public long getInputsDropped() {
+        return inputsDropped;
+    }
+
+    /**
+     * Gets the game being shared.
+     *
+     * @return The game.
+     */
+    public HeadlessGame getGame() {
+        return game;
+    }
+
+    /**
+     * Accepts new clients, reads messages from clients, and continues writing to clients that were not finished.
+     *
+     * @throws IOException If the server socket failed.
+     */
+    private void handleSelectedKeys() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while(keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if(!key.isValid()) {
+                continue;
+            }
+            if(key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Connection connection = (Connection)key.attachment();
+            try {
+                if(key.isReadable()) {
+                    read(connection);
+                }
+                if(key.isValid() && key.isWritable()) {
+                    flush(connection);
+                }
+            } catch(IOException e) {
+                disconnect(connection);
+            }
+        }
+    }
+
+    /**
+     * Accepts a new client. It becomes the player if nobody is controlling the player.
+     *
+     * @throws IOException If the server socket failed.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if(channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+        if(playerConnection == null) {
+            playerConnection = connection;
+        }
+        try {
+            sendWelcome(connection);
+        } catch(IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * Removes a client. If it was the player, its keys are released and the next client takes over.
+     *
+     * @param connection The client to remove.
+     */
+    private void disconnect(Connection connection) {
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch(IOException e) {
+            // Already closed, nothing else to clean up.
+        }
+        connections.remove(connection);
+        if(connection == playerConnection) {
+            queueInput(KeyEvent.VK_LEFT, false);
+            queueInput(KeyEvent.VK_RIGHT, false);
+            playerConnection = connections.isEmpty() ? null : connections.get(0);
+            if(playerConnection != null) {
+                try {
+                    sendWelcome(playerConnection);
+                } catch(IOException e) {
+                    disconnect(playerConnection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads all the complete messages a client has sent. Each length is checked before it is used,
+     * so a message that would not fit in the buffer or is the wrong length for its type
+     * disconnects the client instead of reading past the message.
+     *
+     * @param connection The client to read from.
+     * @throws IOException If the client disconnected or sent an invalid message.
+     */
+    private void read(Connection connection) throws IOException {
+        if(connection.channel.read(connection.input) < 0) {
+            throw new IOException("Client disconnected");
+        }
+        ByteBuffer input = connection.input;
+        input.flip();
+        while(input.remaining() >= Integer.BYTES) {
+            int length = input.getInt(input.position());
+            if(length < 1 || length > input.capacity() - Integer.BYTES) {
+                throw new IOException("Invalid message length " + length);
+            }
+            if(input.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            input.getInt();
+            byte type = input.get();
+            if(type == MESSAGE_INPUT) {
+                checkLength(type, length, INPUT_LENGTH);
+                int keyCode = input.getInt();
+                boolean isPressed = input.get() != 0;
+                if(connection == playerConnection) {
+                    if(pendingCount < MAX_INPUTS_PER_TICK) {
+                        queueInput(keyCode, isPressed);
+                    } else {
+                        inputsDropped++;
+                    }
+                }
+            } else if(type == MESSAGE_ACK) {
+                checkLength(type, length, ACK_LENGTH);
+                connection.ackedTick = Math.max(connection.ackedTick, input.getInt());
+            } else {
+                throw new IOException("Unknown message type " + type);
+            }
+        }
+        input.compact();
+    }
+
+    /**
+     * Checks that a message from a client is the length its type needs.
+     *
+     * @param type The type of the message.
+     * @param length The length the client sent.
+     * @param expected The length of messages of that type.
+     * @throws IOException If the lengths are different.
+     */
+    private static void checkLength(byte type, int length, int expected) throws IOException {
+        if(length != expected) {
+            throw new IOException("Message type " + type + " has length " + length + " instead of " + expected);
+        }
+    }
+
+    /**
+     * Adds a key event to be applied at the start of the next update. The arrays only grow past their
+     * starting size if several players leave during one update, as each adds two key releases.
+     *
+     * @param keyCode The key that was pressed or released.
+     * @param isPressed True indicates the key is pressed, false indicates released.
+     */
+    private void queueInput(int keyCode, boolean isPressed) {
+        if(pendingCount == pendingKeyCodes.length) {
+            pendingKeyCodes = Arrays.copyOf(pendingKeyCodes, pendingCount * 2);
+            pendingPressed = Arrays.copyOf(pendingPressed, pendingCount * 2);
+        }
+        pendingKeyCodes[pendingCount] = keyCode;
+        pendingPressed[pendingCount] = isPressed;
+        pendingCount++;
+    }
+
+    /**
+     * Applies the player's input, updates the game, stores the new view, and sends it to every client.
+     */
+    private void tick() {
+        for(int i = 0; i < pendingCount; i++) {
+            game.applyInput(pendingKeyCodes[i], pendingPressed[i]);
+        }
+        pendingCount = 0;
+        game.step();
+        tick++;
+        NetworkView view = history[tick % HISTORY_SIZE];
+        view.capture(game.getObjectManager());
+        historyTicks[tick % HISTORY_SIZE] = tick;
+        viewHash = view.hash();
+        for(int i = 0; i < connections.size(); i++) {
+            Connection connection = connections.get(i);
+            try {
+                sendState(connection);
+            } catch(IOException e) {
+                disconnect(connection);
+                i = Math.min(i, connections.size()) - 1;
+            }
+        }
+    }
+
+    /**
+     * Sends the current update to a client, containing only what changed since the last
+     * update the client acknowledged if that update is still in the history.
+     * Clients still receiving an earlier message are skipped.
+     *
+     * @param connection The client to send to.
+     * @throws IOException If writing to the client failed.
+     */
+    private void sendState(Connection connection) throws IOException {
+        if(connection.output.position() > 0) {
+            statesSkipped++;
+            return;
+        }
+        int distance = tick - connection.ackedTick;
+        if(connection.ackedTick < 0 || distance >= HISTORY_SIZE
+                || historyTicks[connection.ackedTick % HISTORY_SIZE] != connection.ackedTick) {
+            distance = 0;
+            fullStatesSent++;
+        }
+        ByteBuffer message = getEncodedState(distance);
+        message.rewind();
+        connection.output = ensureCapacity(connection.output, message.remaining());
+        connection.output.put(message);
+        statesSent++;
+        bytesSent += message.limit();
+        flush(connection);
+    }
+
+    /**
+     * Gets the state message for the current update against the view from some updates ago,
+     * encoding it the first time it is needed during the update.
+     *
+     * @param distance How many updates ago the base view is, or 0 for a full update.
+     * @return The message ready to be copied from its start.
+     */
+    private ByteBuffer getEncodedState(int distance) {
+        if(encodedTicks[distance] != tick) {
+            NetworkView view = history[tick % HISTORY_SIZE];
+            NetworkView base = distance == 0 ? null : history[(tick - distance) % HISTORY_SIZE];
+            encoded[distance].clear();
+            ByteBuffer buffer = ensureCapacity(encoded[distance], STATE_HEADER_SIZE + view.getMaxDeltaSize());
+            encoded[distance] = buffer;
+            buffer.putInt(0);
+            buffer.put(MESSAGE_STATE);
+            buffer.putInt(tick);
+            buffer.putInt(distance == 0 ? -1 : tick - distance);
+            buffer.putLong(viewHash);
+            view.writeDelta(buffer, base);
+            buffer.putInt(0, buffer.position() - Integer.BYTES);
+            buffer.flip();
+            encodedTicks[distance] = tick;
+        }
+        return encoded[distance];
+    }
+
+    /**
+     * Tells a client which role it has and how often updates happen.
+     *
+     * @param connection The client to send to.
+     * @throws IOException If writing to the client failed.
+     */
+    private void sendWelcome(Connection connection) throws IOException {
+        connection.output = ensureCapacity(connection.output, 2 * Integer.BYTES + 2);
+        connection.output.putInt(1 + 1 + Integer.BYTES);
+        connection.output.put(MESSAGE_WELCOME);
+        connection.output.put(connection == playerConnection ? ROLE_PLAYER : ROLE_SPECTATOR);
+        connection.output.putInt(tickMillis);
+        flush(connection);
+    }
+
+    /**
+     * Writes as much of a client's waiting output as the socket will take. If some is left
+     * the selector is asked to report when the socket can take more.
+     *
+     * @param connection The client to write to.
+     * @throws IOException If writing to the client failed.
+     */
+    private void flush(Connection connection) throws IOException {
+        connection.output.flip();
+        connection.channel.write(connection.output);
+        connection.output.compact();
+        connection.key.interestOps(connection.output.position() > 0
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Makes sure a buffer has enough space remaining, replacing it with a larger copy if not.
+     *
+     * @param buffer The buffer in write mode.
+     * @param needed The number of bytes that need to fit.
+     * @return The buffer, or a larger copy of it.
+     */
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+        if(buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * Closes every client and the server socket.
+     */
+    private void close() {
+        for(Connection connection : connections) {
+            try {
+                connection.channel.close();
+            } catch(IOException e) {
+                // Closing anyway.
+            }
+        }
+        connections.clear();
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch(IOException e) {
+            // Closing anyway.
+        }
+    }
+
+    /**
+     * The server's record of a connected client.
+     */
+    private static class Connection {
+        /**
+         * The socket for the client.
+         */
+        private final SocketChannel channel;
+        /**
+         * The key the socket is registered with in the selector.
+         */
+        private SelectionKey key;
+        /**
+         * Bytes received that have not been handled yet.
+         */
+        private ByteBuffer input;
+        /**
+         * Bytes waiting to be written to the client.
+         */
+        private ByteBuffer output;
+        /**
+         * The latest update the client has acknowledged, or -1 if none.
+         */
+        private int ackedTick;
+
+        /**
+         * Creates the record for a newly connected client.
+         *
+         * @param channel The socket for the client.
+         */
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            input = ByteBuffer.allocate(BUFFER_CAPACITY);
+            output = ByteBuffer.allocate(BUFFER_CAPACITY);
+            ackedTick = -1;
+        }
+    }
+}
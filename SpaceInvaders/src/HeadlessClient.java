@@ -0,0 +1,393 @@
+import java.awt.event.KeyEvent;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * HeadlessClient class:
+ * A client for the GameServer with no window, used to test the server over loopback.
+ * Rebuilds the server's NetworkView from every update by applying the changes to the
+ * view it acknowledged earlier, checks the result against the hash the server sent,
+ * and acknowledges it. When it is given control of the player it can also play by
+ * sweeping left and right while firing.
+ */
+public class HeadlessClient implements Runnable {
+    /**
+     * Number of updates between shots when playing.
+     */
+    private static final int FIRE_INTERVAL = 25;
+    /**
+     * Distance from each edge of the panel where the player turns around when playing.
+     */
+    private static final int TURN_MARGIN = 60;
+    /**
+     * The socket connected to the server.
+     */
+    private SocketChannel channel;
+    /**
+     * Bytes received that have not been handled yet.
+     */
+    private ByteBuffer input;
+    /**
+     * Buffer used to send messages to the server.
+     */
+    private ByteBuffer output;
+    /**
+     * The views rebuilt from recent updates, indexed by tick % GameServer.HISTORY_SIZE,
+     * so the one an update was written against can be found.
+     */
+    private NetworkView[] views;
+    /**
+     * The tick each view is for, or -1 if it has not been used.
+     */
+    private int[] viewTicks;
+    /**
+     * The latest tick received.
+     */
+    private int latestTick;
+    /**
+     * The role the server gave this client, either GameServer.ROLE_PLAYER or ROLE_SPECTATOR.
+     */
+    private byte role;
+    /**
+     * When true the client plays the game while it controls the player.
+     */
+    private boolean isPlaying;
+    /**
+     * The direction key currently held while playing, or 0 for none.
+     */
+    private int heldKey;
+    /**
+     * Number of updates received, how many were full updates, and how many did not match the server's hash.
+     */
+    private long statesReceived, fullStatesReceived, hashMismatches;
+    /**
+     * Total bytes of state messages received.
+     */
+    private long bytesReceived;
+    /**
+     * Set to false to stop the client.
+     */
+    private volatile boolean running;
+
+    /**
+     * Connects a client to a server and plays until the connection is closed.
+     *
+     * @param args Optional host and port.
+     * @throws IOException If the client could not connect.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        HeadlessClient client = new HeadlessClient(host, port, true);
+        client.run();
+        System.out.println(client.getSummary());
+    }
+
+    /**
+     * Connects to a server.
+     *
+     * @param host Name or address of the server.
+     * @param port Port the server is listening on.
+     * @param isPlaying When true the client plays if it is given control of the player.
+     * @throws IOException If the client could not connect.
+     */
+    public HeadlessClient(String host, int port, boolean isPlaying) throws IOException {
+        this.isPlaying = isPlaying;
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        input = ByteBuffer.allocate(64 * 1024);
+        input.flip();
+        output = ByteBuffer.allocate(64);
+        views = new NetworkView[GameServer.HISTORY_SIZE];
+        viewTicks = new int[GameServer.HISTORY_SIZE];
+        for(int i = 0; i < views.length; i++) {
+            views[i] = new NetworkView();
+            viewTicks[i] = -1;
+        }
+        role = GameServer.ROLE_SPECTATOR;
+        latestTick = -1;
+        running = true;
+    }
+
+    /**
+     * Reads and handles messages until the server closes the connection or stop() is called.
+     */
+    @Override
+    public void run() {
+        try {
+            while(running) {
+                readMessage();
+            }
+        } catch(IOException e) {
+            if(running) {
+                System.err.println("Client disconnected: " + e.getMessage());
+            }
+        } finally {
+            try {
+                channel.close();
+            } catch(IOException e) {
+                // Closing anyway.
+            }
+        }
+    }
+
+    /**
+     * Closes the connection, which makes run() return.
+     */
+    public void stop() {
+        running = false;
+        try {
+            channel.close();
+        } catch(IOException e) {
+            // Closing anyway.
+        }
+    }
+
+    /**
+     * Gets the view rebuilt from the latest update.
+     *
+     * @return The latest view, or null if no update has been received.
+     */
+    public NetworkView getView() {
+        return latestTick < 0 ? null : views[latestTick % views.length];
+    }
+
+    /**
+     * Gets the latest tick received.
+     *
+     * @return The tick, or -1 if no update has been received.
+     */
+    public int getLatestTick() {
+        return latestTick;
+    }
+
+    /**
+     * Checks if the server gave this client control of the player.
+     *
+     * @return True if this client controls the player.
+     */
+    public boolean isPlayer() {
+        return role == GameServer.ROLE_PLAYER;
+    }
+
+    /**
+     * Gets the number of state messages received.
+     *
+     * @return The number of states.
+     */
+    public long getStatesReceived() {
+        return statesReceived;
+    }
+
+    /**
+     * Gets the number of full state messages received.
+     *
+     * @return The number of full states.
+     */
+    public long getFullStatesReceived() {
+        return fullStatesReceived;
+    }
+
+    /**
+     * Gets the total bytes of state messages received.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets the number of rebuilt views that did not match the hash sent by the server.
+     *
+     * @return The number of mismatches, which should always be 0.
+     */
+    public long getHashMismatches() {
+        return hashMismatches;
+    }
+
+    /**
+     * Gets a summary of the updates received.
+     *
+     * @return The counts and average size of the updates.
+     */
+    public String getSummary() {
+        return String.format("states received %d (full %d), %.1f bytes/state, hash mismatches %d",
+                statesReceived, fullStatesReceived,
+                statesReceived > 0 ? (double)bytesReceived / statesReceived : 0, hashMismatches);
+    }
+
+    /**
+     * Sends a key event to the server. It is ignored unless this client controls the player.
+     *
+     * @param keyCode The key that was pressed or released.
+     * @param isPressed True indicates the key is pressed, false indicates released.
+     * @throws IOException If writing to the server failed.
+     */
+    public void sendInput(int keyCode, boolean isPressed) throws IOException {
+        output.clear();
+        output.putInt(GameServer.INPUT_LENGTH);
+        output.put(GameServer.MESSAGE_INPUT);
+        output.putInt(keyCode);
+        output.put((byte)(isPressed ? 1 : 0));
+        write();
+    }
+
+    /**
+     * Reads the next complete message from the server and handles it.
+     *
+     * @throws IOException If reading failed or the message was invalid.
+     */
+    private void readMessage() throws IOException {
+        fill(Integer.BYTES);
+        int length = input.getInt(input.position());
+        fill(Integer.BYTES + length);
+        input.getInt();
+        int end = input.position() + length;
+        byte type = input.get();
+        if(type == GameServer.MESSAGE_WELCOME) {
+            role = input.get();
+        } else if(type == GameServer.MESSAGE_STATE) {
+            readState(Integer.BYTES + length);
+        } else {
+            throw new IOException("Unknown message type " + type);
+        }
+        input.position(end);
+    }
+
+    /**
+     * Rebuilds the view for an update from the view it was written against, checks the hash,
+     * and acknowledges it. Updates against a view that is no longer kept are not acknowledged,
+     * so the server falls back to a full update.
+     *
+     * @param messageSize Size of the message in bytes, for the statistics.
+     * @throws IOException If the acknowledgement could not be sent.
+     */
+    private void readState(int messageSize) throws IOException {
+        int tick = input.getInt();
+        int baseTick = input.getInt();
+        long hash = input.getLong();
+        statesReceived++;
+        bytesReceived += messageSize;
+        NetworkView view = views[tick % views.length];
+        if(baseTick >= 0) {
+            if(viewTicks[baseTick % views.length] != baseTick) {
+                return;
+            }
+            view.copyFrom(views[baseTick % views.length]);
+        } else {
+            fullStatesReceived++;
+        }
+        view.readDelta(input);
+        viewTicks[tick % views.length] = tick;
+        latestTick = tick;
+        if(view.hash() != hash) {
+            hashMismatches++;
+        }
+        sendAck(tick);
+        if(isPlaying && isPlayer()) {
+            play(view, tick);
+        }
+    }
+
+    /**
+     * Plays by holding left or right to sweep between the edges, firing at a fixed interval,
+     * and restarting when the game ends.
+     *
+     * @param view The latest view.
+     * @param tick The latest tick.
+     * @throws IOException If sending input failed.
+     */
+    private void play(NetworkView view, int tick) throws IOException {
+        if(view.getOutcome() != GameOutcome.IN_PROGRESS) {
+            sendInput(KeyEvent.VK_R, true);
+            sendInput(KeyEvent.VK_R, false);
+            // Restarting releases every key, so the direction needs to be pressed again.
+            heldKey = 0;
+            return;
+        }
+        int playerX = view.getPlayerX();
+        if(heldKey != KeyEvent.VK_LEFT && (heldKey == 0 || playerX > GamePanel.PANEL_WIDTH - TURN_MARGIN)) {
+            changeHeldKey(KeyEvent.VK_LEFT);
+        } else if(heldKey != KeyEvent.VK_RIGHT && playerX < TURN_MARGIN) {
+            changeHeldKey(KeyEvent.VK_RIGHT);
+        }
+        if(tick % FIRE_INTERVAL == 0) {
+            sendInput(KeyEvent.VK_SPACE, true);
+            sendInput(KeyEvent.VK_SPACE, false);
+        }
+    }
+
+    /**
+     * Releases the direction key being held and presses another.
+     *
+     * @param keyCode The direction key to hold.
+     * @throws IOException If sending input failed.
+     */
+    private void changeHeldKey(int keyCode) throws IOException {
+        if(heldKey != 0) {
+            sendInput(heldKey, false);
+        }
+        sendInput(keyCode, true);
+        heldKey = keyCode;
+    }
+
+    /**
+     * Tells the server the client has the view for a tick, so later updates can be sent as changes from it.
+     *
+     * @param tick The tick to acknowledge.
+     * @throws IOException If writing to the server failed.
+     */
+    private void sendAck(int tick) throws IOException {
+        output.clear();
+        output.putInt(GameServer.ACK_LENGTH);
+        output.put(GameServer.MESSAGE_ACK);
+        output.putInt(tick);
+        write();
+    }
+
+    /**
+     * Writes all of the output buffer to the server.
+     *
+     * @throws IOException If writing to the server failed.
+     */
+    private void write() throws IOException {
+        output.flip();
+        while(output.hasRemaining()) {
+            channel.write(output);
+        }
+    }
+
+    /**
+     * Reads from the server until the input buffer holds at least some number of bytes,
+     * growing the buffer if a message is larger than it.
+     *
+     * @param needed Number of bytes needed from the current position.
+     * @throws IOException If reading failed or the server closed the connection.
+     */
+    private void fill(int needed) throws IOException {
+        if(input.remaining() >= needed) {
+            return;
+        }
+        input.compact();
+        if(input.capacity() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(needed, input.capacity() * 2));
+            input.flip();
+            larger.put(input);
+            input = larger;
+        }
+        while(input.position() < needed) {
+            if(channel.read(input) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+        input.flip();
+    }
+}
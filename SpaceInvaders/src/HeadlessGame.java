@@ -0,0 +1,301 @@
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * HeadlessGame class:
+ * Runs a game through the ObjectManager without any Swing components.
+ * Updates are stepped as fast as possible using the same fixed time
+ * interval as the GamePanel by default, so results match a game played on screen.
+ * A longer time step can be used for faster batch runs. Movement is in proportion
+ * to the time step and projectile collisions are checked along their whole path,
+ * so long steps play out close to the same way with far fewer updates.
+ * The main method can be used to run a batch of games and report the outcomes,
+ * or to replay an InputRecording and check that it plays out exactly the same.
+ */
+public class HeadlessGame {
+    /**
+     * Time between shots in milliseconds when runUntilGameOver() plays the game.
+     */
+    private static final int AUTOPLAY_FIRE_INTERVAL = 25 * GamePanel.TIME_INTERVAL;
+    /**
+     * The object manager that controls all the individual elements of the game.
+     */
+    private ObjectManager objectManager;
+    /**
+     * Number of updates that have been applied since the game started.
+     */
+    private int ticks;
+    /**
+     * The outcome after the most recent update.
+     */
+    private GameOutcome outcome;
+    /**
+     * Time in milliseconds that each update moves the game forward by.
+     */
+    private int timeStep;
+
+    /**
+     * Runs a batch of headless games and prints the combined results.
+     * When the first argument is --replay the recording file that follows is replayed instead,
+     * and the program exits with a non-zero status if the checksum does not match the recording.
+     *
+     * @param args Optional number of games, maximum ticks per game, and time step in milliseconds, or --replay and a file.
+     * @throws IOException If the recording could not be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length > 1 && args[0].equals("--replay")) {
+            InputRecording recording = InputRecording.load(Paths.get(args[1]));
+            long checksum = new HeadlessGame(recording.getSeed()).replay(recording);
+            System.out.printf("Replayed %d ticks, checksum %016x, recorded %016x%n",
+                    recording.getLength(), checksum, recording.getChecksum());
+            if(checksum != recording.getChecksum()) {
+                System.out.println("FAILED: the replay did not match the recording.");
+                System.exit(1);
+            }
+            System.out.println("OK");
+            return;
+        }
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int maxTicks = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        int timeStep = args.length > 2 ? Integer.parseInt(args[2]) : GamePanel.TIME_INTERVAL;
+        GameResults results = new GameResults();
+        long startTime = System.nanoTime();
+        HeadlessGame game = new HeadlessGame(new GameRandom().nextLong(), timeStep);
+        for(int i = 0; i < games; i++) {
+            game.reset();
+            game.runUntilGameOver(maxTicks);
+            results.add(game);
+        }
+        results.print((System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Creates a new game ready to be stepped.
+     */
+    public HeadlessGame() {
+        objectManager = new ObjectManager();
+        ticks = 0;
+        outcome = GameOutcome.IN_PROGRESS;
+        timeStep = GamePanel.TIME_INTERVAL;
+    }
+
+    /**
+     * Creates a new game that will play out the same way every time for the same seed and input.
+     *
+     * @param seed The seed for the game's random number generator.
+     */
+    public HeadlessGame(long seed) {
+        this(seed, GamePanel.TIME_INTERVAL);
+    }
+
+    /**
+     * Creates a new seeded game where every update moves the game forward by the time step.
+     *
+     * @param seed The seed for the game's random number generator.
+     * @param timeStep Time in milliseconds for each update.
+     */
+    public HeadlessGame(long seed, int timeStep) {
+        objectManager = new ObjectManager(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, new GameRandom(seed));
+        ticks = 0;
+        outcome = GameOutcome.IN_PROGRESS;
+        this.timeStep = timeStep;
+    }
+
+    /**
+     * Resets the game back to the start so the same objects can be reused for another game.
+     */
+    public void reset() {
+        objectManager.reset();
+        ticks = 0;
+        outcome = GameOutcome.IN_PROGRESS;
+    }
+
+    /**
+     * Resets the game back to the start with a new seed, so the game that follows
+     * is the same as a new HeadlessGame created with that seed.
+     *
+     * @param seed The seed for the game's random number generator.
+     */
+    public void reset(long seed) {
+        objectManager.getRandom().setSeed(seed);
+        reset();
+    }
+
+    /**
+     * Applies a single update of the time step if the game has not already ended.
+     *
+     * @return The outcome after the update.
+     */
+    public GameOutcome step() {
+        if(outcome == GameOutcome.IN_PROGRESS) {
+            objectManager.update(timeStep);
+            ticks++;
+            outcome = objectManager.getGameOutcome();
+        }
+        return outcome;
+    }
+
+    /**
+     * Applies a key press or release the same way as the GamePanel. R restarts the game,
+     * and everything else is passed to the player to use during the next update.
+     *
+     * @param keyCode The key that was pressed or released.
+     * @param isPressed True indicates the key is pressed, false indicates released.
+     */
+    public void applyInput(int keyCode, boolean isPressed) {
+        if(keyCode == KeyEvent.VK_R && isPressed) {
+            reset();
+        } else {
+            objectManager.getPlayer().handleInput(keyCode, isPressed);
+        }
+    }
+
+    /**
+     * Plays back a recording from the start of this game. Before every update the events
+     * recorded for it are applied, and after every update the state hash is added into a running checksum.
+     * Updates after the game has ended do not change anything, the same as in the GamePanel.
+     *
+     * @param recording The recording to play back.
+     * @return The running checksum after the last recorded update.
+     */
+    public long replay(InputRecording recording) {
+        return replay(recording, 0, recording.getLength(), StateHash.INITIAL);
+    }
+
+    /**
+     * Plays back part of a recording, such as to continue a replay after restoring a snapshot
+     * that was taken at fromTick.
+     *
+     * @param recording The recording to play back.
+     * @param fromTick Index of the first update to play.
+     * @param toTick Index one past the last update to play.
+     * @param checksum The running checksum before fromTick.
+     * @return The running checksum after the last update played.
+     */
+    public long replay(InputRecording recording, int fromTick, int toTick, long checksum) {
+        int event = 0;
+        while(event < recording.size() && recording.getTick(event) < fromTick) {
+            event++;
+        }
+        for(int tick = fromTick; tick < toTick; tick++) {
+            while(event < recording.size() && recording.getTick(event) == tick) {
+                applyInput(recording.getKeyCode(event), recording.isPressed(event));
+                event++;
+            }
+            step();
+            checksum = StateHash.mix(checksum, objectManager.getStateHash());
+        }
+        return checksum;
+    }
+
+    /**
+     * Steps the game until it ends or the maximum number of ticks is reached.
+     * The player sweeps left and right across the screen while firing so that
+     * games end in any of the possible ways instead of always by invasion.
+     *
+     * @param maxTicks Maximum number of updates to apply before giving up.
+     * @return The outcome, which is IN_PROGRESS if maxTicks was reached first.
+     */
+    public GameOutcome runUntilGameOver(int maxTicks) {
+        Player player = objectManager.getPlayer();
+        boolean movingLeft = false;
+        player.handleInput(KeyEvent.VK_RIGHT, true);
+        while(outcome == GameOutcome.IN_PROGRESS && ticks < maxTicks) {
+            int playerX = player.getX();
+            if(!movingLeft && playerX >= objectManager.getWidth() - player.getWidth()) {
+                movingLeft = true;
+                player.handleInput(KeyEvent.VK_RIGHT, false);
+                player.handleInput(KeyEvent.VK_LEFT, true);
+            } else if(movingLeft && playerX <= 0) {
+                movingLeft = false;
+                player.handleInput(KeyEvent.VK_LEFT, false);
+                player.handleInput(KeyEvent.VK_RIGHT, true);
+            }
+            if((long)ticks * timeStep % AUTOPLAY_FIRE_INTERVAL < timeStep) {
+                player.handleInput(KeyEvent.VK_SPACE, true);
+            }
+            step();
+        }
+        return outcome;
+    }
+
+    /**
+     * Writes the number of updates applied followed by the complete game state.
+     *
+     * @param buffer The buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(ticks);
+        objectManager.writeState(buffer);
+    }
+
+    /**
+     * Continues from state written by writeState(), which can come from a different HeadlessGame.
+     *
+     * @param buffer The buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+        ticks = buffer.getInt();
+        objectManager.readState(buffer);
+        outcome = objectManager.getGameOutcome();
+    }
+
+    /**
+     * Gets the object manager so input can be passed to the player between steps.
+     *
+     * @return A reference to the object manager.
+     */
+    public ObjectManager getObjectManager() {
+        return objectManager;
+    }
+
+    /**
+     * Gets the outcome after the most recent update.
+     *
+     * @return The current outcome.
+     */
+    public GameOutcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Gets the number of updates applied so far.
+     *
+     * @return The number of ticks.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Gets the time in milliseconds each update moves the game forward by.
+     *
+     * @return The time step.
+     */
+    public int getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * Gets the current score.
+     *
+     * @return The current score.
+     */
+    public int getScore() {
+        return objectManager.getScore();
+    }
+
+    /**
+     * Gets the remaining lives of the player.
+     *
+     * @return The player's lives.
+     */
+    public int getLives() {
+        return objectManager.getPlayer().getLives();
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * InputQueue class:
+ * Passes key events from the thread that receives them to the thread that updates the game
+ * without locking. Each event keeps the time it was received from System.nanoTime(), so the
+ * time until it has an effect in the game can be measured. Only one thread may add events
+ * and only one thread may take them out, so each side only moves its own counter forward,
+ * the same as the ring in FrameCapture. Events are kept in arrays that are created up front,
+ * so adding and taking events does not allocate. When the queue is full new events are
+ * dropped and counted instead of waiting.
+ * Events are taken at the start of each update, stopping at any event for a key that has
+ * already been pressed in that update. The rest wait for the following updates, so a key that is
+ * pressed and released between two updates is still held for an update, and every press of a
+ * key is seen by its own update.
+ */
+public class InputQueue {
+    /**
+     * Key code of each event. Event n is kept at index n % keyCodes.length.
+     */
+    private int[] keyCodes;
+    /**
+     * True for each event that is a key press, false for a release.
+     */
+    private boolean[] pressed;
+    /**
+     * Time from System.nanoTime() when each event was received.
+     */
+    private long[] times;
+    /**
+     * Number of events added. Only changed by the thread adding events.
+     */
+    private AtomicLong head;
+    /**
+     * Number of events taken out. Only changed by the thread taking events.
+     */
+    private AtomicLong tail;
+    /**
+     * Number of events dropped because the queue was full. Only changed by the thread adding events.
+     */
+    private volatile long droppedCount;
+    /**
+     * Keys that have had a press taken since startUpdate().
+     */
+    private int[] pressedKeyCodes;
+    private int pressedCount;
+    /**
+     * The event taken by the last call to poll().
+     */
+    private int keyCode;
+    private boolean isPressed;
+    private long time;
+
+    /**
+     * Creates an empty queue.
+     *
+     * @param capacity Number of events that can wait to be taken before new events are dropped.
+     */
+    public InputQueue(int capacity) {
+        keyCodes = new int[capacity];
+        pressed = new boolean[capacity];
+        times = new long[capacity];
+        head = new AtomicLong();
+        tail = new AtomicLong();
+        pressedKeyCodes = new int[capacity];
+    }
+
+    /**
+     * Adds an event to the end of the queue. Must only be called by the thread adding events.
+     *
+     * @param keyCode The key that was pressed or released.
+     * @param isPressed True indicates the key is pressed, false indicates released.
+     * @param time Time the event was received from System.nanoTime().
+     * @return True if the event was added, or false if the queue was full and it was dropped.
+     */
+    public boolean offer(int keyCode, boolean isPressed, long time) {
+        long next = head.get();
+        if(next - tail.get() >= keyCodes.length) {
+            droppedCount++;
+            return false;
+        }
+        int index = (int)(next % keyCodes.length);
+        keyCodes[index] = keyCode;
+        pressed[index] = isPressed;
+        times[index] = time;
+        head.lazySet(next + 1);
+        return true;
+    }
+
+    /**
+     * Starts taking the events for a new update, so every key can be pressed again.
+     * Must only be called by the thread taking events.
+     */
+    public void startUpdate() {
+        pressedCount = 0;
+    }
+
+    /**
+     * Takes the event at the front of the queue, which can then be read with getKeyCode(),
+     * isPressed(), and getTime(). Must only be called by the thread taking events.
+     *
+     * @return True if an event was taken, or false if the queue is empty or the event at the
+     *         front is for a key that was already pressed in this update.
+     */
+    public boolean poll() {
+        long next = tail.get();
+        if(next == head.get()) {
+            return false;
+        }
+        int index = (int)(next % keyCodes.length);
+        for(int i = 0; i < pressedCount; i++) {
+            if(pressedKeyCodes[i] == keyCodes[index]) {
+                return false;
+            }
+        }
+        keyCode = keyCodes[index];
+        isPressed = pressed[index];
+        time = times[index];
+        if(isPressed) {
+            pressedKeyCodes[pressedCount++] = keyCode;
+        }
+        tail.lazySet(next + 1);
+        return true;
+    }
+
+    /**
+     * Throws away every event waiting in the queue. Must only be called by the thread taking events.
+     */
+    public void clear() {
+        tail.lazySet(head.get());
+    }
+
+    /**
+     * Gets the key of the event taken by the last call to poll().
+     *
+     * @return The key that was pressed or released.
+     */
+    public int getKeyCode() {
+        return keyCode;
+    }
+
+    /**
+     * Gets if the event taken by the last call to poll() is a press.
+     *
+     * @return True indicates the key is pressed, false indicates released.
+     */
+    public boolean isPressed() {
+        return isPressed;
+    }
+
+    /**
+     * Gets the time the event taken by the last call to poll() was received.
+     *
+     * @return Time from System.nanoTime().
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the number of events dropped because the queue was full.
+     *
+     * @return The number of events dropped.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,224 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * InputRecording class:
+ * The seed and every key press and release of a game, each stored with the update
+ * it was applied before. Playing the events back at the same updates with the same
+ * seed repeats the game exactly. The number of updates and a checksum of the game
+ * state after every update are stored at the end, so a replay can confirm it matched.
+ * Saved as a text file with a header followed by one "tick keyCode pressed" line per event.
+ */
+public class InputRecording {
+    /**
+     * Number of events that can be stored before the arrays need to grow.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * Seed for the game's random number generator.
+     */
+    private long seed;
+    /**
+     * Update index that each event is applied before.
+     */
+    private int[] ticks;
+    /**
+     * Key code of each event.
+     */
+    private int[] keyCodes;
+    /**
+     * True if the event was a key press, false for a release.
+     */
+    private boolean[] pressed;
+    /**
+     * Number of events stored.
+     */
+    private int size;
+    /**
+     * Number of updates that were recorded.
+     */
+    private int length;
+    /**
+     * Running checksum of the game state after every recorded update.
+     */
+    private long checksum;
+
+    /**
+     * Creates an empty recording for a game using the seed.
+     *
+     * @param seed Seed for the game's random number generator.
+     */
+    public InputRecording(long seed) {
+        this.seed = seed;
+        ticks = new int[INITIAL_CAPACITY];
+        keyCodes = new int[INITIAL_CAPACITY];
+        pressed = new boolean[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Adds an event to the end of the recording. Events must be added in update order.
+     *
+     * @param tick The update index the event is applied before.
+     * @param keyCode The key that was pressed or released.
+     * @param isPressed True indicates the key is pressed, false indicates released.
+     */
+    public void add(int tick, int keyCode, boolean isPressed) {
+        if(size == ticks.length) {
+            ticks = Arrays.copyOf(ticks, size * 2);
+            keyCodes = Arrays.copyOf(keyCodes, size * 2);
+            pressed = Arrays.copyOf(pressed, size * 2);
+        }
+        ticks[size] = tick;
+        keyCodes[size] = keyCode;
+        pressed[size] = isPressed;
+        size++;
+    }
+
+    /**
+     * Stores how many updates were recorded and the checksum after the last of them.
+     *
+     * @param length Number of updates recorded.
+     * @param checksum Running checksum after the last update.
+     */
+    public void finish(int length, long checksum) {
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Gets the seed for the game's random number generator.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of events.
+     *
+     * @return The number of events.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the update index an event is applied before.
+     *
+     * @param index Index of the event.
+     * @return The update index.
+     */
+    public int getTick(int index) {
+        return ticks[index];
+    }
+
+    /**
+     * Gets the key of an event.
+     *
+     * @param index Index of the event.
+     * @return The key code.
+     */
+    public int getKeyCode(int index) {
+        return keyCodes[index];
+    }
+
+    /**
+     * Checks if an event was a key press.
+     *
+     * @param index Index of the event.
+     * @return True for a key press, false for a release.
+     */
+    public boolean isPressed(int index) {
+        return pressed[index];
+    }
+
+    /**
+     * Gets the number of updates that were recorded.
+     *
+     * @return The number of updates.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the running checksum after the last recorded update.
+     *
+     * @return The checksum.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Writes the recording to a file.
+     *
+     * @param path The file to write.
+     * @throws IOException If the file could not be written.
+     */
+    public void save(Path path) throws IOException {
+        try(BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("seed " + seed + "\n");
+            writer.write("length " + length + "\n");
+            writer.write("checksum " + Long.toHexString(checksum) + "\n");
+            for(int i = 0; i < size; i++) {
+                writer.write(ticks[i] + " " + keyCodes[i] + " " + (pressed[i] ? 1 : 0) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Reads a recording from a file written by save().
+     *
+     * @param path The file to read.
+     * @return The recording.
+     * @throws IOException If the file could not be read or is not a recording.
+     */
+    public static InputRecording load(Path path) throws IOException {
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            InputRecording recording = new InputRecording(Long.parseLong(readHeader(reader, "seed")));
+            int length = Integer.parseInt(readHeader(reader, "length"));
+            recording.finish(length, Long.parseUnsignedLong(readHeader(reader, "checksum"), 16));
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.isEmpty()) {
+                    continue;
+                }
+                String[] parts = line.split(" ");
+                if(parts.length != 3) {
+                    throw new IOException("Invalid event in recording: " + line);
+                }
+                recording.add(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), parts[2].equals("1"));
+            }
+            return recording;
+        } catch(NumberFormatException e) {
+            throw new IOException("Invalid number in recording: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a "name value" header line.
+     *
+     * @param reader The reader positioned at the header line.
+     * @param name The name the line must start with.
+     * @return The value after the name.
+     * @throws IOException If the line is missing or has a different name.
+     */
+    private static String readHeader(BufferedReader reader, String name) throws IOException {
+        String line = reader.readLine();
+        if(line == null || !line.startsWith(name + " ")) {
+            throw new IOException("Expected " + name + " in recording but found: " + line);
+        }
+        return line.substring(name.length() + 1);
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * LatencyHistogram class:
+ * Counts durations in nanoseconds into a fixed set of buckets so that percentiles
+ * can be read without keeping every value. Each power of two is split into
+ * SUB_BUCKET_COUNT buckets, so any percentile is within 12.5% of the real value.
+ * Recording only increments an array element and never allocates.
+ */
+public class LatencyHistogram {
+    /**
+     * Number of bits used to split each power of two into buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    /**
+     * Number of buckets for each power of two.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * Largest value that is counted into its own bucket. Larger values are counted in the last bucket.
+     * This is 2^40 nanoseconds, a little over 18 minutes.
+     */
+    private static final long MAX_TRACKABLE_VALUE = (1L << 40) - 1;
+    /**
+     * Number of times each range of values has been recorded.
+     */
+    private long[] counts;
+    /**
+     * Number of values recorded.
+     */
+    private long totalCount;
+    /**
+     * Largest value recorded.
+     */
+    private long maxValue;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        counts = new long[getBucketIndex(MAX_TRACKABLE_VALUE) + 1];
+    }
+
+    /**
+     * Counts a single value.
+     *
+     * @param value Duration in nanoseconds. Negative values are counted as 0.
+     */
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        counts[getBucketIndex(Math.min(value, MAX_TRACKABLE_VALUE))]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, value);
+    }
+
+    /**
+     * Finds the value that the specified fraction of the recorded values are less than or equal to.
+     * The highest value of the bucket is returned so that results are never lower than the real value.
+     *
+     * @param fraction The percentile as a fraction from 0 to 1, such as 0.99 for the 99th percentile.
+     * @return The value at the percentile in nanoseconds, or 0 when nothing was recorded.
+     */
+    public long getPercentile(double fraction) {
+        if(totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long)Math.ceil(fraction * totalCount));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= target) {
+                return Math.min(getBucketHighestValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Gets the largest value recorded.
+     *
+     * @return The largest value in nanoseconds, or 0 when nothing was recorded.
+     */
+    public long getMax() {
+        return maxValue;
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return The number of values recorded.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Replaces the contents of this histogram with a copy of another.
+     *
+     * @param other The histogram to copy.
+     */
+    public void copyFrom(LatencyHistogram other) {
+        System.arraycopy(other.counts, 0, counts, 0, counts.length);
+        totalCount = other.totalCount;
+        maxValue = other.maxValue;
+    }
+
+    /**
+     * Removes all the recorded values.
+     */
+    public void reset() {
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    /**
+     * Finds the bucket for a value. Values below SUB_BUCKET_COUNT each have their own bucket,
+     * then every power of two is split into SUB_BUCKET_COUNT buckets using the bits below the highest bit.
+     *
+     * @param value A value from 0 to MAX_TRACKABLE_VALUE.
+     * @return The index into counts.
+     */
+    private static int getBucketIndex(long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Finds the highest value that is counted in a bucket.
+     *
+     * @param index The index into counts.
+     * @return The highest value for the bucket.
+     */
+    private static long getBucketHighestValue(int index) {
+        if(index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowestValue = (long)(SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * MoveDirection enum:
+ * The directions the group of aliens can move in. Each direction has a unit
+ * vector that can not be changed, so the directions are safe to share between games.
+ */
+public enum MoveDirection {
+    LEFT(-1, 0),
+    RIGHT(1, 0),
+    DOWN(0, 1);
+
+    /**
+     * X component of the unit vector.
+     */
+    public final int x;
+    /**
+     * Y component of the unit vector.
+     */
+    public final int y;
+
+    /**
+     * Defines a direction with its unit vector.
+     *
+     * @param x X component of the unit vector.
+     * @param y Y component of the unit vector.
+     */
+    MoveDirection(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+}
@@ -0,0 +1,498 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * NetworkView class:
+ * The part of the game state that clients need to draw the game, as sent by the GameServer.
+ * It is split into four parts that are each only sent when they changed from the state
+ * the client already has: the header with the score, lives, player, and formation position,
+ * the bits showing which aliens are alive, the shield masks, and the projectiles. Only the header
+ * values that changed are sent, and alive bits and shield masks are compared 64 bits at a time
+ * so only the words with destroyed aliens or new craters are sent. Projectiles are compared slot
+ * by slot, and a mask byte for every 8 slots says which of them changed. Each changed slot sends
+ * only the values that changed, with a small move sent as a short change from the old y.
+ * Slots the client did not have yet are compared with a projectile at 0, 0 with no owner.
+ * Timers and random numbers stay on the server, which is the only place the game is updated.
+ */
+public class NetworkView {
+    /**
+     * Flag set when some header values are included in an encoded update.
+     */
+    private static final int HEADER_CHANGED = 1;
+    /**
+     * Flag set when the changed alien words are included in an encoded update.
+     */
+    private static final int ALIENS_CHANGED = 2;
+    /**
+     * Flag set when the projectiles are included in an encoded update.
+     */
+    private static final int PROJECTILES_CHANGED = 4;
+    /**
+     * Flag set when the update is the full state and not a change from an earlier state.
+     */
+    private static final int FULL = 8;
+    /**
+     * Flag set when the changed shield words are included in an encoded update.
+     */
+    private static final int SHIELDS_CHANGED = 16;
+    /**
+     * Flag set for a changed projectile when its x coordinate is included.
+     */
+    private static final int PROJECTILE_X = 1;
+    /**
+     * Flag set for a changed projectile when the change in its y coordinate is included as a short.
+     */
+    private static final int PROJECTILE_Y_SHORT = 2;
+    /**
+     * Flag set for a changed projectile when its y coordinate is included as an int,
+     * because the change does not fit in a short.
+     */
+    private static final int PROJECTILE_Y = 4;
+    /**
+     * Flag set for a changed projectile when its owner is included.
+     */
+    private static final int PROJECTILE_OWNER = 8;
+    /**
+     * Number of ints in the header.
+     */
+    private static final int HEADER_SIZE = 9;
+    /**
+     * Score, lives, player x and y, formation top left x and y, formation columns and rows, and the game outcome ordinal.
+     */
+    private int[] header;
+    /**
+     * Alive bits for the aliens in the formation, 64 per word.
+     */
+    private long[] aliveWords;
+    /**
+     * Number of words in aliveWords that are used.
+     */
+    private int aliveWordCount;
+    /**
+     * Masks of every shield one after another, as given by Obstacle.getMaskWord().
+     */
+    private long[] shieldWords;
+    /**
+     * Number of words in shieldWords that are used.
+     */
+    private int shieldWordCount;
+    /**
+     * X and y coordinates of each projectile.
+     */
+    private int[] projectileX, projectileY;
+    /**
+     * Owner of each projectile, either ProjectilePool.OWNER_PLAYER or OWNER_ALIEN.
+     */
+    private byte[] projectileOwner;
+    /**
+     * Number of projectiles.
+     */
+    private int projectileCount;
+
+    /**
+     * Creates an empty view.
+     */
+    public NetworkView() {
+        header = new int[HEADER_SIZE];
+        aliveWords = new long[1];
+        shieldWords = new long[1];
+        projectileX = new int[64];
+        projectileY = new int[64];
+        projectileOwner = new byte[64];
+    }
+
+    /**
+     * Copies the state clients need out of a game.
+     *
+     * @param objectManager The game to copy from.
+     */
+    public void capture(ObjectManager objectManager) {
+        AlienManager alienManager = objectManager.getAlienManager();
+        Player player = objectManager.getPlayer();
+        header[0] = objectManager.getScore();
+        header[1] = player.getLives();
+        header[2] = player.getX();
+        header[3] = player.getY();
+        header[4] = alienManager.getTopLeft().x;
+        header[5] = alienManager.getTopLeft().y;
+        header[6] = alienManager.getFormationColumns();
+        header[7] = alienManager.getFormationRows();
+        header[8] = objectManager.getGameOutcome().ordinal();
+        setAliveWordCount(alienManager.getFormationWordCount());
+        for(int i = 0; i < aliveWordCount; i++) {
+            aliveWords[i] = alienManager.getFormationWord(i);
+        }
+        List<Obstacle> obstacles = objectManager.getObstacles();
+        int wordCount = 0;
+        for(int i = 0; i < obstacles.size(); i++) {
+            wordCount += obstacles.get(i).getMaskWordCount();
+        }
+        setShieldWordCount(wordCount);
+        int word = 0;
+        for(int i = 0; i < obstacles.size(); i++) {
+            Obstacle obstacle = obstacles.get(i);
+            for(int j = 0; j < obstacle.getMaskWordCount(); j++) {
+                shieldWords[word++] = obstacle.getMaskWord(j);
+            }
+        }
+        ProjectilePool projectiles = objectManager.getProjectiles();
+        setProjectileCount(projectiles.size());
+        for(int i = 0; i < projectileCount; i++) {
+            projectileX[i] = projectiles.getX(i);
+            projectileY[i] = projectiles.getY(i);
+            projectileOwner[i] = projectiles.getOwner(i);
+        }
+    }
+
+    /**
+     * Gets the largest number of bytes writeDelta() can write for this view.
+     *
+     * @return The size of a full update in bytes.
+     */
+    public int getMaxDeltaSize() {
+        return 1 + Short.BYTES + HEADER_SIZE * Integer.BYTES + 2 * Integer.BYTES + aliveWordCount * (Integer.BYTES + Long.BYTES)
+                + 2 * Integer.BYTES + shieldWordCount * (Integer.BYTES + Long.BYTES)
+                + Integer.BYTES + (projectileCount + 7) / 8 + projectileCount * (1 + 2 * Integer.BYTES + 1);
+    }
+
+    /**
+     * Makes this view a copy of another.
+     *
+     * @param other The view to copy.
+     */
+    public void copyFrom(NetworkView other) {
+        System.arraycopy(other.header, 0, header, 0, HEADER_SIZE);
+        setAliveWordCount(other.aliveWordCount);
+        System.arraycopy(other.aliveWords, 0, aliveWords, 0, aliveWordCount);
+        setShieldWordCount(other.shieldWordCount);
+        System.arraycopy(other.shieldWords, 0, shieldWords, 0, shieldWordCount);
+        setProjectileCount(other.projectileCount);
+        System.arraycopy(other.projectileX, 0, projectileX, 0, projectileCount);
+        System.arraycopy(other.projectileY, 0, projectileY, 0, projectileCount);
+        System.arraycopy(other.projectileOwner, 0, projectileOwner, 0, projectileCount);
+    }
+
+    /**
+     * Writes the parts of this view that are different from the base view.
+     * With no base view every part is written.
+     *
+     * @param buffer The buffer to write to.
+     * @param base The view the client already has, or null to write the full view.
+     */
+    public void writeDelta(ByteBuffer buffer, NetworkView base) {
+        int headerMask = 0;
+        for(int i = 0; i < HEADER_SIZE; i++) {
+            if(base == null || header[i] != base.header[i]) {
+                headerMask |= 1 << i;
+            }
+        }
+        boolean formationResized = base == null || aliveWordCount != base.aliveWordCount;
+        int changedWords = 0;
+        for(int i = 0; i < aliveWordCount; i++) {
+            if(formationResized || aliveWords[i] != base.aliveWords[i]) {
+                changedWords++;
+            }
+        }
+        boolean shieldsResized = base == null || shieldWordCount != base.shieldWordCount;
+        int changedShieldWords = 0;
+        for(int i = 0; i < shieldWordCount; i++) {
+            if(shieldsResized || shieldWords[i] != base.shieldWords[i]) {
+                changedShieldWords++;
+            }
+        }
+        boolean projectilesChanged = base == null || projectileCount != base.projectileCount;
+        for(int i = 0; i < projectileCount && !projectilesChanged; i++) {
+            projectilesChanged = getProjectileChanges(base, i) != 0;
+        }
+        buffer.put((byte)((base == null ? FULL : 0) | (headerMask != 0 ? HEADER_CHANGED : 0)
+                | (changedWords > 0 || formationResized ? ALIENS_CHANGED : 0)
+                | (changedShieldWords > 0 || shieldsResized ? SHIELDS_CHANGED : 0)
+                | (projectilesChanged ? PROJECTILES_CHANGED : 0)));
+        if(headerMask != 0) {
+            buffer.putShort((short)headerMask);
+            for(int i = 0; i < HEADER_SIZE; i++) {
+                if((headerMask & (1 << i)) != 0) {
+                    buffer.putInt(header[i]);
+                }
+            }
+        }
+        if(changedWords > 0 || formationResized) {
+            buffer.putInt(aliveWordCount);
+            buffer.putInt(changedWords);
+            for(int i = 0; i < aliveWordCount; i++) {
+                if(formationResized || aliveWords[i] != base.aliveWords[i]) {
+                    buffer.putInt(i);
+                    buffer.putLong(aliveWords[i]);
+                }
+            }
+        }
+        if(changedShieldWords > 0 || shieldsResized) {
+            buffer.putInt(shieldWordCount);
+            buffer.putInt(changedShieldWords);
+            for(int i = 0; i < shieldWordCount; i++) {
+                if(shieldsResized || shieldWords[i] != base.shieldWords[i]) {
+                    buffer.putInt(i);
+                    buffer.putLong(shieldWords[i]);
+                }
+            }
+        }
+        if(projectilesChanged) {
+            buffer.putInt(projectileCount);
+            for(int group = 0; group < projectileCount; group += 8) {
+                int groupEnd = Math.min(projectileCount, group + 8);
+                int changedMask = 0;
+                for(int i = group; i < groupEnd; i++) {
+                    if(getProjectileChanges(base, i) != 0) {
+                        changedMask |= 1 << (i - group);
+                    }
+                }
+                buffer.put((byte)changedMask);
+                for(int i = group; i < groupEnd; i++) {
+                    int changes = getProjectileChanges(base, i);
+                    if(changes != 0) {
+                        buffer.put((byte)changes);
+                        if((changes & PROJECTILE_X) != 0) {
+                            buffer.putInt(projectileX[i]);
+                        }
+                        if((changes & PROJECTILE_Y_SHORT) != 0) {
+                            buffer.putShort((short)(projectileY[i] - getBaseProjectileY(base, i)));
+                        } else if((changes & PROJECTILE_Y) != 0) {
+                            buffer.putInt(projectileY[i]);
+                        }
+                        if((changes & PROJECTILE_OWNER) != 0) {
+                            buffer.put(projectileOwner[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes this view by applying an update written by writeDelta(). This view must
+     * already be a copy of the base view the update was written against, unless it is a full update.
+     *
+     * @param buffer The buffer to read from.
+     * @return True if the update was a full update.
+     */
+    public boolean readDelta(ByteBuffer buffer) {
+        int flags = buffer.get();
+        if((flags & HEADER_CHANGED) != 0) {
+            int headerMask = buffer.getShort();
+            for(int i = 0; i < HEADER_SIZE; i++) {
+                if((headerMask & (1 << i)) != 0) {
+                    header[i] = buffer.getInt();
+                }
+            }
+        }
+        if((flags & ALIENS_CHANGED) != 0) {
+            setAliveWordCount(buffer.getInt());
+            int changedWords = buffer.getInt();
+            for(int i = 0; i < changedWords; i++) {
+                int word = buffer.getInt();
+                aliveWords[word] = buffer.getLong();
+            }
+        }
+        if((flags & SHIELDS_CHANGED) != 0) {
+            setShieldWordCount(buffer.getInt());
+            int changedWords = buffer.getInt();
+            for(int i = 0; i < changedWords; i++) {
+                int word = buffer.getInt();
+                shieldWords[word] = buffer.getLong();
+            }
+        }
+        if((flags & PROJECTILES_CHANGED) != 0) {
+            // A full update was written against no projectiles, whatever this view held before.
+            int baseCount = (flags & FULL) != 0 ? 0 : projectileCount;
+            setProjectileCount(buffer.getInt());
+            for(int i = baseCount; i < projectileCount; i++) {
+                projectileX[i] = 0;
+                projectileY[i] = 0;
+                projectileOwner[i] = 0;
+            }
+            for(int group = 0; group < projectileCount; group += 8) {
+                int groupEnd = Math.min(projectileCount, group + 8);
+                int changedMask = buffer.get();
+                for(int i = group; i < groupEnd; i++) {
+                    if((changedMask & (1 << (i - group))) != 0) {
+                        int changes = buffer.get();
+                        if((changes & PROJECTILE_X) != 0) {
+                            projectileX[i] = buffer.getInt();
+                        }
+                        if((changes & PROJECTILE_Y_SHORT) != 0) {
+                            projectileY[i] += buffer.getShort();
+                        } else if((changes & PROJECTILE_Y) != 0) {
+                            projectileY[i] = buffer.getInt();
+                        }
+                        if((changes & PROJECTILE_OWNER) != 0) {
+                            projectileOwner[i] = buffer.get();
+                        }
+                    }
+                }
+            }
+        }
+        return (flags & FULL) != 0;
+    }
+
+    /**
+     * Creates a hash of the whole view so a client can check it rebuilt exactly what the server sent.
+     *
+     * @return A hash of the view.
+     */
+    public long hash() {
+        long hash = StateHash.INITIAL;
+        for(int i = 0; i < HEADER_SIZE; i++) {
+            hash = StateHash.mix(hash, header[i]);
+        }
+        hash = StateHash.mix(hash, aliveWordCount);
+        for(int i = 0; i < aliveWordCount; i++) {
+            hash = StateHash.mix(hash, aliveWords[i]);
+        }
+        hash = StateHash.mix(hash, shieldWordCount);
+        for(int i = 0; i < shieldWordCount; i++) {
+            hash = StateHash.mix(hash, shieldWords[i]);
+        }
+        hash = StateHash.mix(hash, projectileCount);
+        for(int i = 0; i < projectileCount; i++) {
+            hash = StateHash.mix(hash, ((long)projectileX[i] << 32) | (projectileY[i] & 0xFFFFFFFFL));
+            hash = StateHash.mix(hash, projectileOwner[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the score.
+     *
+     * @return The score.
+     */
+    public int getScore() {
+        return header[0];
+    }
+
+    /**
+     * Gets the player's lives.
+     *
+     * @return The lives remaining.
+     */
+    public int getLives() {
+        return header[1];
+    }
+
+    /**
+     * Gets the player's x coordinate.
+     *
+     * @return The x coordinate of the player's top left corner.
+     */
+    public int getPlayerX() {
+        return header[2];
+    }
+
+    /**
+     * Gets the outcome of the game.
+     *
+     * @return The outcome.
+     */
+    public GameOutcome getOutcome() {
+        return GameOutcome.values()[header[8]];
+    }
+
+    /**
+     * Gets the number of projectiles.
+     *
+     * @return The number of projectiles.
+     */
+    public int getProjectileCount() {
+        return projectileCount;
+    }
+
+    /**
+     * Gets the number of aliens that are alive.
+     *
+     * @return The number of living aliens.
+     */
+    public int getAlienCount() {
+        int count = 0;
+        for(int i = 0; i < aliveWordCount; i++) {
+            count += Long.bitCount(aliveWords[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Compares a projectile slot with the same slot in the base view. A slot the base view does not
+     * have, or any slot when there is no base view, is compared with a projectile at 0, 0 with no owner.
+     *
+     * @param base The view the client already has, or null.
+     * @param index The projectile slot.
+     * @return The PROJECTILE_ flags for the values that changed, or 0 if the slot is the same.
+     */
+    private int getProjectileChanges(NetworkView base, int index) {
+        boolean inBase = base != null && index < base.projectileCount;
+        int changes = 0;
+        if(projectileX[index] != (inBase ? base.projectileX[index] : 0)) {
+            changes |= PROJECTILE_X;
+        }
+        int moveY = projectileY[index] - getBaseProjectileY(base, index);
+        if(moveY != 0) {
+            changes |= moveY == (short)moveY ? PROJECTILE_Y_SHORT : PROJECTILE_Y;
+        }
+        if(projectileOwner[index] != (inBase ? base.projectileOwner[index] : 0)) {
+            changes |= PROJECTILE_OWNER;
+        }
+        return changes;
+    }
+
+    /**
+     * Gets the y coordinate of a projectile slot in the base view that changes are written against.
+     *
+     * @param base The view the client already has, or null.
+     * @param index The projectile slot.
+     * @return The y coordinate, or 0 if the base view does not have the slot.
+     */
+    private static int getBaseProjectileY(NetworkView base, int index) {
+        return base != null && index < base.projectileCount ? base.projectileY[index] : 0;
+    }
+
+    /**
+     * Changes the number of alive words, growing the array if needed.
+     *
+     * @param count The new number of words.
+     */
+    private void setAliveWordCount(int count) {
+        if(count > aliveWords.length) {
+            aliveWords = Arrays.copyOf(aliveWords, count);
+        }
+        aliveWordCount = count;
+    }
+
+    /**
+     * Changes the number of shield words, growing the array if needed.
+     *
+     * @param count The new number of words.
+     */
+    private void setShieldWordCount(int count) {
+        if(count > shieldWords.length) {
+            shieldWords = Arrays.copyOf(shieldWords, count);
+        }
+        shieldWordCount = count;
+    }
+
+    /**
+     * Changes the number of projectiles, growing the arrays if needed.
+     *
+     * @param count The new number of projectiles.
+     */
+    private void setProjectileCount(int count) {
+        if(count > projectileX.length) {
+            int capacity = Math.max(count, projectileX.length * 2);
+            projectileX = Arrays.copyOf(projectileX, capacity);
+            projectileY = Arrays.copyOf(projectileY, capacity);
+            projectileOwner = Arrays.copyOf(projectileOwner, capacity);
+        }
+        projectileCount = count;
+    }
+}
@@ -1,4 +1,5 @@
 import java.awt.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,12 +11,32 @@ import java.util.List;
  * Manages all the objects in the scene including:
  * the player, the alien manager, the projectiles, and
  * any obstacles.
+ * Each ObjectManager is a complete game with its own size and random numbers,
+ * so many games can be run at the same time on different threads.
+ * The objects' components are kept in EntityStores: one here for the player and obstacles,
+ * one in the AlienManager for the aliens, and one in the ProjectilePool for the projectiles.
  */
 public class ObjectManager {
     /**
-     * Reference to the gamePanel for passing score updates.
+     * Version written at the start of the state so that state from a different version is rejected.
      */
-    private GamePanel gamePanel;
+    private static final int STATE_VERSION = 5;
+    /**
+     * The current score.
+     */
+    private int score;
+    /**
+     * Width and height of the game area.
+     */
+    private int width, height;
+    /**
+     * Random number generator used by everything in this game.
+     */
+    private GameRandom random;
+    /**
+     * Components of the player and the obstacles.
+     */
+    private EntityStore entities;
     /**
      * The player object.
      */
@@ -27,15 +48,39 @@ public class ObjectManager {
     /**
      * The projectiles that are currently active moving up or down.
      */
-    private List<Projectile> projectiles;
+    private ProjectilePool projectiles;
     /**
-     * Obstacles that block projectiles.
+     * Shields that block projectiles and are worn away by them.
      */
     private List<Obstacle> obstacles;
+    /**
+     * Records how long each part of the update takes, or null when updates are not measured.
+     */
+    private GameMetrics metrics;
 
-    public ObjectManager(GamePanel gamePanel) {
-        this.gamePanel = gamePanel;
-        projectiles = new ArrayList<>();
+    /**
+     * Creates the player, aliens, and obstacles ready to start playing in an area
+     * the size of the GamePanel with a different random seed every time.
+     * Does not depend on any Swing components so it can be run headless.
+     */
+    public ObjectManager() {
+        this(GamePanel.PANEL_WIDTH, GamePanel.PANEL_HEIGHT, new GameRandom());
+    }
+
+    /**
+     * Creates the player, aliens, and obstacles ready to start playing in an area of the specified size.
+     *
+     * @param width Width of the game area.
+     * @param height Height of the game area.
+     * @param random Random number generator used only by this game.
+     */
+    public ObjectManager(int width, int height, GameRandom random) {
+        this.width = width;
+        this.height = height;
+        this.random = random;
+        score = 0;
+        entities = new EntityStore();
+        projectiles = new ProjectilePool(this);
         obstacles = new ArrayList<>();
         player = new Player(this);
         alienManager = new AlienManager(this);
@@ -43,12 +88,16 @@ public class ObjectManager {
     }
 
     /**
-     * Resets all the object states back to default.
+     * Resets all the object states back to default, with the shields made solid again.
      */
     public void reset() {
         alienManager.reset();
         player.reset();
+        for(int i = 0; i < obstacles.size(); i++) {
+            obstacles.get(i).reset();
+        }
         projectiles.clear();
+        score = 0;
     }
 
     /**
@@ -57,9 +106,22 @@ public class ObjectManager {
      * @param deltaTime Time since last update.
      */
     public void update(int deltaTime) {
+        if(metrics != null) {
+            metrics.startTick();
+        }
+        player.storePreviousPosition();
         player.update(deltaTime);
+        if(metrics != null) {
+            metrics.lap(GameMetrics.PLAYER_UPDATE);
+        }
         alienManager.update(deltaTime);
+        if(metrics != null) {
+            metrics.lap(GameMetrics.ALIEN_UPDATE);
+        }
         updateProjectiles(deltaTime);
+        if(metrics != null) {
+            metrics.endTick(projectiles.size(), getAlienCount());
+        }
     }
 
     /**
@@ -68,10 +130,34 @@ public class ObjectManager {
      * @param g Reference to the Graphics object for rendering.
      */
     public void paint(Graphics g) {
-        obstacles.forEach(o -> o.paint(g));
-        player.paint(g);
-        alienManager.paint(g);
-        projectiles.forEach(p -> p.paint(g));
+        paint(g, 1);
+    }
+
+    /**
+     * Draws the player, aliens, obstacles, and projectiles part way between
+     * where they were before the last update and where they are now.
+     * Shields, the player, and the aliens outside the clip are skipped, so drawing a small part
+     * of the panel does not cost as much as drawing all of it.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param alpha How far between the previous and current positions, from 0 to 1.
+     */
+    public void paint(Graphics g, float alpha) {
+        for(int i = 0; i < obstacles.size(); i++) {
+            Obstacle obstacle = obstacles.get(i);
+            if(g.hitClip(obstacle.getX(), obstacle.getY(), obstacle.getWidth(), obstacle.getHeight())) {
+                obstacle.paint(g);
+            }
+        }
+        // The outlines of the tank are drawn one pixel past its width and height.
+        if(g.hitClip(player.getInterpolatedX(alpha), player.getInterpolatedY(alpha), Player.WIDTH + 1, Player.HEIGHT + 1)) {
+            player.paint(g, alpha);
+        }
+        if(g.hitClip(alienManager.getPaintX(alpha), alienManager.getPaintY(alpha),
+                alienManager.getFormationWidth(), alienManager.getFormationHeight())) {
+            alienManager.paint(g, alpha);
+        }
+        projectiles.paint(g, alpha);
     }
 
     /**
@@ -89,16 +175,176 @@ public class ObjectManager {
      * @return True when the game should end due to an alien invasion.
      */
     public boolean getAlienTooFarDown() {
-        return alienManager.getLowestAlienY() >= player.position.y - Alien.HEIGHT;
+        return alienManager.getLowestAlienY() >= player.getY() - Alien.HEIGHT;
+    }
+
+    /**
+     * Checks the end of game conditions in the same order they are reported to the player.
+     *
+     * @return The current outcome, or IN_PROGRESS if the game has not ended.
+     */
+    public GameOutcome getGameOutcome() {
+        if(player.getLives() == 0) {
+            return GameOutcome.LOST_ALL_LIVES;
+        } else if(getAlienCount() == 0) {
+            return GameOutcome.WON;
+        } else if(getAlienTooFarDown()) {
+            return GameOutcome.LOST_BY_INVASION;
+        }
+        return GameOutcome.IN_PROGRESS;
+    }
+
+    /**
+     * Creates a hash of the whole game state including the score, random number generator,
+     * player, aliens, projectiles, and shields. Games that have the same hash after every update
+     * have played out exactly the same. Does not allocate.
+     *
+     * @return A hash of the current game state.
+     */
+    public long getStateHash() {
+        long hash = StateHash.mix(StateHash.INITIAL, score);
+        hash = StateHash.mix(hash, random.getState());
+        hash = player.hashState(hash);
+        hash = alienManager.hashState(hash);
+        hash = projectiles.hashState(hash);
+        for(int i = 0; i < obstacles.size(); i++) {
+            hash = obstacles.get(i).hashState(hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the complete game state into the buffer starting at its current position.
+     * This includes the score, random number generator, player, aliens, projectiles, and obstacles,
+     * so that readState() can continue the game exactly from this point. Nothing is allocated,
+     * so the same buffer can be reused for taking snapshots every update.
+     *
+     * @param buffer The buffer to write to, which needs at least getStateSize() bytes remaining.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(STATE_VERSION);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putInt(score);
+        buffer.putLong(random.getState());
+        player.writeState(buffer);
+        alienManager.writeState(buffer);
+        projectiles.writeState(buffer);
+        buffer.putInt(obstacles.size());
+        for(int i = 0; i < obstacles.size(); i++) {
+            obstacles.get(i).writeState(buffer);
+        }
     }
 
     /**
-     * Passes the increase score call up to the game panel.
+     * Replaces the game state with state written by writeState(), reading from the buffer's current position.
+     * The state can come from any game of the same size. Existing objects are reused.
+     *
+     * @param buffer The buffer to read from.
+     * @throws IllegalArgumentException If the state is from a different version or a game of a different size.
+     */
+    public void readState(ByteBuffer buffer) {
+        int version = buffer.getInt();
+        if(version != STATE_VERSION) {
+            throw new IllegalArgumentException("Unsupported state version " + version);
+        }
+        int stateWidth = buffer.getInt();
+        int stateHeight = buffer.getInt();
+        if(stateWidth != width || stateHeight != height) {
+            throw new IllegalArgumentException("State is for a " + stateWidth + "x" + stateHeight
+                    + " game but this game is " + width + "x" + height);
+        }
+        score = buffer.getInt();
+        long randomState = buffer.getLong();
+        player.readState(buffer);
+        alienManager.readState(buffer);
+        projectiles.readState(buffer);
+        int obstacleCount = buffer.getInt();
+        if(obstacleCount != obstacles.size()) {
+            throw new IllegalArgumentException("State has " + obstacleCount + " obstacles but this game has " + obstacles.size());
+        }
+        for(int i = 0; i < obstacleCount; i++) {
+            obstacles.get(i).readState(buffer);
+        }
+        // Restored last because a formation of a different size uses random numbers while respawning.
+        random.setState(randomState);
+    }
+
+    /**
+     * Gets the number of bytes writeState() will write for the current state.
+     *
+     * @return The size of the state in bytes.
+     */
+    public int getStateSize() {
+        int size = 4 * Integer.BYTES + Long.BYTES + Player.STATE_SIZE + alienManager.getStateSize()
+                + projectiles.getStateSize() + Integer.BYTES;
+        for(int i = 0; i < obstacles.size(); i++) {
+            size += obstacles.get(i).getStateSize();
+        }
+        return size;
+    }
+
+    /**
+     * Increases the score by the amount specified.
      *
      * @param amount Amount to increase the score by.
      */
     public void increaseScore(int amount) {
-        gamePanel.increaseScore(amount);
+        score += amount;
+    }
+
+    /**
+     * Gets the current score.
+     *
+     * @return The current score.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the width of the game area.
+     *
+     * @return The width of the game area.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the game area.
+     *
+     * @return The height of the game area.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the random number generator for this game.
+     *
+     * @return A reference to the random number generator.
+     */
+    public GameRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Sets the metrics that record how long each update takes.
+     *
+     * @param metrics The metrics to record into, or null to stop measuring updates.
+     */
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the store holding the components of the player and the obstacles.
+     *
+     * @return A reference to the store.
+     */
+    public EntityStore getEntities() {
+        return entities;
     }
 
     /**
@@ -110,42 +356,101 @@ public class ObjectManager {
         return player;
     }
 
+    /**
+     * Gets the alien manager.
+     *
+     * @return A reference to the alien manager.
+     */
+    public AlienManager getAlienManager() {
+        return alienManager;
+    }
+
+    /**
+     * Gets the shields.
+     *
+     * @return A reference to the list of shields, which must not be changed.
+     */
+    public List<Obstacle> getObstacles() {
+        return obstacles;
+    }
+
+    /**
+     * Gets the pool containing all the active projectiles.
+     *
+     * @return A reference to the projectile pool.
+     */
+    public ProjectilePool getProjectiles() {
+        return projectiles;
+    }
+
+    /**
+     * Gets the number of projectiles that are currently active.
+     *
+     * @return The number of projectiles.
+     */
+    public int getProjectileCount() {
+        return projectiles.size();
+    }
+
     /**
      * Spawns one projectile using the object that it is being spawned from
-     * as the way to determine direction and start position.
+     * as the way to determine direction and start position. The projectile
+     * starts at the centre of the object and moves up if it was fired by the player's faction.
      *
      * @param spawnFromObject The object that is being spawned from.
      */
     public void addProjectile(Rectangle spawnFromObject) {
-        projectiles.add(new Projectile(spawnFromObject, this));
+        projectiles.add(spawnFromObject.getCentreX(), spawnFromObject.getCentreY(),
+                        spawnFromObject.getFaction() == EntityStore.FACTION_PLAYER
+                                ? ProjectilePool.OWNER_PLAYER : ProjectilePool.OWNER_ALIEN);
     }
 
     /**
-     * Tests the aliens, then the player, and then the obstacles
-     * to check if there are collisions with the projectile.
+     * Finds the first object a projectile touches while moving from previousY to y during the
+     * last update. The whole path is checked, so fast projectiles and long updates cannot pass
+     * through anything. The aliens and the player moved during the same update, so their own
+     * movement is taken into account as well.
+     * Player projectiles test the aliens and alien projectiles test the player, and then both
+     * test the obstacles. Whichever is touched earliest along the path is the one hit,
+     * with the aliens or player winning a tie.
+     * There are only a few obstacles, so each one is swept along the path against its mask,
+     * and projectiles pass through the craters worn into them.
+     * Aliens are tested by looking up the path in the formation.
      * Projectiles do not check collisions on their own type.
      * Eg, player projectiles do not hit players, and alien projectiles
      * do not hit the aliens.
      *
-     * @param projectile The projectile to test for collisions.
+     * @param x X coordinate of the projectile's top left corner.
+     * @param previousY Y coordinate of the projectile's top left corner before it moved.
+     * @param y Y coordinate of the projectile's top left corner after it moved.
+     * @param width Width of the projectile.
+     * @param height Height of the projectile.
+     * @param owner Which side fired the projectile, either ProjectilePool.OWNER_PLAYER or OWNER_ALIEN.
      * @return A reference to the first object collided with, or null.
      */
-    public Rectangle getCollision(Projectile projectile) {
-        Rectangle parentObj = projectile.getParentObject();
-        if(parentObj instanceof Player) {
-            Rectangle alienCollision = alienManager.getCollision(projectile);
-            if(alienCollision != null) {
-                return alienCollision;
+    public Rectangle getCollision(int x, int previousY, int y, int width, int height, byte owner) {
+        Rectangle target = null;
+        int targetTime = -1;
+        if(owner == ProjectilePool.OWNER_PLAYER) {
+            target = alienManager.getCollisionAlong(x, previousY, x, y, width, height);
+            if(target != null) {
+                Position offset = alienManager.getMoveOffset();
+                targetTime = target.getSweepTime(x + offset.x, previousY + offset.y, x, y, width, height);
             }
-        } else if(player.isIntersecting(projectile)) {
-            return player;
+        } else {
+            // The player is swept directly, along the projectile's path relative to how far the player moved this update.
+            targetTime = player.getSweepTime(x + (player.getX() - player.getPreviousX()),
+                    previousY + (player.getY() - player.getPreviousY()), x, y, width, height);
+            target = targetTime >= 0 ? player : null;
         }
-        for (Obstacle obstacle : obstacles) {
-            if(obstacle.isIntersecting(projectile)) {
-                return obstacle;
+        for(int i = 0; i < obstacles.size(); i++) {
+            int time = obstacles.get(i).getSweepTime(x, previousY, x, y, width, height);
+            if(time >= 0 && (target == null || time < targetTime)) {
+                target = obstacles.get(i);
+                targetTime = time;
             }
         }
-        return null;
+        return target;
     }
 
     /**
@@ -155,18 +460,15 @@ public class ObjectManager {
      * @param deltaTime Time since last update.
      */
     private void updateProjectiles(int deltaTime) {
-        for(int i = 0; i < projectiles.size(); i++) {
-            projectiles.get(i).update(deltaTime);
-            if(projectiles.get(i).isExpired()) {
-                projectiles.remove(i);
-                i--;
-            }
-        }
+        projectiles.update(deltaTime);
     }
 
+    /**
+     * Creates the obstacles spaced out above the player.
+     */
     private void spawnObstacles() {
-        obstacles.add(new Obstacle(new Position(50,player.position.y - 100),50, 20));
-        obstacles.add(new Obstacle(new Position(GamePanel.PANEL_WIDTH/2-25,player.position.y - 100),50, 20));
-        obstacles.add(new Obstacle(new Position(GamePanel.PANEL_WIDTH-100,player.position.y - 100),50, 20));
+        obstacles.add(new Obstacle(entities, 50, player.getY() - 100, 50, 20));
+        obstacles.add(new Obstacle(entities, width/2-25, player.getY() - 100, 50, 20));
+        obstacles.add(new Obstacle(entities, width-100, player.getY() - 100, 50, 20));
     }
 }
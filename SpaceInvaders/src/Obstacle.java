@@ -1,31 +1,431 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Space Invaders
  * Author: Peter Mitchell (2021)
  *
  * Obstacle class:
- * Defines a simple obstacle that just draws the specified rectangle.
+ * Defines a shield that blocks projectiles and is worn away by them.
+ * The shape is a bit mask with one bit per pixel, packed 64 pixels to a long with
+ * each row starting a new long. Collisions AND the projectile's columns with each row
+ * a whole word at a time, and every projectile that hits carves a crater out of the mask.
+ * A pixel's edges count as touching the same as Rectangle.isIntersecting(), so a shield
+ * that has not been hit blocks exactly the same projectiles as a solid rectangle.
  */
 public class Obstacle extends Rectangle {
     /**
-     * Defines an obstacle that will block projectiles.
+     * Green used to fill the obstacle. This is the translucent green (36, 127, 4, 191) already
+     * blended over the black background that obstacles are always drawn on, so that drawing uses
+     * the fast solid fill instead of creating a new paint context for every translucent fill.
+     */
+    private static final Color OBSTACLE_COLOUR = new Color(27, 95, 3);
+    /**
+     * Shape removed from the shield where a projectile hits it, centred on the point of impact.
+     */
+    private static final String[] CRATER_SHAPE = {
+            "..X..X..",
+            ".XXXXXX.",
+            "XXXXXXXX",
+            "XXXXXXXX",
+            ".XXXXXX.",
+            "..X..X..",
+    };
+    /**
+     * Width of the crater in pixels.
+     */
+    private static final int CRATER_WIDTH = CRATER_SHAPE[0].length();
+    /**
+     * Bits of each row of the crater, with bit 0 as the leftmost pixel.
+     */
+    private static final long[] CRATER_ROWS = new long[CRATER_SHAPE.length];
+    static {
+        for(int row = 0; row < CRATER_SHAPE.length; row++) {
+            for(int column = 0; column < CRATER_WIDTH; column++) {
+                if(CRATER_SHAPE[row].charAt(column) == 'X') {
+                    CRATER_ROWS[row] |= 1L << column;
+                }
+            }
+        }
+    }
+    /**
+     * One bit for each pixel that is still solid. Bit b of word row*wordsPerRow+w is column w*64+b of the row.
+     */
+    private long[] mask;
+    /**
+     * Number of longs used for each row of the mask.
+     */
+    private int wordsPerRow;
+    /**
+     * Image of the shield, created when first drawn.
+     */
+    private BufferedImage sprite;
+    /**
+     * Graphics kept for redrawing the sprite without creating a new one each time.
+     */
+    private Graphics2D spriteGraphics;
+    /**
+     * True when the mask has changed since the sprite was last drawn.
+     */
+    private boolean spriteDirty;
+    /**
+     * Increased every time the mask changes, so the panel knows when to draw the shield again.
+     */
+    private int version;
+
+    /**
+     * Defines an obstacle that will block projectiles, starting completely solid.
      *
-     * @param position Position where to place the obstacle.
+     * @param store The store to add the obstacle to.
+     * @param x X coordinate of the top left corner.
+     * @param y Y coordinate of the top left corner.
      * @param width Width of the obstacle.
      * @param height Height of the obstacle.
      */
-    public Obstacle(Position position, int width, int height) {
-        super(position, width, height);
+    public Obstacle(EntityStore store, int x, int y, int width, int height) {
+        super(store, x, y, width, height, EntityStore.FACTION_NEUTRAL);
+        wordsPerRow = (width + Long.SIZE - 1) / Long.SIZE;
+        mask = new long[wordsPerRow * height];
+        reset();
+    }
+
+    /**
+     * Makes every pixel of the shield solid again.
+     */
+    public void reset() {
+        int width = getWidth();
+        for(int row = 0; row < getHeight(); row++) {
+            for(int word = 0; word < wordsPerRow; word++) {
+                mask[row * wordsPerRow + word] = getColumnBits(word, 0, width - 1);
+            }
+        }
+        spriteDirty = true;
+        version++;
     }
 
     /**
-     * Draws the rectangle to fill in the obstacle.
+     * Draws the solid parts of the shield. When the sprite cache is enabled they are drawn
+     * from an image that is only redrawn after the shield has been hit.
      *
      * @param g Reference to the Graphics object for rendering.
      */
     public void paint(Graphics g) {
-        g.setColor(new Color(36, 127, 4, 191));
-        g.fillRect(position.x, position.y, width, height);
+        if(SpriteCache.isEnabled()) {
+            if(sprite == null) {
+                sprite = SpriteCache.createImage(getWidth(), getHeight(), true);
+                spriteGraphics = sprite.createGraphics();
+            }
+            if(spriteDirty) {
+                spriteGraphics.setComposite(AlphaComposite.Clear);
+                spriteGraphics.fillRect(0, 0, getWidth(), getHeight());
+                spriteGraphics.setComposite(AlphaComposite.SrcOver);
+                fillMask(spriteGraphics, 0, 0);
+                spriteDirty = false;
+            }
+            g.drawImage(sprite, getX(), getY(), null);
+        } else {
+            fillMask(g, getX(), getY());
+        }
+    }
+
+    /**
+     * Tests the solid parts of the shield against a rectangle, using the bounding box first
+     * and then ANDing the rectangle's columns with each row it overlaps.
+     *
+     * @param x X coordinate of the other rectangle's top left corner.
+     * @param y Y coordinate of the other rectangle's top left corner.
+     * @param otherWidth Width of the other rectangle.
+     * @param otherHeight Height of the other rectangle.
+     * @return True if any solid pixel is touching the other rectangle.
+     */
+    @Override
+    public boolean isIntersecting(int x, int y, int otherWidth, int otherHeight) {
+        if(!super.isIntersecting(x, y, otherWidth, otherHeight)) {
+            return false;
+        }
+        int top = getY();
+        return findFirstRow(x - getX(), otherWidth, y - top - 1, y - top + otherHeight, true) >= 0;
+    }
+
+    /**
+     * Finds when a box moving in a straight line first touches a solid part of the shield.
+     * The rows the box sweeps over are tested in the order it reaches them, so only the rows
+     * up to the first one that is touched are read. Boxes that also move sideways are tested
+     * against every column they pass over, which can only make them touch earlier.
+     *
+     * @param fromX X coordinate of the box's top left corner at the start of the move.
+     * @param fromY Y coordinate of the box's top left corner at the start of the move.
+     * @param toX X coordinate of the box's top left corner at the end of the move.
+     * @param toY Y coordinate of the box's top left corner at the end of the move.
+     * @param otherWidth Width of the box.
+     * @param otherHeight Height of the box.
+     * @return How far through the move the box first touches, from 0 to SWEEP_TIME_SCALE, or -1 if it never does.
+     */
+    @Override
+    public int getSweepTime(int fromX, int fromY, int toX, int toY, int otherWidth, int otherHeight) {
+        int boxTime = super.getSweepTime(fromX, fromY, toX, toY, otherWidth, otherHeight);
+        if(boxTime < 0) {
+            return -1;
+        }
+        int row = findFirstRowAlong(fromX, fromY, toX, toY, otherWidth, otherHeight);
+        if(row < 0) {
+            return -1;
+        }
+        if(fromY == toY) {
+            return boxTime;
+        }
+        // Where the top of the box is when it first touches the row.
+        int touchY = getY() + (toY > fromY ? row - otherHeight : row + 1);
+        long time = Math.floorDiv((long)(touchY - fromY) * SWEEP_TIME_SCALE, toY - fromY);
+        return (int)Math.max(boxTime, Math.min(time, SWEEP_TIME_SCALE));
+    }
+
+    /**
+     * Carves a crater where a box moving in a straight line first touches the shield.
+     * Called when a projectile hits the shield, with the same move that getSweepTime() was given.
+     *
+     * @param fromX X coordinate of the box's top left corner at the start of the move.
+     * @param fromY Y coordinate of the box's top left corner at the start of the move.
+     * @param toX X coordinate of the box's top left corner at the end of the move.
+     * @param toY Y coordinate of the box's top left corner at the end of the move.
+     * @param otherWidth Width of the box.
+     * @param otherHeight Height of the box.
+     */
+    public void hitAlong(int fromX, int fromY, int toX, int toY, int otherWidth, int otherHeight) {
+        int row = findFirstRowAlong(fromX, fromY, toX, toY, otherWidth, otherHeight);
+        if(row >= 0) {
+            carve(toX + otherWidth / 2 - getX() - CRATER_WIDTH / 2, row - CRATER_ROWS.length / 2);
+        }
+    }
+
+    /**
+     * Removes the crater shape from the mask with its top left corner at a pixel of the shield.
+     * Each row of the crater is shifted into place and cleared from at most two words.
+     *
+     * @param column Column of the crater's left side, which can be outside the shield.
+     * @param row Row of the crater's top, which can be outside the shield.
+     */
+    public void carve(int column, int row) {
+        int height = getHeight();
+        for(int i = 0; i < CRATER_ROWS.length; i++) {
+            int maskRow = row + i;
+            if(maskRow < 0 || maskRow >= height) {
+                continue;
+            }
+            for(int word = 0; word < wordsPerRow; word++) {
+                int shift = column - word * Long.SIZE;
+                long bits;
+                if(shift >= Long.SIZE || shift <= -CRATER_WIDTH) {
+                    continue;
+                } else if(shift >= 0) {
+                    bits = CRATER_ROWS[i] << shift;
+                } else {
+                    bits = CRATER_ROWS[i] >>> -shift;
+                }
+                mask[maskRow * wordsPerRow + word] &= ~bits;
+            }
+        }
+        spriteDirty = true;
+        version++;
+    }
+
+    /**
+     * Gets a number that changes every time the shield is hit, reset, or restored.
+     *
+     * @return The number of changes to the mask.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the colour the shield is filled with.
+     *
+     * @return The shield colour.
+     */
+    static Color getColour() {
+        return OBSTACLE_COLOUR;
+    }
+
+    /**
+     * Gets the number of longs in the mask.
+     *
+     * @return The number of words.
+     */
+    public int getMaskWordCount() {
+        return mask.length;
+    }
+
+    /**
+     * Gets 64 pixels of the mask. Bit b of word row*words per row+w is column w*64+b of the row.
+     *
+     * @param word Index of the word from 0 to getMaskWordCount()-1.
+     * @return The bits for the word.
+     */
+    public long getMaskWord(int word) {
+        return mask[word];
+    }
+
+    /**
+     * Mixes the mask into a hash.
+     *
+     * @param hash The hash so far.
+     * @return The new hash.
+     */
+    public long hashState(long hash) {
+        for(int i = 0; i < mask.length; i++) {
+            hash = StateHash.mix(hash, mask[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the position and mask of the shield.
+     *
+     * @param buffer The buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(getX());
+        buffer.putInt(getY());
+        for(int i = 0; i < mask.length; i++) {
+            buffer.putLong(mask[i]);
+        }
+    }
+
+    /**
+     * Restores the shield from state written by writeState().
+     *
+     * @param buffer The buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+        setPosition(buffer.getInt(), buffer.getInt());
+        for(int i = 0; i < mask.length; i++) {
+            mask[i] = buffer.getLong();
+        }
+        spriteDirty = true;
+        version++;
+    }
+
+    /**
+     * Gets the number of bytes writeState() will write.
+     *
+     * @return The size of the state in bytes.
+     */
+    public int getStateSize() {
+        return 2 * Integer.BYTES + mask.length * Long.BYTES;
+    }
+
+    /**
+     * Finds the first row of the shield a box moving in a straight line touches.
+     *
+     * @param fromX X coordinate of the box's top left corner at the start of the move.
+     * @param fromY Y coordinate of the box's top left corner at the start of the move.
+     * @param toX X coordinate of the box's top left corner at the end of the move.
+     * @param toY Y coordinate of the box's top left corner at the end of the move.
+     * @param otherWidth Width of the box.
+     * @param otherHeight Height of the box.
+     * @return The row, or -1 if no solid pixel is touched.
+     */
+    private int findFirstRowAlong(int fromX, int fromY, int toX, int toY, int otherWidth, int otherHeight) {
+        int left = getX();
+        int top = getY();
+        int minX = Math.min(fromX, toX);
+        int sweptWidth = Math.abs(toX - fromX) + otherWidth;
+        return findFirstRow(minX - left, sweptWidth, Math.min(fromY, toY) - top - 1,
+                            Math.max(fromY, toY) - top + otherHeight, toY >= fromY);
+    }
+
+    /**
+     * Finds the first row in a range that has a solid pixel touching a range of columns.
+     * A box touches the pixels from one before its left edge to its right edge, because touching
+     * edges count. The columns are turned into one bit mask per word, and then each row is tested
+     * with a single AND per word.
+     *
+     * @param x X coordinate of the box's left edge relative to the shield.
+     * @param width Width of the box.
+     * @param firstRow First row to test, which can be outside the shield.
+     * @param lastRow Last row to test, which can be outside the shield.
+     * @param downwards True to test from firstRow down, false to test from lastRow up.
+     * @return The row, or -1 if no solid pixel is touched.
+     */
+    private int findFirstRow(int x, int width, int firstRow, int lastRow, boolean downwards) {
+        int firstColumn = Math.max(0, x - 1);
+        int lastColumn = Math.min(getWidth() - 1, x + width);
+        firstRow = Math.max(0, firstRow);
+        lastRow = Math.min(getHeight() - 1, lastRow);
+        if(firstColumn > lastColumn || firstRow > lastRow) {
+            return -1;
+        }
+        int firstWord = firstColumn / Long.SIZE;
+        int lastWord = lastColumn / Long.SIZE;
+        int step = downwards ? 1 : -1;
+        if(firstWord == lastWord) {
+            // Projectiles are much narrower than a word, so this is the usual case of one AND per row.
+            long columnBits = getColumnBits(firstWord, firstColumn, lastColumn);
+            for(int row = downwards ? firstRow : lastRow; row >= firstRow && row <= lastRow; row += step) {
+                if((mask[row * wordsPerRow + firstWord] & columnBits) != 0) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+        for(int row = downwards ? firstRow : lastRow; row >= firstRow && row <= lastRow; row += step) {
+            for(int word = firstWord; word <= lastWord; word++) {
+                if((mask[row * wordsPerRow + word] & getColumnBits(word, firstColumn, lastColumn)) != 0) {
+                    return row;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the bits of one word of a row that are in a range of columns.
+     *
+     * @param word Index of the word in the row.
+     * @param firstColumn First column in the range.
+     * @param lastColumn Last column in the range.
+     * @return The bits in the range.
+     */
+    private static long getColumnBits(int word, int firstColumn, int lastColumn) {
+        int first = Math.max(firstColumn - word * Long.SIZE, 0);
+        int last = Math.min(lastColumn - word * Long.SIZE, Long.SIZE - 1);
+        if(first > last) {
+            return 0;
+        }
+        return (-1L << first) & (-1L >>> (Long.SIZE - 1 - last));
+    }
+
+    /**
+     * Fills the solid parts of the mask. Rows that are the same as the rows above them are
+     * drawn together, so a shield that has not been hit is a single fill.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param x X coordinate to draw the shield's left side at.
+     * @param y Y coordinate to draw the shield's top at.
+     */
+    private void fillMask(Graphics g, int x, int y) {
+        g.setColor(OBSTACLE_COLOUR);
+        int height = getHeight();
+        int row = 0;
+        while(row < height) {
+            int end = row + 1;
+            while(end < height && Arrays.equals(mask, row * wordsPerRow, (row + 1) * wordsPerRow,
+                                                mask, end * wordsPerRow, (end + 1) * wordsPerRow)) {
+                end++;
+            }
+            for(int word = 0; word < wordsPerRow; word++) {
+                long bits = mask[row * wordsPerRow + word];
+                while(bits != 0) {
+                    int start = Long.numberOfTrailingZeros(bits);
+                    int length = Long.numberOfTrailingZeros(~(bits >>> start));
+                    g.fillRect(x + word * Long.SIZE + start, y + row, length, end - row);
+                    bits &= length == Long.SIZE ? 0 : ~(((1L << length) - 1) << start);
+                }
+            }
+            row = end;
+        }
     }
 }
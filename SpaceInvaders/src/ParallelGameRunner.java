@@ -0,0 +1,150 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * ParallelGameRunner class:
+ * Runs a large batch of headless games across all the processor cores using a ForkJoinPool.
+ * The batch is split in half until each task has only a few games left, and each task
+ * plays its games one after another reusing a single HeadlessGame. Every game has its own
+ * ObjectManager and random number generator, so the threads do not share any game state.
+ * Game i is always seeded with the base seed plus i, so the combined results are the same
+ * no matter how many threads are used.
+ */
+public class ParallelGameRunner {
+    /**
+     * Tasks with this many games or fewer are run instead of being split further.
+     */
+    private static final int GAMES_PER_TASK = 16;
+    /**
+     * The pool the games are run on.
+     */
+    private ForkJoinPool pool;
+    /**
+     * Maximum number of updates for each game before it is stopped.
+     */
+    private int maxTicks;
+    /**
+     * Time in milliseconds for each update.
+     */
+    private int timeStep;
+
+    /**
+     * Runs a batch of games in parallel and prints the combined results.
+     *
+     * @param args Optional number of games, maximum ticks per game, number of threads, base seed, and time step in milliseconds.
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int maxTicks = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        int timeStep = args.length > 4 ? Integer.parseInt(args[4]) : GamePanel.TIME_INTERVAL;
+        ParallelGameRunner runner = new ParallelGameRunner(threads, maxTicks, timeStep);
+        long startTime = System.nanoTime();
+        GameResults results = runner.run(games, seed);
+        System.out.println("Threads: " + threads);
+        results.print((System.nanoTime() - startTime) / 1e9);
+        runner.shutdown();
+    }
+
+    /**
+     * Creates the runner with its own pool of threads.
+     *
+     * @param threads Number of threads to run games on.
+     * @param maxTicks Maximum number of updates for each game before it is stopped.
+     */
+    public ParallelGameRunner(int threads, int maxTicks) {
+        this(threads, maxTicks, GamePanel.TIME_INTERVAL);
+    }
+
+    /**
+     * Creates the runner with its own pool of threads, running games with a different time step.
+     *
+     * @param threads Number of threads to run games on.
+     * @param maxTicks Maximum number of updates for each game before it is stopped.
+     * @param timeStep Time in milliseconds for each update.
+     */
+    public ParallelGameRunner(int threads, int maxTicks, int timeStep) {
+        pool = new ForkJoinPool(threads);
+        this.maxTicks = maxTicks;
+        this.timeStep = timeStep;
+    }
+
+    /**
+     * Runs a batch of games and waits for them all to finish.
+     *
+     * @param games Number of games to run.
+     * @param seed Base seed. Game i is seeded with seed+i.
+     * @return The combined results of every game.
+     */
+    public GameResults run(int games, long seed) {
+        return pool.invoke(new GamesTask(0, games, seed));
+    }
+
+    /**
+     * Stops the threads used by the pool.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Task that runs a range of games, splitting the range when it is too large.
+     */
+    private class GamesTask extends RecursiveTask<GameResults> {
+        /**
+         * Version for serialization, which ForkJoinTask supports but is not used here.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * First game index to run and one past the last game index to run.
+         */
+        private final int from, to;
+        /**
+         * Base seed added to each game index.
+         */
+        private final long seed;
+
+        /**
+         * Creates a task for the games from index from up to but not including to.
+         *
+         * @param from First game index to run.
+         * @param to One past the last game index to run.
+         * @param seed Base seed added to each game index.
+         */
+        GamesTask(int from, int to, long seed) {
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        /**
+         * Runs the games directly when there are few enough, or splits them in half
+         * and runs one half on this thread while the other half can be taken by another thread.
+         *
+         * @return The combined results of the games in the range.
+         */
+        @Override
+        protected GameResults compute() {
+            if(to - from <= GAMES_PER_TASK) {
+                GameResults results = new GameResults();
+                HeadlessGame game = new HeadlessGame(seed + from, timeStep);
+                for(int i = from; i < to; i++) {
+                    game.reset(seed + i);
+                    game.runUntilGameOver(maxTicks);
+                    results.add(game);
+                }
+                return results;
+            }
+            int middle = (from + to) >>> 1;
+            GamesTask left = new GamesTask(from, middle, seed);
+            left.fork();
+            GameResults results = new GamesTask(middle, to, seed).compute();
+            results.merge(left.join());
+            return results;
+        }
+    }
+}
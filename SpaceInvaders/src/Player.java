@@ -1,5 +1,6 @@
 import java.awt.*;
 import java.awt.event.KeyEvent;
+import java.nio.ByteBuffer;
 
 /**
  * Space Invaders
@@ -12,11 +13,23 @@ public class Player extends Rectangle implements CollidableObject {
     /**
      * Width of the player.
      */
-    private static final int WIDTH = 30;
+    public static final int WIDTH = 30;
     /**
      * Height of the player.
      */
-    private static final int HEIGHT = 20;
+    public static final int HEIGHT = 20;
+    /**
+     * Number of bytes written by writeState().
+     */
+    public static final int STATE_SIZE = 6 * Integer.BYTES + 1;
+    /**
+     * Green used for the body of the tank.
+     */
+    private static final Color BODY_COLOUR = Color.GREEN;
+    /**
+     * Dark green used for the tank treads and barrel.
+     */
+    private static final Color DETAIL_COLOUR = new Color(19, 73, 0);
 
     /**
      * Reference to the object manager for spawning projectiles.
@@ -31,35 +44,40 @@ public class Player extends Rectangle implements CollidableObject {
      */
     private boolean keyLeftIsPressed, keyRightIsPressed;
     /**
-     * The magnitude of movement translation for left/right movement.
+     * The magnitude of movement translation for left/right movement every GamePanel.TIME_INTERVAL.
      */
     private final int moveRate = 10;
     /**
-     * Start position to allow resetting.
+     * Movement carried over from earlier updates that did not add up to a whole pixel,
+     * in pixels multiplied by GamePanel.TIME_INTERVAL. Only kept while a direction is held.
      */
-    private Position startPosition;
+    private int moveRemainder;
     /**
-     * Remaining lives that the player has.
+     * Start position to allow resetting.
      */
-    private int lives;
+    private Position startPosition;
 
     /**
-     * Creates the player and prepares them with a default 3 lives.
+     * Creates the player in the ObjectManager's entities and prepares them with a default 3 lives.
+     * The lives are kept as the entity's health.
      *
-     * @param objectManager Reference to the ObjectManager to create projectiles.
+     * @param objectManager Reference to the ObjectManager to create projectiles and get the size of the game area.
      */
     public Player(ObjectManager objectManager) {
-        super(new Position(GamePanel.PANEL_WIDTH/2-WIDTH/2,GamePanel.PANEL_HEIGHT-HEIGHT),WIDTH,HEIGHT);
+        super(objectManager.getEntities(), objectManager.getWidth()/2-WIDTH/2, objectManager.getHeight()-HEIGHT,
+              WIDTH, HEIGHT, EntityStore.FACTION_PLAYER);
         this.objectManager = objectManager;
-        this.startPosition = new Position(position);
+        this.startPosition = new Position(getX(), getY());
         keyLeftIsPressed = false;
         keyRightIsPressed = false;
         fireShot = false;
-        lives = 3;
+        store.setHealth(entity, 3);
     }
 
     /**
-     * Fires a shot if necessary. Moves left/right if input was applied for left/right movement.
+     * Fires a shot if necessary. Moves left/right if input was applied for left/right movement,
+     * by a distance in proportion to deltaTime. Parts of a pixel are carried over to the next
+     * update the same as the AlienManager, so one long update moves as far as several short ones.
      *
      * @param deltaTime Time since last update.
      */
@@ -68,11 +86,18 @@ public class Player extends Rectangle implements CollidableObject {
             fireShot = false;
             objectManager.addProjectile(this);
         }
+        if(!keyLeftIsPressed && !keyRightIsPressed) {
+            moveRemainder = 0;
+            return;
+        }
+        moveRemainder += moveRate * deltaTime;
+        int distance = moveRemainder / GamePanel.TIME_INTERVAL;
+        moveRemainder %= GamePanel.TIME_INTERVAL;
         if(keyLeftIsPressed) {
-            moveWithinBounds(new Position(-moveRate,0), GamePanel.PANEL_WIDTH-width, GamePanel.PANEL_HEIGHT);
+            moveWithinBounds(-distance, 0, objectManager.getWidth()-WIDTH, objectManager.getHeight());
         }
         if(keyRightIsPressed) {
-            moveWithinBounds(new Position(moveRate,0), GamePanel.PANEL_WIDTH-width, GamePanel.PANEL_HEIGHT);
+            moveWithinBounds(distance, 0, objectManager.getWidth()-WIDTH, objectManager.getHeight());
         }
     }
 
@@ -83,8 +108,10 @@ public class Player extends Rectangle implements CollidableObject {
         keyLeftIsPressed = false;
         keyRightIsPressed = false;
         fireShot = false;
-        lives = 3;
-        position = new Position(startPosition);
+        moveRemainder = 0;
+        store.setHealth(entity, 3);
+        setPosition(startPosition.x, startPosition.y);
+        storePreviousPosition();
     }
 
     /**
@@ -104,13 +131,57 @@ public class Player extends Rectangle implements CollidableObject {
         }
     }
 
+    /**
+     * Mixes the player's position, lives, pending input, and movement remainder into a hash.
+     *
+     * @param hash The hash so far.
+     * @return The new hash.
+     */
+    public long hashState(long hash) {
+        hash = StateHash.mix(hash, ((long)getX() << 32) | (getY() & 0xFFFFFFFFL));
+        hash = StateHash.mix(hash, getLives());
+        hash = StateHash.mix(hash, moveRemainder);
+        return StateHash.mix(hash, (keyLeftIsPressed ? 1 : 0) | (keyRightIsPressed ? 2 : 0) | (fireShot ? 4 : 0));
+    }
+
+    /**
+     * Writes the player's current and previous position, lives, movement remainder, and pending input.
+     *
+     * @param buffer The buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(getX());
+        buffer.putInt(getY());
+        buffer.putInt(getPreviousX());
+        buffer.putInt(getPreviousY());
+        buffer.putInt(getLives());
+        buffer.putInt(moveRemainder);
+        buffer.put((byte)((keyLeftIsPressed ? 1 : 0) | (keyRightIsPressed ? 2 : 0) | (fireShot ? 4 : 0)));
+    }
+
+    /**
+     * Restores the player from state written by writeState().
+     *
+     * @param buffer The buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+        setPosition(buffer.getInt(), buffer.getInt());
+        store.setPreviousPosition(entity, buffer.getInt(), buffer.getInt());
+        store.setHealth(entity, buffer.getInt());
+        moveRemainder = buffer.getInt();
+        int input = buffer.get();
+        keyLeftIsPressed = (input & 1) != 0;
+        keyRightIsPressed = (input & 2) != 0;
+        fireShot = (input & 4) != 0;
+    }
+
     /**
      * Gets the current number of lives. This will always be 0 or greater.
      *
      * @return The current number of lives.
      */
     public int getLives() {
-        return lives;
+        return store.getHealth(entity);
     }
 
     /**
@@ -119,12 +190,56 @@ public class Player extends Rectangle implements CollidableObject {
      * @param g Reference to the Graphics object for rendering.
      */
     public void paint(Graphics g) {
-        g.setColor(Color.GREEN);
-        g.fillRect(position.x, position.y, width, height);
-        g.setColor(new Color(19, 73, 0));
-        g.drawRect(position.x, position.y, 5, height);
-        g.drawRect(position.x+width-5, position.y, 5, height);
-        g.fillRect(position.x + width/2-2, position.y+height/3, 4, height*2/3+1);
+        paint(g, 1);
+    }
+
+    /**
+     * Draws the player's tank part way between
+     * where it was before the last update and where it is now.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param alpha How far between the previous and current position, from 0 to 1.
+     */
+    public void paint(Graphics g, float alpha) {
+        if(SpriteCache.isEnabled()) {
+            g.drawImage(SpriteCache.getPlayerSprite(), getInterpolatedX(alpha), getInterpolatedY(alpha), null);
+        } else {
+            drawTank(g, getInterpolatedX(alpha), getInterpolatedY(alpha));
+        }
+    }
+
+    /**
+     * Gets the colour used for the body of the tank.
+     *
+     * @return The body colour.
+     */
+    static Color getBodyColour() {
+        return BODY_COLOUR;
+    }
+
+    /**
+     * Gets the colour used for the tank treads and barrel.
+     *
+     * @return The detail colour.
+     */
+    static Color getDetailColour() {
+        return DETAIL_COLOUR;
+    }
+
+    /**
+     * Draws the tank with simple geometry. Also used to create the cached sprite.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param x X coordinate of the top left corner.
+     * @param y Y coordinate of the top left corner.
+     */
+    public static void drawTank(Graphics g, int x, int y) {
+        g.setColor(BODY_COLOUR);
+        g.fillRect(x, y, WIDTH, HEIGHT);
+        g.setColor(DETAIL_COLOUR);
+        g.drawRect(x, y, 5, HEIGHT);
+        g.drawRect(x+WIDTH-5, y, 5, HEIGHT);
+        g.fillRect(x + WIDTH/2-2, y+HEIGHT/3, 4, HEIGHT*2/3+1);
     }
 
     /**
@@ -132,21 +247,24 @@ public class Player extends Rectangle implements CollidableObject {
      */
     @Override
     public void hit() {
-        lives = Math.max(0,lives-1);
+        store.setHealth(entity, Math.max(0,getLives()-1));
     }
 
     /**
-     * Moves based on the translationVector, but clamps the movement within the bounds of the play space.
+     * Moves based on the translation, but clamps the movement within the bounds of the play space.
      *
-     * @param translationVector Added to position to calculate the new position.
+     * @param translateX Added to the x coordinate to calculate the new position.
+     * @param translateY Added to the y coordinate to calculate the new position.
+     * @param maxX Largest x coordinate allowed.
+     * @param maxY Largest y coordinate allowed.
      */
-    private void moveWithinBounds(Position translationVector, int maxX, int maxY) {
-        int newX = position.x+translationVector.x;
-        int newY = position.y+translationVector.y;
+    private void moveWithinBounds(int translateX, int translateY, int maxX, int maxY) {
+        int newX = getX()+translateX;
+        int newY = getY()+translateY;
         if(newX < 0) newX = 0;
         else if(newX > maxX) newX = maxX;
         if(newY < 0) newY = 0;
         else if(newY > maxY) newY = maxY;
-        position.setPosition(newX, newY);
+        setPosition(newX, newY);
     }
 }
@@ -6,27 +6,6 @@
  * Used to represent a single position x,y.
  */
 public class Position {
-    /**
-     * Down moving unit vector.
-     */
-    public static final Position DOWN = new Position(0,1);
-    /**
-     * Up moving unit vector.
-     */
-    public static final Position UP = new Position(0,-1);
-    /**
-     * Left moving unit vector.
-     */
-    public static final Position LEFT = new Position(-1,0);
-    /**
-     * Right moving unit vector.
-     */
-    public static final Position RIGHT = new Position(1,0);
-    /**
-     * Zero unit vector.
-     */
-    public static final Position ZERO = new Position(0,0);
-
     /**
      * X coordinate.
      */
@@ -68,6 +47,16 @@ public class Position {
         this.y = y;
     }
 
+    /**
+     * Sets the Position to the same x and y coordinate as the otherPosition.
+     *
+     * @param otherPosition Other Position to copy the values from.
+     */
+    public void setPosition(Position otherPosition) {
+        this.x = otherPosition.x;
+        this.y = otherPosition.y;
+    }
+
     /**
      * Updates this position by adding the values from the otherPosition.
      *
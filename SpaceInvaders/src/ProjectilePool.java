@@ -0,0 +1,266 @@
+import java.awt.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * ProjectilePool class:
+ * Stores all the active projectiles in an EntityStore instead of
+ * one object per projectile. Projectiles move up if fired by the player, or
+ * down otherwise. Expired projectiles are removed by moving the last projectile
+ * into their slot, so removal never shifts the arrays and slots are reused.
+ * The arrays only grow when more projectiles are active than ever before.
+ */
+public class ProjectilePool {
+    /**
+     * Speed to move at. Distance in pixels to move over 1000ms.
+     */
+    public static final int MOVE_SPEED = 300;
+    /**
+     * Width of a projectile.
+     */
+    public static final int WIDTH = 4;
+    /**
+     * Height of a projectile.
+     */
+    public static final int HEIGHT = 10;
+    /**
+     * Owner value for projectiles fired by the player, which is the player's faction.
+     */
+    public static final byte OWNER_PLAYER = EntityStore.FACTION_PLAYER;
+    /**
+     * Owner value for projectiles fired by aliens, which is the aliens' faction.
+     */
+    public static final byte OWNER_ALIEN = EntityStore.FACTION_ALIEN;
+    /**
+     * Colour projectiles are drawn in, indexed by owner.
+     */
+    private static final Color[] OWNER_COLOURS = {Color.WHITE, Color.GREEN};
+    /**
+     * Number of slots created up front. This is enough for the player firing on every update
+     * as well as the aliens' shots, so the pool does not need to grow part way through a game.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * Components of every active projectile, with the owner as the faction. Slots from 0 to size()-1 are in use.
+     */
+    private EntityStore entities;
+    /**
+     * Reference to the object manager to check for collisions.
+     */
+    private ObjectManager objectManager;
+
+    /**
+     * Creates an empty pool with slots ready for projectiles.
+     *
+     * @param objectManager Reference to the object manager to check for collisions.
+     */
+    public ProjectilePool(ObjectManager objectManager) {
+        this.objectManager = objectManager;
+        entities = new EntityStore(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a projectile into the next free slot. Projectiles from the player
+     * move up, and all others move down.
+     *
+     * @param spawnX X coordinate for the top left corner.
+     * @param spawnY Y coordinate for the top left corner.
+     * @param projectileOwner Either OWNER_PLAYER or OWNER_ALIEN.
+     */
+    public void add(int spawnX, int spawnY, byte projectileOwner) {
+        int index = entities.add(spawnX, spawnY, WIDTH, HEIGHT, projectileOwner);
+        entities.setVelocity(index, 0, projectileOwner == OWNER_PLAYER ? -MOVE_SPEED : MOVE_SPEED);
+    }
+
+    /**
+     * Moves every projectile in one pass, and then checks each one for collisions with objects or leaving
+     * the screen. Collisions are checked along the whole path moved during the update,
+     * so the first object in the way is hit even when the move is longer than the objects.
+     * Projectiles that expire are removed right away. Objects of the player's or aliens'
+     * faction that are collided with have their hit() method called, while neutral objects
+     * are shields that have a crater carved where the projectile hit.
+     *
+     * @param deltaTime Time since last update.
+     */
+    public void update(int deltaTime) {
+        entities.integrate(deltaTime);
+        int i = 0;
+        while(i < entities.size()) {
+            int y = entities.getY(i);
+            Rectangle collision = objectManager.getCollision(entities.getX(i), entities.getPreviousY(i), y,
+                                                             WIDTH, HEIGHT, entities.getFaction(i));
+            if(collision != null) {
+                if(collision.getFaction() == EntityStore.FACTION_NEUTRAL) {
+                    ((Obstacle)collision).hitAlong(entities.getX(i), entities.getPreviousY(i), entities.getX(i), y, WIDTH, HEIGHT);
+                } else {
+                    ((CollidableObject)collision).hit();
+                }
+            }
+            if(y <= -HEIGHT || y >= objectManager.getHeight() || collision != null) {
+                entities.removeAt(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Draws the projectiles as either white for the player, or green for aliens.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     */
+    public void paint(Graphics g) {
+        paint(g, 1);
+    }
+
+    /**
+     * Draws the projectiles part way between where they were before the last update and where they are now.
+     *
+     * @param g Reference to the Graphics object for rendering.
+     * @param alpha How far between the previous and current positions, from 0 to 1.
+     */
+    public void paint(Graphics g, float alpha) {
+        entities.fill(g, alpha, OWNER_COLOURS);
+    }
+
+    /**
+     * Mixes the number of projectiles and the position and owner of each one into a hash.
+     *
+     * @param hash The hash so far.
+     * @return The new hash.
+     */
+    public long hashState(long hash) {
+        hash = StateHash.mix(hash, entities.size());
+        for(int i = 0; i < entities.size(); i++) {
+            hash = StateHash.mix(hash, ((long)entities.getX(i) << 32) | (entities.getY(i) & 0xFFFFFFFFL));
+            hash = StateHash.mix(hash, entities.getFaction(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the number of projectiles followed by the position, previous position, and owner of each.
+     * The speed is not written because it depends only on the owner.
+     *
+     * @param buffer The buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(entities.size());
+        for(int i = 0; i < entities.size(); i++) {
+            buffer.putInt(entities.getX(i));
+            buffer.putInt(entities.getY(i));
+            buffer.putInt(entities.getPreviousY(i));
+            buffer.put(entities.getFaction(i));
+        }
+    }
+
+    /**
+     * Replaces all the projectiles with state written by writeState(). The arrays only
+     * grow if there are more projectiles than there are slots.
+     *
+     * @param buffer The buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        entities.clear();
+        entities.ensureCapacity(count);
+        for(int i = 0; i < count; i++) {
+            int projectileX = buffer.getInt();
+            int projectileY = buffer.getInt();
+            int previousY = buffer.getInt();
+            add(projectileX, projectileY, buffer.get());
+            entities.setPreviousPosition(i, projectileX, previousY);
+        }
+    }
+
+    /**
+     * Gets the number of bytes writeState() will write.
+     *
+     * @return The size of the state in bytes.
+     */
+    public int getStateSize() {
+        return Integer.BYTES + entities.size() * (3 * Integer.BYTES + 1);
+    }
+
+    /**
+     * Removes all projectiles. The slots are kept for reuse.
+     */
+    public void clear() {
+        entities.clear();
+    }
+
+    /**
+     * Gets the number of active projectiles.
+     *
+     * @return The number of projectiles.
+     */
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * Gets the x coordinate of the projectile in the slot.
+     *
+     * @param index Slot of the projectile.
+     * @return X coordinate of the top left corner.
+     */
+    public int getX(int index) {
+        return entities.getX(index);
+    }
+
+    /**
+     * Gets the y coordinate of the projectile in the slot.
+     *
+     * @param index Slot of the projectile.
+     * @return Y coordinate of the top left corner.
+     */
+    public int getY(int index) {
+        return entities.getY(index);
+    }
+
+    /**
+     * Gets the x coordinate the projectile in the slot is drawn at, part way between its previous and current position.
+     *
+     * @param index Slot of the projectile.
+     * @param alpha How far between the previous and current position, from 0 to 1.
+     * @return The interpolated x coordinate of the top left corner.
+     */
+    public int getInterpolatedX(int index, float alpha) {
+        int previousX = entities.getPreviousX(index);
+        return previousX + Math.round((entities.getX(index) - previousX) * alpha);
+    }
+
+    /**
+     * Gets the y coordinate the projectile in the slot is drawn at, part way between its previous and current position.
+     *
+     * @param index Slot of the projectile.
+     * @param alpha How far between the previous and current position, from 0 to 1.
+     * @return The interpolated y coordinate of the top left corner.
+     */
+    public int getInterpolatedY(int index, float alpha) {
+        int previousY = entities.getPreviousY(index);
+        return previousY + Math.round((entities.getY(index) - previousY) * alpha);
+    }
+
+    /**
+     * Gets which side fired the projectile in the slot.
+     *
+     * @param index Slot of the projectile.
+     * @return Either OWNER_PLAYER or OWNER_ALIEN.
+     */
+    public byte getOwner(int index) {
+        return entities.getFaction(index);
+    }
+
+    /**
+     * Gets the colour projectiles fired by a side are drawn with.
+     *
+     * @param projectileOwner Either OWNER_PLAYER or OWNER_ALIEN.
+     * @return The colour for the owner.
+     */
+    static Color getOwnerColour(byte projectileOwner) {
+        return OWNER_COLOURS[projectileOwner];
+    }
+}
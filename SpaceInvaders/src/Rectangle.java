@@ -5,32 +5,48 @@
  * Rectangle class:
  * Defines a simple Rectangle with a position for the top left corner,
  * and a width/height to represent the size of the Rectangle.
+ * The values are kept in one slot of an EntityStore, so a Rectangle is a view
+ * of an entity that the store's systems update along with the others stored with it.
  */
 public class Rectangle {
     /**
-     * The top left corner of the Rectangle.
+     * Value returned by getSweepTime() for a box that touches at the end of its move.
+     * Earlier times are in proportion from 0 at the start of the move.
      */
-    protected Position position;
+    public static final int SWEEP_TIME_SCALE = 1 << 16;
     /**
-     * Width of the Rectangle.
+     * The store holding the Rectangle's components.
      */
-    protected int width;
+    protected EntityStore store;
     /**
-     * Height of the Rectangle.
+     * Slot of the Rectangle in the store.
      */
-    protected int height;
+    protected int entity;
 
     /**
-     * Creates the new Rectangle with provided properties.
+     * Creates the new Rectangle by adding an entity to the store.
      *
-     * @param position The top left corner of the Rectangle.
+     * @param store The store to add the Rectangle to.
+     * @param x X coordinate of the top left corner.
+     * @param y Y coordinate of the top left corner.
+     * @param width Width of the Rectangle.
+     * @param height Height of the Rectangle.
+     * @param faction One of the EntityStore FACTION values.
+     */
+    public Rectangle(EntityStore store, int x, int y, int width, int height, byte faction) {
+        this.store = store;
+        this.entity = store.add(x, y, width, height, faction);
+    }
+
+    /**
+     * Creates the new Rectangle with provided properties in a store of its own.
+     *
+     * @param position The top left corner of the Rectangle, which is copied.
      * @param width Width of the Rectangle.
      * @param height Height of the Rectangle.
      */
     public Rectangle(Position position, int width, int height) {
-        this.position = position;
-        this.width = width;
-        this.height = height;
+        this(position.x, position.y, width, height);
     }
 
     /**
@@ -40,7 +56,7 @@ public class Rectangle {
      * @param height Height of the rectangle.
      */
     public Rectangle(int x, int y, int width, int height) {
-        this(new Position(x,y),width,height);
+        this(new EntityStore(1), x, y, width, height, EntityStore.FACTION_NEUTRAL);
     }
 
     /**
@@ -49,7 +65,7 @@ public class Rectangle {
      * @return Height of the Rectangle.
      */
     public int getHeight() {
-        return height;
+        return store.getHeight(entity);
     }
 
     /**
@@ -58,25 +74,147 @@ public class Rectangle {
      * @return Width of the Rectangle.
      */
     public int getWidth() {
-        return width;
+        return store.getWidth(entity);
+    }
+
+    /**
+     * Gets the x coordinate of the top left corner.
+     *
+     * @return X coordinate of the top left corner.
+     */
+    public int getX() {
+        return store.getX(entity);
+    }
+
+    /**
+     * Gets the y coordinate of the top left corner.
+     *
+     * @return Y coordinate of the top left corner.
+     */
+    public int getY() {
+        return store.getY(entity);
+    }
+
+    /**
+     * Moves the top left corner of the Rectangle.
+     *
+     * @param x The new x coordinate.
+     * @param y The new y coordinate.
+     */
+    public void setPosition(int x, int y) {
+        store.setPosition(entity, x, y);
     }
 
     /**
-     * Gets the top left corner of the Rectangle.
+     * Gets a copy of the top left corner of the Rectangle.
+     * This creates a new Position, use getX() and getY() during updates.
      *
      * @return Top left corner of the Rectangle.
      */
     public Position getPosition() {
-        return position;
+        return new Position(getX(), getY());
+    }
+
+    /**
+     * Gets which side the Rectangle is on, used to decide what projectiles hit it.
+     *
+     * @return One of the EntityStore FACTION values.
+     */
+    public byte getFaction() {
+        return store.getFaction(entity);
+    }
+
+    /**
+     * Gets the store holding the Rectangle's components.
+     *
+     * @return A reference to the store.
+     */
+    public EntityStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets the slot of the Rectangle in its store.
+     *
+     * @return The slot.
+     */
+    public int getEntity() {
+        return entity;
+    }
+
+    /**
+     * Remembers the current position as the previous position. Called before an update moves the Rectangle.
+     */
+    public void storePreviousPosition() {
+        store.storePreviousPosition(entity);
+    }
+
+    /**
+     * Gets the x coordinate of the top left corner before the most recent update.
+     *
+     * @return The previous x coordinate.
+     */
+    public int getPreviousX() {
+        return store.getPreviousX(entity);
+    }
+
+    /**
+     * Gets the y coordinate of the top left corner before the most recent update.
+     *
+     * @return The previous y coordinate.
+     */
+    public int getPreviousY() {
+        return store.getPreviousY(entity);
+    }
+
+    /**
+     * Gets the x coordinate of the top left corner part way between the previous and current position.
+     *
+     * @param alpha How far between the previous and current position, from 0 to 1.
+     * @return The interpolated x coordinate.
+     */
+    public int getInterpolatedX(float alpha) {
+        int previousX = getPreviousX();
+        return previousX + Math.round((getX() - previousX) * alpha);
+    }
+
+    /**
+     * Gets the y coordinate of the top left corner part way between the previous and current position.
+     *
+     * @param alpha How far between the previous and current position, from 0 to 1.
+     * @return The interpolated y coordinate.
+     */
+    public int getInterpolatedY(float alpha) {
+        int previousY = getPreviousY();
+        return previousY + Math.round((getY() - previousY) * alpha);
     }
 
     /**
      * Gets the centre of the rectangle based on stored values.
+     * This creates a new Position, use getCentreX() and getCentreY() during updates.
      *
      * @return Centre coordinates of the rectangle.
      */
     public Position getCentre() {
-        return new Position(position.x + width/2, position.y + height/2);
+        return new Position(getCentreX(), getCentreY());
+    }
+
+    /**
+     * Gets the x coordinate of the centre of the rectangle.
+     *
+     * @return Centre x coordinate of the rectangle.
+     */
+    public int getCentreX() {
+        return getX() + getWidth()/2;
+    }
+
+    /**
+     * Gets the y coordinate of the centre of the rectangle.
+     *
+     * @return Centre y coordinate of the rectangle.
+     */
+    public int getCentreY() {
+        return getY() + getHeight()/2;
     }
 
     /**
@@ -86,8 +224,10 @@ public class Rectangle {
      * @return True if the targetPosition is inside this Rectangle.
      */
     public boolean isPositionInside(Position targetPosition) {
-        return targetPosition.x >= position.x && targetPosition.y >= position.y
-                && targetPosition.x < position.x + width && targetPosition.y < position.y + height;
+        int x = getX();
+        int y = getY();
+        return targetPosition.x >= x && targetPosition.y >= y
+                && targetPosition.x < x + getWidth() && targetPosition.y < y + getHeight();
     }
 
     /**
@@ -97,13 +237,72 @@ public class Rectangle {
      * @return True if this Rectangle is intersecting the otherRectangle.
      */
     public boolean isIntersecting(Rectangle otherRectangle) {
+        return isIntersecting(otherRectangle.getX(), otherRectangle.getY(),
+                              otherRectangle.getWidth(), otherRectangle.getHeight());
+    }
+
+    /**
+     * Tests the Rectangle is intersecting with a rectangle described by its coordinates.
+     *
+     * @param x X coordinate of the other rectangle's top left corner.
+     * @param y Y coordinate of the other rectangle's top left corner.
+     * @param otherWidth Width of the other rectangle.
+     * @param otherHeight Height of the other rectangle.
+     * @return True if this Rectangle is intersecting the other rectangle.
+     */
+    public boolean isIntersecting(int x, int y, int otherWidth, int otherHeight) {
+        int left = getX();
+        int top = getY();
         // break if any of the following are true because it means they don't intersect
-        if(position.y + height < otherRectangle.position.y) return false;
-        if(position.y > otherRectangle.position.y + otherRectangle.height) return false;
-        if(position.x + width < otherRectangle.position.x) return false;
-        if(position.x > otherRectangle.position.x + otherRectangle.width) return false;
+        if(top + getHeight() < y) return false;
+        if(top > y + otherHeight) return false;
+        if(left + getWidth() < x) return false;
+        if(left > x + otherWidth) return false;
 
         // the bounding boxes do intersect
         return true;
     }
+
+    /**
+     * Finds when a box moving in a straight line first touches this Rectangle. When the
+     * Rectangle moved at the same time, adding its movement to the box's start gives the
+     * path relative to where the Rectangle is now, so both are treated as moving at once. Touching edges count
+     * as intersecting, the same as isIntersecting().
+     *
+     * @param fromX X coordinate of the box's top left corner at the start of the move.
+     * @param fromY Y coordinate of the box's top left corner at the start of the move.
+     * @param toX X coordinate of the box's top left corner at the end of the move.
+     * @param toY Y coordinate of the box's top left corner at the end of the move.
+     * @param otherWidth Width of the box.
+     * @param otherHeight Height of the box.
+     * @return How far through the move the box first touches, from 0 to SWEEP_TIME_SCALE, or -1 if it never does.
+     */
+    public int getSweepTime(int fromX, int fromY, int toX, int toY, int otherWidth, int otherHeight) {
+        long enter = 0;
+        long exit = SWEEP_TIME_SCALE;
+        int left = getX();
+        int top = getY();
+        for(int axis = 0; axis < 2; axis++) {
+            int from = axis == 0 ? fromX : fromY;
+            int distance = axis == 0 ? toX - fromX : toY - fromY;
+            // The box touches while its corner is between these.
+            int min = axis == 0 ? left - otherWidth : top - otherHeight;
+            int max = axis == 0 ? left + getWidth() : top + getHeight();
+            if(distance == 0) {
+                if(from < min || from > max) {
+                    return -1;
+                }
+                continue;
+            }
+            long first = (long)((distance > 0 ? min : max) - from) * SWEEP_TIME_SCALE;
+            long last = (long)((distance > 0 ? max : min) - from) * SWEEP_TIME_SCALE;
+            // Round outwards so a box that only just touches is not missed.
+            enter = Math.max(enter, Math.floorDiv(first, distance));
+            exit = Math.min(exit, -Math.floorDiv(-last, distance));
+            if(enter > exit) {
+                return -1;
+            }
+        }
+        return (int)enter;
+    }
 }
@@ -0,0 +1,116 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * SpriteCache class:
+ * Pre-renders the images for each type of alien, the player's tank, and obstacles
+ * the first time they are needed. Drawing a cached image is a single call instead
+ * of setting colours and drawing each shape every frame. Images are created to match
+ * the screen when there is one so that they can be drawn without conversion.
+ * Cached images are only used when images are accelerated by the graphics card.
+ * Without acceleration copying images is slower than filling the shapes directly,
+ * so the objects draw their shapes the same way as before.
+ */
+public class SpriteCache {
+    /**
+     * When true the objects draw using the cached images.
+     */
+    private static boolean enabled = getDefaultEnabled();
+    /**
+     * One image for each alien type, created when first used.
+     */
+    private static final BufferedImage[] alienSprites = new BufferedImage[Alien.TYPE_COUNT];
+    /**
+     * Image of the player's tank, created when first used.
+     */
+    private static BufferedImage playerSprite;
+
+    /**
+     * Checks if objects should draw using the cached images.
+     *
+     * @return True if the cached images should be used.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Changes if objects draw using the cached images, such as to compare both ways in benchmarks.
+     *
+     * @param useSprites True to draw with cached images.
+     */
+    public static void setEnabled(boolean useSprites) {
+        enabled = useSprites;
+    }
+
+    /**
+     * Gets the image for an alien of the specified type.
+     *
+     * @param type The type of alien.
+     * @return An image of the alien filled with the colour for its type.
+     */
+    public static BufferedImage getAlienSprite(int type) {
+        if(alienSprites[type] == null) {
+            BufferedImage sprite = createImage(Alien.WIDTH, Alien.HEIGHT, false);
+            Graphics g = sprite.getGraphics();
+            g.setColor(Alien.getTypeColour(type));
+            g.fillRect(0, 0, Alien.WIDTH, Alien.HEIGHT);
+            g.dispose();
+            alienSprites[type] = sprite;
+        }
+        return alienSprites[type];
+    }
+
+    /**
+     * Gets the image of the player's tank.
+     *
+     * @return An image of the tank.
+     */
+    public static BufferedImage getPlayerSprite() {
+        if(playerSprite == null) {
+            // The outlines are drawn one pixel past the width and height.
+            BufferedImage sprite = createImage(Player.WIDTH+1, Player.HEIGHT+1, true);
+            Graphics g = sprite.getGraphics();
+            Player.drawTank(g, 0, 0);
+            g.dispose();
+            playerSprite = sprite;
+        }
+        return playerSprite;
+    }
+
+    /**
+     * Decides if the cached images are used by default. This is when the screen has accelerated
+     * images, unless the spaceinvaders.spriteCache property is set to true or false to choose.
+     *
+     * @return True if the cached images should be used.
+     */
+    private static boolean getDefaultEnabled() {
+        String property = System.getProperty("spaceinvaders.spriteCache");
+        if(property != null) {
+            return Boolean.parseBoolean(property);
+        }
+        return !GraphicsEnvironment.isHeadless() && GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration().getImageCapabilities().isAccelerated();
+    }
+
+    /**
+     * Creates an empty image that matches the screen's format when there is a screen.
+     *
+     * @param width Width of the image.
+     * @param height Height of the image.
+     * @param translucent When true the image supports transparent pixels.
+     * @return The new image, fully transparent if translucent.
+     */
+    public static BufferedImage createImage(int width, int height, boolean translucent) {
+        if(GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height,
+                    translucent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(width, height,
+                        translucent ? Transparency.TRANSLUCENT : Transparency.OPAQUE);
+    }
+}
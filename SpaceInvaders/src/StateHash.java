@@ -0,0 +1,30 @@
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * StateHash class:
+ * Combines values from the game state into a single 64 bit hash. Each value is
+ * mixed in one at a time so a hash can be built up by walking over the objects
+ * without creating any arrays or strings. Two games that produce the same hash
+ * every update have played out the same way, which allows a changed engine to be
+ * checked against the original over millions of updates.
+ */
+public class StateHash {
+    /**
+     * Value a new hash starts from.
+     */
+    public static final long INITIAL = 0xCBF29CE484222325L;
+
+    /**
+     * Mixes a value into a hash. Every bit of the value changes about half the bits of the result.
+     *
+     * @param hash The hash so far.
+     * @param value The value to add to the hash.
+     * @return The new hash.
+     */
+    public static long mix(long hash, long value) {
+        long z = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 32)) * 0xBF58476D1CE4E5B9L;
+        return z ^ (z >>> 29);
+    }
+}
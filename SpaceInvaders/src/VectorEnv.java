@@ -0,0 +1,481 @@
+import java.awt.event.KeyEvent;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Space Invaders
+ * Author: Peter Mitchell (2021)
+ *
+ * VectorEnv class:
+ * A batch of headless games that are stepped together for training agents. Each call to
+ * stepAll() applies one action to every game, steps them all, and writes the results into
+ * buffers that are created once up front: an observation grid for every game in a direct
+ * ByteBuffer, and the reward, done flag, and lives for every game in primitive arrays.
+ * Nothing is allocated while stepping, except when a game ends and its world is reset
+ * with a new wave of aliens.
+ *
+ * A game that ends is reset straight away with the next seed. Its reward, done flag,
+ * and lives are from the final step of the game that ended, and its observation is the
+ * first one of the new game. Games are seeded in order from the base seed, so a batch
+ * created with the same seed and given the same actions always plays out the same way.
+ * The games do not share any state, so batches on different threads can be stepped
+ * at the same time.
+ */
+public class VectorEnv {
+    /**
+     * Action that releases every key.
+     */
+    public static final int ACTION_NOOP = 0;
+    /**
+     * Action that moves left.
+     */
+    public static final int ACTION_LEFT = 1;
+    /**
+     * Action that moves right.
+     */
+    public static final int ACTION_RIGHT = 2;
+    /**
+     * Action that fires without moving.
+     */
+    public static final int ACTION_FIRE = 3;
+    /**
+     * Action that moves left and fires.
+     */
+    public static final int ACTION_LEFT_FIRE = 4;
+    /**
+     * Action that moves right and fires.
+     */
+    public static final int ACTION_RIGHT_FIRE = 5;
+    /**
+     * Number of different actions.
+     */
+    public static final int ACTION_COUNT = 6;
+    /**
+     * Width and height in pixels of the area covered by each cell of an observation.
+     */
+    public static final int CELL_SIZE = 8;
+    /**
+     * Number of cells across an observation.
+     */
+    public static final int GRID_WIDTH = GamePanel.PANEL_WIDTH / CELL_SIZE;
+    /**
+     * Number of cells down an observation.
+     */
+    public static final int GRID_HEIGHT = GamePanel.PANEL_HEIGHT / CELL_SIZE;
+    /**
+     * Number of bytes in each game's observation, one for each cell in rows from the top left.
+     */
+    public static final int OBSERVATION_SIZE = GRID_WIDTH * GRID_HEIGHT;
+    /**
+     * Cell value where there is nothing.
+     */
+    public static final byte CELL_EMPTY = 0;
+    /**
+     * Cell value covered by part of a shield that has not been worn away.
+     */
+    public static final byte CELL_SHIELD = 1;
+    /**
+     * Cell value covered by an alien.
+     */
+    public static final byte CELL_ALIEN = 2;
+    /**
+     * Cell value covered by the player.
+     */
+    public static final byte CELL_PLAYER = 3;
+    /**
+     * Cell value covered by a projectile fired by the player.
+     */
+    public static final byte CELL_PLAYER_SHOT = 4;
+    /**
+     * Cell value covered by a projectile fired by an alien.
+     */
+    public static final byte CELL_ALIEN_SHOT = 5;
+    /**
+     * The games in the batch.
+     */
+    private HeadlessGame[] games;
+    /**
+     * Maximum number of updates before a game is ended, or 0 for no limit.
+     */
+    private int maxTicks;
+    /**
+     * Seed for the next game that is started.
+     */
+    private long nextSeed;
+    /**
+     * Number of games that have ended.
+     */
+    private long episodeCount;
+    /**
+     * Score of each game before the most recent step.
+     */
+    private int[] previousScores;
+    /**
+     * Observation of every game, OBSERVATION_SIZE bytes each, one after another.
+     */
+    private ByteBuffer observations;
+    /**
+     * Grid that each observation is drawn into before it is copied into the observations in one go.
+     */
+    private byte[] grid;
+    /**
+     * Increase in score of each game during the most recent step.
+     */
+    private float[] rewards;
+    /**
+     * 1 for each game that ended during the most recent step, otherwise 0.
+     */
+    private byte[] dones;
+    /**
+     * Lives of the player in each game after the most recent step.
+     */
+    private int[] lives;
+
+    /**
+     * Steps batches of games with random actions, one batch on each thread, and prints how many
+     * steps were made per second in total.
+     *
+     * @param args Optional number of games in each batch, number of calls to stepAll(), time step in milliseconds, and number of threads.
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int timeStep = args.length > 2 ? Integer.parseInt(args[2]) : GamePanel.TIME_INTERVAL;
+        int threadCount = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        VectorEnv[] envs = new VectorEnv[threadCount];
+        long[] totalRewards = new long[threadCount];
+        for(int i = 0; i < threadCount; i++) {
+            envs[i] = new VectorEnv(count, (long)i * count, timeStep, 0);
+        }
+        for(int pass = 0; pass < 2; pass++) {
+            Thread[] threads = new Thread[threadCount];
+            for(int i = 0; i < threadCount; i++) {
+                int envIndex = i;
+                threads[i] = new Thread(() -> totalRewards[envIndex] = runRandom(envs[envIndex], steps, envIndex));
+            }
+            long startTime = System.nanoTime();
+            for(Thread thread : threads) {
+                thread.start();
+            }
+            for(Thread thread : threads) {
+                thread.join();
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            if(pass == 1) {
+                long episodes = 0, totalReward = 0;
+                for(int i = 0; i < threadCount; i++) {
+                    episodes += envs[i].getEpisodeCount();
+                    totalReward += totalRewards[i];
+                }
+                System.out.printf("Threads: %d, games per thread: %d, time step: %dms, steps: %d%n",
+                        threadCount, count, timeStep, (long)threadCount * count * steps);
+                System.out.printf("Episodes ended: %d, total reward: %d%n", episodes, totalReward);
+                System.out.printf("Steps per second: %.0f%n", (double)threadCount * count * steps / seconds);
+            }
+        }
+    }
+
+    /**
+     * Steps a batch of games with uniformly random actions.
+     *
+     * @param env The batch to step.
+     * @param steps Number of calls to stepAll().
+     * @param seed Seed for choosing the actions.
+     * @return The total reward from every game.
+     */
+    private static long runRandom(VectorEnv env, int steps, long seed) {
+        GameRandom random = new GameRandom(seed);
+        int[] actions = new int[env.size()];
+        long totalReward = 0;
+        for(int step = 0; step < steps; step++) {
+            for(int i = 0; i < actions.length; i++) {
+                actions[i] = random.nextInt(ACTION_COUNT);
+            }
+            env.stepAll(actions);
+            for(int i = 0; i < actions.length; i++) {
+                totalReward += (long)env.rewards[i];
+            }
+        }
+        return totalReward;
+    }
+
+    /**
+     * Creates a batch of games and writes their first observations.
+     *
+     * @param count Number of games.
+     * @param seed Seed for the first game. Games are seeded with seed, seed+1, and so on in the order they start.
+     * @param timeStep Time in milliseconds each step moves the games forward by.
+     * @param maxTicks Maximum number of steps before a game is ended, or 0 for no limit.
+     */
+    public VectorEnv(int count, long seed, int timeStep, int maxTicks) {
+        games = new HeadlessGame[count];
+        for(int i = 0; i < count; i++) {
+            games[i] = new HeadlessGame(seed + i, timeStep);
+        }
+        this.maxTicks = maxTicks;
+        nextSeed = seed + count;
+        previousScores = new int[count];
+        observations = ByteBuffer.allocateDirect(count * OBSERVATION_SIZE).order(ByteOrder.nativeOrder());
+        grid = new byte[OBSERVATION_SIZE];
+        rewards = new float[count];
+        dones = new byte[count];
+        lives = new int[count];
+        for(int i = 0; i < count; i++) {
+            lives[i] = games[i].getLives();
+            writeObservation(i);
+        }
+    }
+
+    /**
+     * Starts every game again with new seeds and writes their first observations.
+     * The rewards and done flags are cleared.
+     */
+    public void resetAll() {
+        for(int i = 0; i < games.length; i++) {
+            startNextGame(i);
+            rewards[i] = 0;
+            dones[i] = 0;
+            lives[i] = games[i].getLives();
+            writeObservation(i);
+        }
+    }
+
+    /**
+     * Applies an action to every game and steps each of them once. Afterwards the
+     * observations, rewards, done flags, and lives all hold the results of this step.
+     *
+     * @param actions One of the ACTION values for each game.
+     */
+    public void stepAll(int[] actions) {
+        for(int i = 0; i < games.length; i++) {
+            HeadlessGame game = games[i];
+            applyAction(game.getObjectManager().getPlayer(), actions[i]);
+            GameOutcome outcome = game.step();
+            int score = game.getScore();
+            rewards[i] = score - previousScores[i];
+            previousScores[i] = score;
+            lives[i] = game.getLives();
+            if(outcome != GameOutcome.IN_PROGRESS || (maxTicks > 0 && game.getTicks() >= maxTicks)) {
+                dones[i] = 1;
+                episodeCount++;
+                startNextGame(i);
+            } else {
+                dones[i] = 0;
+            }
+            writeObservation(i);
+        }
+    }
+
+    /**
+     * Gets the number of games in the batch.
+     *
+     * @return The number of games.
+     */
+    public int size() {
+        return games.length;
+    }
+
+    /**
+     * Gets the observations of every game. Game i's grid starts at byte i*OBSERVATION_SIZE,
+     * with GRID_WIDTH cells in each row and one of the CELL values in each cell.
+     *
+     * @return The buffer the observations are written to, which is reused for every step.
+     */
+    public ByteBuffer getObservations() {
+        return observations;
+    }
+
+    /**
+     * Gets the increase in score of each game during the most recent step.
+     *
+     * @return The array the rewards are written to, which is reused for every step.
+     */
+    public float[] getRewards() {
+        return rewards;
+    }
+
+    /**
+     * Gets which games ended during the most recent step, 1 for ended and 0 otherwise.
+     *
+     * @return The array the done flags are written to, which is reused for every step.
+     */
+    public byte[] getDones() {
+        return dones;
+    }
+
+    /**
+     * Gets the lives of the player in each game after the most recent step.
+     *
+     * @return The array the lives are written to, which is reused for every step.
+     */
+    public int[] getLives() {
+        return lives;
+    }
+
+    /**
+     * Gets the number of games that have ended since the batch was created.
+     *
+     * @return The number of games ended.
+     */
+    public long getEpisodeCount() {
+        return episodeCount;
+    }
+
+    /**
+     * Gets one of the games, such as to read more of its state.
+     *
+     * @param index Index of the game.
+     * @return The game.
+     */
+    public HeadlessGame getGame(int index) {
+        return games[index];
+    }
+
+    /**
+     * Passes an action to a player as the key presses it stands for.
+     *
+     * @param player The player to control.
+     * @param action One of the ACTION values.
+     */
+    public static void applyAction(Player player, int action) {
+        player.handleInput(KeyEvent.VK_LEFT, isMovingLeft(action));
+        player.handleInput(KeyEvent.VK_RIGHT, isMovingRight(action));
+        if(isFiring(action)) {
+            player.handleInput(KeyEvent.VK_SPACE, true);
+        }
+    }
+
+    /**
+     * Checks if an action holds the left key.
+     *
+     * @param action One of the ACTION values.
+     * @return True if the action moves left.
+     */
+    public static boolean isMovingLeft(int action) {
+        return action == ACTION_LEFT || action == ACTION_LEFT_FIRE;
+    }
+
+    /**
+     * Checks if an action holds the right key.
+     *
+     * @param action One of the ACTION values.
+     * @return True if the action moves right.
+     */
+    public static boolean isMovingRight(int action) {
+        return action == ACTION_RIGHT || action == ACTION_RIGHT_FIRE;
+    }
+
+    /**
+     * Checks if an action presses the fire key.
+     *
+     * @param action One of the ACTION values.
+     * @return True if the action fires.
+     */
+    public static boolean isFiring(int action) {
+        return action >= ACTION_FIRE;
+    }
+
+    /**
+     * Resets a game with the next seed.
+     *
+     * @param index Index of the game.
+     */
+    private void startNextGame(int index) {
+        games[index].reset(nextSeed++);
+        previousScores[index] = 0;
+    }
+
+    /**
+     * Writes a game's observation grid. Shields are drawn first, then aliens, the player,
+     * and projectiles, so a cell covered by more than one object shows the last one drawn.
+     * The grid is drawn into an array and then copied into the direct buffer with a single bulk copy,
+     * which is much faster than writing each cell into the buffer.
+     *
+     * @param index Index of the game.
+     */
+    private void writeObservation(int index) {
+        Arrays.fill(grid, CELL_EMPTY);
+        ObjectManager world = games[index].getObjectManager();
+        for(int i = 0; i < world.getObstacles().size(); i++) {
+            drawShield(world.getObstacles().get(i));
+        }
+        AlienManager alienManager = world.getAlienManager();
+        EntityStore aliens = alienManager.getEntities();
+        for(int i = 0; i < aliens.size(); i++) {
+            if(alienManager.isAlive(i)) {
+                fillCells(aliens.getX(i), aliens.getY(i), Alien.WIDTH, Alien.HEIGHT, CELL_ALIEN);
+            }
+        }
+        Player player = world.getPlayer();
+        fillCells(player.getX(), player.getY(), player.getWidth(), player.getHeight(), CELL_PLAYER);
+        ProjectilePool projectiles = world.getProjectiles();
+        for(int i = 0; i < projectiles.size(); i++) {
+            fillCells(projectiles.getX(i), projectiles.getY(i), ProjectilePool.WIDTH, ProjectilePool.HEIGHT,
+                    projectiles.getOwner(i) == ProjectilePool.OWNER_PLAYER ? CELL_PLAYER_SHOT : CELL_ALIEN_SHOT);
+        }
+        observations.position(index * OBSERVATION_SIZE);
+        observations.put(grid);
+        observations.position(0);
+    }
+
+    /**
+     * Marks every cell that still has a solid pixel of the shield in it. The mask rows that fall
+     * in the same row of cells are ORed together first, and then each word is scanned once,
+     * jumping from the first solid pixel in a cell straight to the next cell.
+     *
+     * @param shield The shield to draw.
+     */
+    private void drawShield(Obstacle shield) {
+        int left = shield.getX();
+        int top = shield.getY();
+        int height = shield.getHeight();
+        int wordsPerRow = shield.getMaskWordCount() / height;
+        int row = 0;
+        while(row < height) {
+            int cellY = Math.floorDiv(top + row, CELL_SIZE);
+            int nextRow = Math.min(height, (cellY + 1) * CELL_SIZE - top);
+            if(cellY >= 0 && cellY < GRID_HEIGHT) {
+                for(int word = 0; word < wordsPerRow; word++) {
+                    long bits = 0;
+                    for(int i = row; i < nextRow; i++) {
+                        bits |= shield.getMaskWord(i * wordsPerRow + word);
+                    }
+                    while(bits != 0) {
+                        int x = left + word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                        int cellX = Math.floorDiv(x, CELL_SIZE);
+                        if(cellX >= 0 && cellX < GRID_WIDTH) {
+                            grid[cellY * GRID_WIDTH + cellX] = CELL_SHIELD;
+                        }
+                        // Clear the rest of this cell's pixels in the word.
+                        int nextBit = (cellX + 1) * CELL_SIZE - left - word * Long.SIZE;
+                        bits = nextBit >= Long.SIZE ? 0 : bits & (-1L << nextBit);
+                    }
+                }
+            }
+            row = nextRow;
+        }
+    }
+
+    /**
+     * Sets every cell that a rectangle covers part of to a value. Parts outside the grid are left out.
+     *
+     * @param x X coordinate of the rectangle's top left corner.
+     * @param y Y coordinate of the rectangle's top left corner.
+     * @param width Width of the rectangle.
+     * @param height Height of the rectangle.
+     * @param value One of the CELL values.
+     */
+    private void fillCells(int x, int y, int width, int height, byte value) {
+        int firstColumn = Math.max(0, Math.floorDiv(x, CELL_SIZE));
+        int lastColumn = Math.min(GRID_WIDTH - 1, Math.floorDiv(x + width - 1, CELL_SIZE));
+        int firstRow = Math.max(0, Math.floorDiv(y, CELL_SIZE));
+        int lastRow = Math.min(GRID_HEIGHT - 1, Math.floorDiv(y + height - 1, CELL_SIZE));
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int column = firstColumn; column <= lastColumn; column++) {
+                grid[row * GRID_WIDTH + column] = value;
+            }
+        }
+    }
+}